@@ -290,7 +290,8 @@ public class SignatureParameters implements Serializable {
 
 			return deterministicId;
 		}
-		final int dssId = (signingCertificate == null ? 0 : CertificateIdentifier.getId(signingCertificate)) + signatureCounter++;
+		// The ids use the full positive int range: the sum is computed as a long to not overflow
+		final long dssId = (signingCertificate == null ? 0L : (long) CertificateIdentifier.getId(signingCertificate)) + signatureCounter++;
 		deterministicId = DSSUtils.getDeterministicId(bLevelParams.getSigningDate(), dssId);
 		return deterministicId;
 	}
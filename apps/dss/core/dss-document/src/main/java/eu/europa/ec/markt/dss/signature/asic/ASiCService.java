@@ -35,6 +35,7 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 import java.util.zip.CRC32;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipException;
@@ -102,6 +103,12 @@ public class ASiCService extends AbstractSignatureService {
 	private final static String ASICE_EXTENSION = ".asice"; // can be ".sce"
 	public final static String ASICS_NS = "asic:XAdESSignatures";
 
+	/**
+	 * Extensions of the files which are already compressed: they are stored as-is in the container instead of being deflated a second time.
+	 */
+	private final static String[] COMPRESSED_EXTENSIONS = {".zip", ".jar", ".gz", ".tgz", ".bz2", ".7z", ".rar", ".asics", ".asice", ".scs", ".sce", ".docx", ".xlsx", ".pptx",
+		  ".odt", ".ods", ".odp", ".jpg", ".jpeg", ".png", ".gif", ".mp3", ".mp4", ".avi", ".mov"};
+
 	/**
 	 * This is the constructor to create an instance of the {@code ASiCService}. A certificate verifier must be provided.
 	 *
@@ -152,6 +159,38 @@ public class ASiCService extends AbstractSignatureService {
 	@Override
 	public DSSDocument signDocument(final DSSDocument toSignDocument, final SignatureParameters parameters, final byte[] signatureValue) throws DSSException {
 
+		final ByteArrayOutputStream output = new ByteArrayOutputStream();
+		final String toSignDocumentName = writeSignedContainer(toSignDocument, parameters, signatureValue, output);
+		return createASiCContainer(parameters.aSiC(), output, toSignDocumentName);
+	}
+
+	/**
+	 * Signs the given document and writes the resulting ASiC container to the given {@code OutputStream}. The container is streamed entry by entry and is never held
+	 * in memory: this is the method to use for large containers. The {@code OutputStream} is not closed.
+	 *
+	 * @param toSignDocument document to sign or existing ASiC container
+	 * @param parameters     set of the driving signing parameters
+	 * @param signatureValue the signature value to incorporate
+	 * @param output         destination of the ASiC container
+	 * @throws DSSException
+	 */
+	public void signDocument(final DSSDocument toSignDocument, final SignatureParameters parameters, final byte[] signatureValue,
+	                         final OutputStream output) throws DSSException {
+
+		if (output == null) {
+			throw new DSSNullException(OutputStream.class);
+		}
+		writeSignedContainer(toSignDocument, parameters, signatureValue, output);
+	}
+
+	/**
+	 * Writes the signed ASiC container to the given {@code OutputStream}.
+	 *
+	 * @return the name of the signed document, used to name the container
+	 */
+	private String writeSignedContainer(final DSSDocument toSignDocument, final SignatureParameters parameters, final byte[] signatureValue,
+	                                    final OutputStream output) throws DSSException {
+
 		assertSigningDateInCertificateValidityRange(parameters);
 
 		// Signs the toSignDocument first
@@ -178,9 +217,9 @@ public class ASiCService extends AbstractSignatureService {
 				contextToSignDocument = parameters.getDetachedContent();
 			}
 		}
-		final InMemoryDocument asicSignature = buildASiCContainer(contextToSignDocument, asicContainer, underlyingParameters, signature);
+		buildASiCContainer(contextToSignDocument, asicContainer, underlyingParameters, signature, output);
 		parameters.setDeterministicId(null);
-		return asicSignature;
+		return contextToSignDocument.getName();
 	}
 
 	@Override
@@ -202,6 +241,30 @@ public class ASiCService extends AbstractSignatureService {
 	@Override
 	public DSSDocument extendDocument(final DSSDocument toExtendDocument, final SignatureParameters parameters) throws DSSException {
 
+		final ByteArrayOutputStream output = new ByteArrayOutputStream();
+		writeExtendedContainer(toExtendDocument, parameters, output);
+		return new InMemoryDocument(output.toByteArray());
+	}
+
+	/**
+	 * Extends the signature of the given ASiC container and writes the extended container to the given {@code OutputStream}. The entries other than the signature are
+	 * streamed from the original container. The {@code OutputStream} is not closed.
+	 *
+	 * @param toExtendDocument ASiC container to extend
+	 * @param parameters       set of the driving signing parameters
+	 * @param output           destination of the extended ASiC container
+	 * @throws DSSException
+	 */
+	public void extendDocument(final DSSDocument toExtendDocument, final SignatureParameters parameters, final OutputStream output) throws DSSException {
+
+		if (output == null) {
+			throw new DSSNullException(OutputStream.class);
+		}
+		writeExtendedContainer(toExtendDocument, parameters, output);
+	}
+
+	private void writeExtendedContainer(final DSSDocument toExtendDocument, final SignatureParameters parameters, final OutputStream output) throws DSSException {
+
 		final DocumentValidator validator = SignedDocumentValidator.fromDocument(toExtendDocument);
 		final DocumentValidator subordinatedValidator = validator.getSubordinatedValidator();
 		final DocumentSignatureService specificService = getSpecificService(parameters);
@@ -214,29 +277,30 @@ public class ASiCService extends AbstractSignatureService {
 		final DSSDocument signature = subordinatedValidator.getDocument();
 		final DSSDocument signedDocument = specificService.extendDocument(signature, xadesParameters);
 
-		final ByteArrayOutputStream output = new ByteArrayOutputStream();
 		final ZipOutputStream zipOutputStream = new ZipOutputStream(output);
 		final ZipInputStream zipInputStream = new ZipInputStream(toExtendDocument.openStream());
-		ZipEntry entry;
-		while ((entry = getNextZipEntry(zipInputStream)) != null) {
+		try {
 
-			final String name = entry.getName();
-			final ZipEntry newEntry = new ZipEntry(name);
-			if (ASiCContainerValidator.isXAdES(name) || ASiCContainerValidator.isCAdES(name)) {
+			ZipEntry entry;
+			while ((entry = getNextZipEntry(zipInputStream)) != null) {
 
-				createZipEntry(zipOutputStream, newEntry);
-				final InputStream inputStream = signedDocument.openStream();
-				DSSUtils.copy(inputStream, zipOutputStream);
-				DSSUtils.closeQuietly(inputStream);
-			} else {
+				final String name = entry.getName();
+				if (ASiCContainerValidator.isXAdES(name) || ASiCContainerValidator.isCAdES(name)) {
 
-				createZipEntry(zipOutputStream, newEntry);
-				DSSUtils.copy(zipInputStream, zipOutputStream);
+					createZipEntry(zipOutputStream, new ZipEntry(name));
+					final InputStream inputStream = signedDocument.openStream();
+					DSSUtils.copy(inputStream, zipOutputStream);
+					DSSUtils.closeQuietly(inputStream);
+				} else {
+
+					createZipEntry(zipOutputStream, copyZipEntry(entry));
+					DSSUtils.copy(zipInputStream, zipOutputStream);
+				}
 			}
+			finishZip(zipOutputStream);
+		} finally {
+			DSSUtils.closeQuietly(zipInputStream);
 		}
-		DSSUtils.closeQuietly(zipInputStream);
-		DSSUtils.closeQuietly(zipOutputStream);
-		return new InMemoryDocument(output.toByteArray());
 	}
 
 	private DSSDocument copyDetachedContent(final SignatureParameters underlyingParameters, final DocumentValidator subordinatedValidator) {
@@ -273,8 +337,8 @@ public class ASiCService extends AbstractSignatureService {
 		return null;
 	}
 
-	private InMemoryDocument buildASiCContainer(final DSSDocument toSignDocument, DSSDocument signDocument, final SignatureParameters underlyingParameters,
-	                                            final DSSDocument signature) {
+	private void buildASiCContainer(final DSSDocument toSignDocument, DSSDocument signDocument, final SignatureParameters underlyingParameters,
+	                                final DSSDocument signature, final OutputStream output) {
 
 		final ASiCParameters asicParameters = underlyingParameters.aSiC();
 		final boolean asice = isAsice(asicParameters);
@@ -282,8 +346,7 @@ public class ASiCService extends AbstractSignatureService {
 
 		final String toSignDocumentName = toSignDocument.getName();
 
-		final ByteArrayOutputStream outBytes = new ByteArrayOutputStream();
-		ZipOutputStream zipOutputStream = new ZipOutputStream(outBytes);
+		final ZipOutputStream zipOutputStream = new ZipOutputStream(output);
 		if (asice && signDocument != null) {
 
 			copyZipContent(signDocument, zipOutputStream);
@@ -300,22 +363,113 @@ public class ASiCService extends AbstractSignatureService {
 		if (asice && cadesForm) {
 			storeAsicManifest(underlyingParameters, toSignDocument, zipOutputStream);
 		}
-		DSSUtils.close(zipOutputStream);
-
-		final InMemoryDocument asicContainer = createASiCContainer(asicParameters, outBytes, toSignDocumentName);
-		return asicContainer;
+		finishZip(zipOutputStream);
 	}
 
 	private void copyZipContent(DSSDocument toSignAsicContainer, ZipOutputStream zipOutputStream) {
 
 		final InputStream inputStream = toSignAsicContainer.openStream();
 		final ZipInputStream zipInputStream = new ZipInputStream(inputStream);
-		for (ZipEntry entry = getNextZipEntry(zipInputStream); entry != null; entry = getNextZipEntry(zipInputStream)) {
+		try {
+
+			for (ZipEntry entry = getNextZipEntry(zipInputStream); entry != null; entry = getNextZipEntry(zipInputStream)) {
+
+				createZipEntry(zipOutputStream, copyZipEntry(entry));
+				DSSUtils.copy(zipInputStream, zipOutputStream);
+			}
+		} finally {
+			DSSUtils.closeQuietly(zipInputStream);
+		}
+	}
 
-			createZipEntry(zipOutputStream, entry);
-			DSSUtils.copy(zipInputStream, zipOutputStream);
+	/**
+	 * Creates the header of the copy of an existing entry. The stored entries (as the mimetype) keep their method, size and CRC; the other entries are deflated again
+	 * since {@code ZipOutputStream} cannot write already compressed data.
+	 *
+	 * @param entry the entry read from the original container
+	 * @return the new {@code ZipEntry}
+	 */
+	private static ZipEntry copyZipEntry(final ZipEntry entry) {
+
+		final ZipEntry newEntry = new ZipEntry(entry.getName());
+		if (entry.getTime() != -1) {
+			newEntry.setTime(entry.getTime());
+		}
+		newEntry.setComment(entry.getComment());
+		newEntry.setExtra(entry.getExtra());
+		if (entry.getMethod() == ZipEntry.STORED && entry.getSize() != -1 && entry.getCrc() != -1) {
+
+			newEntry.setMethod(ZipEntry.STORED);
+			newEntry.setSize(entry.getSize());
+			newEntry.setCompressedSize(entry.getSize());
+			newEntry.setCrc(entry.getCrc());
+		}
+		return newEntry;
+	}
+
+	/**
+	 * Creates the entry of a signed document. An already compressed document is stored as-is: its size and CRC are computed by a first pass over its stream.
+	 *
+	 * @param name     the name of the entry
+	 * @param document the document to store
+	 * @return the new {@code ZipEntry}
+	 */
+	private static ZipEntry getDocumentZipEntry(final String name, final DSSDocument document) throws DSSException {
+
+		final ZipEntry entryDocument = new ZipEntry(name);
+		if (isCompressed(name)) {
+
+			final CRC32 crc = new CRC32();
+			long size = 0;
+			final InputStream inputStream = document.openStream();
+			try {
+
+				final byte[] buffer = new byte[8192];
+				int count;
+				while ((count = inputStream.read(buffer)) != -1) {
+
+					crc.update(buffer, 0, count);
+					size += count;
+				}
+			} catch (IOException e) {
+				throw new DSSException(e);
+			} finally {
+				DSSUtils.closeQuietly(inputStream);
+			}
+			entryDocument.setMethod(ZipEntry.STORED);
+			entryDocument.setSize(size);
+			entryDocument.setCompressedSize(size);
+			entryDocument.setCrc(crc.getValue());
+		}
+		return entryDocument;
+	}
+
+	private static boolean isCompressed(final String name) {
+
+		final String lowerCaseName = name.toLowerCase(Locale.ENGLISH);
+		for (final String extension : COMPRESSED_EXTENSIONS) {
+
+			if (lowerCaseName.endsWith(extension)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Writes the central directory of the container without closing the underlying {@code OutputStream}.
+	 *
+	 * @param outZip {@code ZipOutputStream} to finish
+	 * @throws DSSException
+	 */
+	private static void finishZip(final ZipOutputStream outZip) throws DSSException {
+
+		try {
+			outZip.finish();
+			outZip.flush();
+		} catch (IOException e) {
+			throw new DSSException(e);
 		}
-		DSSUtils.closeQuietly(zipInputStream);
 	}
 
 	private void storeAsicManifest(final SignatureParameters underlyingParameters, final DSSDocument detachedDocument, final ZipOutputStream outZip) {
@@ -358,8 +512,7 @@ public class ASiCService extends AbstractSignatureService {
 			digestMethodDom.setAttribute("Algorithm", digestAlgorithm.getXmlId());
 
 			final Element digestValueDom = DSSXMLUtils.addElement(documentDom, dataObjectReferenceDom, XMLSignature.XMLNS, "DigestValue");
-			final byte[] digest = DSSUtils.digest(digestAlgorithm, currentDetachedDocument.getBytes());
-			final String base64Encoded = DSSUtils.base64Encode(digest);
+			final String base64Encoded = currentDetachedDocument.getDigest(digestAlgorithm);
 			final Text textNode = documentDom.createTextNode(base64Encoded);
 			digestValueDom.appendChild(textNode);
 
@@ -556,7 +709,12 @@ public class ASiCService extends AbstractSignatureService {
 		final String signatureZipEntryName = getSignatureFileName(asicParameters);
 		final ZipEntry entrySignature = new ZipEntry(signatureZipEntryName);
 		createZipEntry(outZip, entrySignature);
-		zipWriteBytes(outZip, signature.getBytes());
+		final InputStream inputStream = signature.openStream();
+		try {
+			DSSUtils.copy(inputStream, outZip);
+		} finally {
+			DSSUtils.closeQuietly(inputStream);
+		}
 	}
 
 	private static void zipWriteBytes(final ZipOutputStream outZip, final byte[] bytes) throws DSSException {
@@ -631,14 +789,17 @@ public class ASiCService extends AbstractSignatureService {
 
 			final String detachedDocumentName = currentDetachedDocument.getName();
 			final String name = detachedDocumentName != null ? detachedDocumentName : ZIP_ENTRY_DETACHED_FILE;
-			final ZipEntry entryDocument = new ZipEntry(name);
+			final ZipEntry entryDocument = getDocumentZipEntry(name, currentDetachedDocument);
 			outZip.setLevel(ZipEntry.DEFLATED);
 			try {
 
 				createZipEntry(outZip, entryDocument);
 				final InputStream inputStream = currentDetachedDocument.openStream();
-				DSSUtils.copy(inputStream, outZip);
-				DSSUtils.closeQuietly(inputStream);
+				try {
+					DSSUtils.copy(inputStream, outZip);
+				} finally {
+					DSSUtils.closeQuietly(inputStream);
+				}
 			} catch (DSSException e) {
 				if (!(e.getCause() instanceof ZipException && e.getCause().getMessage().startsWith("duplicate entry:"))) {
 					throw e;
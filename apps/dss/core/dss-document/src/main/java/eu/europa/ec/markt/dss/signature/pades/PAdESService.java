@@ -47,6 +47,7 @@ import eu.europa.ec.markt.dss.signature.cades.CAdESLevelBaselineT;
 import eu.europa.ec.markt.dss.signature.cades.CustomContentSigner;
 import eu.europa.ec.markt.dss.signature.pdf.PDFSignatureService;
 import eu.europa.ec.markt.dss.signature.pdf.PdfObjFactory;
+import eu.europa.ec.markt.dss.signature.pdf.PdfSigningSession;
 import eu.europa.ec.markt.dss.signature.token.SignatureTokenConnection;
 import eu.europa.ec.markt.dss.validation102853.CertificateVerifier;
 
@@ -119,14 +120,16 @@ public class PAdESService extends AbstractSignatureService {
 	public DSSDocument signDocument(final DSSDocument toSignDocument, final SignatureParameters parameters, final byte[] signatureValue) throws DSSException {
 
 		assertSigningDateInCertificateValidityRange(parameters);
+		final PDFSignatureService pdfSignatureService = PdfObjFactory.getInstance().newPAdESSignatureService();
+		final InputStream inputStream = toSignDocument.openStream();
+		// The new revision is prepared once: the CMS signature is injected in its placeholder without parsing the document again.
+		final PdfSigningSession signingSession = pdfSignatureService.prepare(inputStream, parameters, parameters.getDigestAlgorithm());
+		DSSUtils.closeQuietly(inputStream);
 		try {
 			final SignatureAlgorithm signatureAlgorithm = parameters.getSignatureAlgorithm();
 			final CustomContentSigner customContentSigner = new CustomContentSigner(signatureAlgorithm.getJCEId(), signatureValue);
 
-			final PDFSignatureService pdfSignatureService = PdfObjFactory.getInstance().newPAdESSignatureService();
-			InputStream inputStream = toSignDocument.openStream();
-			final byte[] messageDigest = pdfSignatureService.digest(inputStream, parameters, parameters.getDigestAlgorithm());
-			DSSUtils.closeQuietly(inputStream);
+			final byte[] messageDigest = signingSession.getDigest();
 
 			final SignerInfoGeneratorBuilder signerInfoGeneratorBuilder = padesCMSSignedDataBuilder.getSignerInfoGeneratorBuilder(parameters, messageDigest);
 
@@ -145,9 +148,7 @@ public class PAdESService extends AbstractSignatureService {
 
 			final ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
 			final byte[] encodedData = DSSASN1Utils.getEncoded(data);
-			inputStream = toSignDocument.openStream();
-			pdfSignatureService.sign(inputStream, encodedData, byteArrayOutputStream, parameters, parameters.getDigestAlgorithm());
-			DSSUtils.closeQuietly(inputStream);
+			signingSession.sign(encodedData, byteArrayOutputStream);
 			final DSSDocument signature;
 			if (DSSUtils.isEmpty(toSignDocument.getName())) {
 				signature = new InMemoryDocument(byteArrayOutputStream.toByteArray(), null, MimeType.PDF);
@@ -166,6 +167,8 @@ public class PAdESService extends AbstractSignatureService {
 			}
 		} catch (CMSException e) {
 			throw new DSSException(e);
+		} finally {
+			signingSession.close();
 		}
 	}
 
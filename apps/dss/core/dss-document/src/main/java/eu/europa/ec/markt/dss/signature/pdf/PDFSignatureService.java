@@ -50,6 +50,20 @@ public interface PDFSignatureService {
 	byte[] digest(final InputStream toSignDocument, final SignatureParameters parameters, final DigestAlgorithm digestAlgorithm,
 	              final Map.Entry<String, PdfDict>... extraDictionariesToAddBeforeSign) throws DSSException;
 
+	/**
+	 * Prepares the signature of a PDF document: the new revision is built once and the signature value computed from the digest of the returned session is injected
+	 * by {@link PdfSigningSession#sign(byte[], OutputStream)} without parsing the document again. The session must be closed by the caller.
+	 *
+	 * @param toSignDocument
+	 * @param parameters
+	 * @param digestAlgorithm
+	 * @param extraDictionariesToAddBeforeSign only in the case of timestamp
+	 * @return the {@code PdfSigningSession} holding the prepared revision
+	 * @throws DSSException
+	 */
+	PdfSigningSession prepare(final InputStream toSignDocument, final SignatureParameters parameters, final DigestAlgorithm digestAlgorithm,
+	                          final Map.Entry<String, PdfDict>... extraDictionariesToAddBeforeSign) throws DSSException;
+
 	/**
 	 * Signs a PDF document
 	 *
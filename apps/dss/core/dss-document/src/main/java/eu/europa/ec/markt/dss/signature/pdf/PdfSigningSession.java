@@ -0,0 +1,139 @@
+/*
+ * DSS - Digital Signature Services
+ *
+ * Copyright (C) 2013 European Commission, Directorate-General Internal Market and Services (DG MARKT), B-1049 Bruxelles/Brussel
+ *
+ * Developed by: 2013 ARHS Developments S.A. (rue Nicolas Bové 2B, L-1253 Luxembourg) http://www.arhs-developments.com
+ *
+ * This file is part of the "DSS - Digital Signature Services" project.
+ *
+ * "DSS - Digital Signature Services" is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU Lesser General Public License as published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * DSS is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * "DSS - Digital Signature Services".  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.europa.ec.markt.dss.signature.pdf;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Locale;
+
+import eu.europa.ec.markt.dss.DSSUtils;
+import eu.europa.ec.markt.dss.exception.DSSException;
+import eu.europa.ec.markt.dss.exception.DSSNullException;
+
+/**
+ * This class holds a PDF document prepared for signing: the new revision with its signature dictionary is written once, the {@code /Contents} entry being a placeholder
+ * of hexadecimal zeros. The digest of the signed byte range does not depend on the content of the placeholder: the signature value (CMS or timestamp token) computed
+ * from {@link #getDigest()} is injected by {@link #sign(byte[], OutputStream)} without parsing the document again.
+ * <p/>
+ * The prepared revision is kept in a temporary file which is deleted by {@link #close()}.
+ *
+ * @version $Revision$ - $Date$
+ */
+public class PdfSigningSession {
+
+	private final File preparedFile;
+
+	private final int[] byteRange;
+
+	private final byte[] digest;
+
+	/**
+	 * @param preparedFile the prepared revision of the document
+	 * @param byteRange    the /ByteRange of the signature dictionary: the placeholder goes from {@code byteRange[1]} to {@code byteRange[2]}, delimiters included
+	 * @param digest       the digest of the signed byte range
+	 */
+	public PdfSigningSession(final File preparedFile, final int[] byteRange, final byte[] digest) {
+
+		if (preparedFile == null) {
+			throw new DSSNullException(File.class, "preparedFile");
+		}
+		if (byteRange == null || byteRange.length != 4) {
+			throw new DSSException("The /ByteRange of the signature dictionary is not valid!");
+		}
+		this.preparedFile = preparedFile;
+		this.byteRange = byteRange;
+		this.digest = digest;
+	}
+
+	/**
+	 * @return the digest of the signed byte range of the prepared revision
+	 */
+	public byte[] getDigest() {
+		return digest;
+	}
+
+	/**
+	 * Writes the prepared revision with the given signature value in the {@code /Contents} placeholder. This method can be called several times.
+	 *
+	 * @param signatureValue the encoded CMS signature or timestamp token
+	 * @param signedStream   the destination of the signed document, it is not closed
+	 * @throws DSSException if the signature value does not fit in the placeholder
+	 */
+	public void sign(final byte[] signatureValue, final OutputStream signedStream) throws DSSException {
+
+		// '<' and '>' delimit the hexadecimal string
+		final long placeholderStart = byteRange[1] + 1;
+		final long placeholderLength = byteRange[2] - 1 - placeholderStart;
+		final byte[] hexSignatureValue = DSSUtils.encodeHexString(signatureValue).toUpperCase(Locale.ENGLISH).getBytes();
+		if (hexSignatureValue.length > placeholderLength) {
+			throw new DSSException("The signature value (" + signatureValue.length + " bytes) does not fit in the space reserved in the document (" + placeholderLength / 2 + " bytes)!");
+		}
+		final InputStream inputStream = DSSUtils.toInputStream(preparedFile);
+		try {
+
+			copy(inputStream, signedStream, placeholderStart);
+			signedStream.write(hexSignatureValue);
+			skip(inputStream, hexSignatureValue.length);
+			DSSUtils.copy(inputStream, signedStream);
+		} catch (IOException e) {
+			throw new DSSException(e);
+		} finally {
+			DSSUtils.closeQuietly(inputStream);
+		}
+	}
+
+	private static void copy(final InputStream inputStream, final OutputStream outputStream, final long length) throws IOException {
+
+		final byte[] buffer = new byte[8192];
+		long remaining = length;
+		while (remaining > 0) {
+
+			final int count = inputStream.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+			if (count == -1) {
+				throw new DSSException("Unexpected end of the prepared document!");
+			}
+			outputStream.write(buffer, 0, count);
+			remaining -= count;
+		}
+	}
+
+	private static void skip(final InputStream inputStream, final long length) throws IOException {
+
+		long remaining = length;
+		while (remaining > 0) {
+
+			final long skipped = inputStream.skip(remaining);
+			if (skipped <= 0) {
+				throw new DSSException("Unexpected end of the prepared document!");
+			}
+			remaining -= skipped;
+		}
+	}
+
+	/**
+	 * Deletes the prepared revision.
+	 */
+	public void close() {
+		DSSUtils.delete(preparedFile);
+	}
+}
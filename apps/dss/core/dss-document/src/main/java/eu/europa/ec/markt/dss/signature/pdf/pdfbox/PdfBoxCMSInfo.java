@@ -24,6 +24,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
 import java.security.cert.X509Certificate;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
@@ -58,9 +59,9 @@ abstract class PdfBoxCMSInfo implements PdfSignatureOrDocTimestampInfo {
 	protected final byte[] cms;
 
 	/**
-	 * The original signed pdf document
+	 * The original signed pdf document: a view on the buffer shared by all the signatures of the document
 	 */
-	final byte[] signedBytes;
+	final PdfByteRangeDocument signedContent;
 
 	protected InputStream inputStream;
 	private boolean verified;
@@ -73,11 +74,12 @@ abstract class PdfBoxCMSInfo implements PdfSignatureOrDocTimestampInfo {
 	 * @param outerCatalog       the PDF Dict of the outer document, if the PDFDocument in a enclosed revision. Can be null.
 	 * @param document           the signed PDFDocument
 	 * @param cms                the CMS bytes (CAdES signature)
-	 * @param inputStream        the stream of the whole signed document
+	 * @param pdfBytes           the buffer holding the whole signed document
+	 * @param length             the length of the revision in the buffer
 	 * @throws IOException
 	 */
-	PdfBoxCMSInfo(CertificatePool validationCertPool, PdfDict outerCatalog, PDDocument document, PDSignature signature, byte[] cms,
-	              InputStream inputStream) throws DSSException, IOException {
+	PdfBoxCMSInfo(CertificatePool validationCertPool, PdfDict outerCatalog, PDDocument document, PDSignature signature, byte[] cms, byte[] pdfBytes,
+	              int length) throws DSSException, IOException {
 		this.validationCertPool = validationCertPool;
 		this.outerCatalog = PdfDssDict.build(outerCatalog);
 		this.cms = cms;
@@ -87,15 +89,11 @@ abstract class PdfBoxCMSInfo implements PdfSignatureOrDocTimestampInfo {
 		final COSDictionary cosDictionary = document.getDocumentCatalog().getCOSDictionary();
 		final PdfBoxDict documentDict = new PdfBoxDict(cosDictionary, document);
 		documentDictionary = PdfDssDict.build(documentDict);
-		try {
-			if (cms == null) {
-				// due to not very good revision extracting
-				throw new DSSPadesNoSignatureFound();
-			}
-			signedBytes = signature.getSignedContent(inputStream);
-		} catch (IOException e) {
-			throw new DSSException(e);
+		if (cms == null) {
+			// due to not very good revision extracting
+			throw new DSSPadesNoSignatureFound();
 		}
+		signedContent = new PdfByteRangeDocument(pdfBytes, length, signatureByteRange);
 	}
 
 	@Override
@@ -104,7 +102,7 @@ abstract class PdfBoxCMSInfo implements PdfSignatureOrDocTimestampInfo {
 		if (!verified) {
 
 			verifyResult = checkIntegrityOnce();
-			LOG.debug("Verify embedded CAdES Signature on signedBytes size {}. Signature intact: {}", signedBytes.length, verifyResult);
+			LOG.debug("Verify embedded CAdES Signature on byte range {}. Signature intact: {}", Arrays.toString(signatureByteRange), verifyResult);
 			verified = true;
 		}
 		return verifyResult;
@@ -126,15 +124,12 @@ abstract class PdfBoxCMSInfo implements PdfSignatureOrDocTimestampInfo {
 	 * @return the byte of the originally signed document
 	 */
 	public byte[] getSignedDocumentBytes() {
-		return signedBytes;
+		return signedContent.getBytes();
 	}
 
 	@Override
 	public byte[] getOriginalBytes() {
-		final int length = signatureByteRange[1];
-		final byte[] result = new byte[length];
-		System.arraycopy(signedBytes, 0, result, 0, length);
-		return result;
+		return signedContent.getFirstRangeBytes();
 	}
 
 	@Override
@@ -36,6 +36,7 @@ import eu.europa.ec.markt.dss.signature.DSSDocument;
 import eu.europa.ec.markt.dss.signature.pdf.PDFSignatureService;
 import eu.europa.ec.markt.dss.signature.pdf.PDFTimestampService;
 import eu.europa.ec.markt.dss.signature.pdf.PdfDict;
+import eu.europa.ec.markt.dss.signature.pdf.PdfSigningSession;
 import eu.europa.ec.markt.dss.validation102853.tsp.TSPSource;
 
 class PdfBoxDocTimeStampService extends PdfBoxSignatureService implements PDFSignatureService, PDFTimestampService {
@@ -54,13 +55,16 @@ class PdfBoxDocTimeStampService extends PdfBoxSignatureService implements PDFSig
 	                      final Map.Entry<String, PdfDict>... dictToAdd) throws DSSException {
 
 		final DigestAlgorithm timestampDigestAlgorithm = parameters.getSignatureTimestampParameters().getDigestAlgorithm();
-		InputStream inputStream = document.openStream();
-		final byte[] digest = digest(inputStream, parameters, timestampDigestAlgorithm, dictToAdd);
-		DSSUtils.closeQuietly(inputStream);
-		final TimeStampToken timeStampToken = tspSource.getTimeStampResponse(timestampDigestAlgorithm, digest);
-		final byte[] encoded = DSSASN1Utils.getEncoded(timeStampToken);
-		inputStream = document.openStream();
-		sign(inputStream, encoded, signedStream, parameters, timestampDigestAlgorithm, dictToAdd);
+		final InputStream inputStream = document.openStream();
+		final PdfSigningSession signingSession = prepare(inputStream, parameters, timestampDigestAlgorithm, dictToAdd);
 		DSSUtils.closeQuietly(inputStream);
+		try {
+
+			final TimeStampToken timeStampToken = tspSource.getTimeStampResponse(timestampDigestAlgorithm, signingSession.getDigest());
+			final byte[] encoded = DSSASN1Utils.getEncoded(timeStampToken);
+			signingSession.sign(encoded, signedStream);
+		} finally {
+			signingSession.close();
+		}
 	}
 }
@@ -21,7 +21,6 @@
 package eu.europa.ec.markt.dss.signature.pdf.pdfbox;
 
 import java.io.IOException;
-import java.io.InputStream;
 import java.security.cert.X509Certificate;
 import java.util.List;
 
@@ -63,11 +62,13 @@ class PdfBoxDocTimestampInfo extends PdfBoxCMSInfo implements PdfDocTimestampInf
      * @param outerCatalog       the PDF Dict of the outer document, if the PDFDocument in a enclosed revision. Can be null.
      * @param document           the signed PDFDocument
      * @param cms                the CMS (CAdES) bytes
-     * @param inputStream        the stream of the whole signed document
+     * @param pdfBytes           the buffer holding the whole signed document
+     * @param length             the length of the revision in the buffer
      * @throws IOException
      */
-    PdfBoxDocTimestampInfo(CertificatePool validationCertPool, PdfDict outerCatalog, PDDocument document, PDSignature signature, byte[] cms, InputStream inputStream) throws DSSException, IOException {
-        super(validationCertPool, outerCatalog, document, signature, cms, inputStream);
+    PdfBoxDocTimestampInfo(CertificatePool validationCertPool, PdfDict outerCatalog, PDDocument document, PDSignature signature, byte[] cms, byte[] pdfBytes,
+                           int length) throws DSSException, IOException {
+        super(validationCertPool, outerCatalog, document, signature, cms, pdfBytes, length);
         try {
             TimeStampToken timeStampToken = new TimeStampToken(new CMSSignedData(cms));
 
@@ -95,10 +96,10 @@ class PdfBoxDocTimestampInfo extends PdfBoxCMSInfo implements PdfDocTimestampInf
         signatureCryptographicVerification.setReferenceDataFound(false);
         signatureCryptographicVerification.setReferenceDataIntact(false);
         signatureCryptographicVerification.setSignatureIntact(false);
-        if (signedBytes != null) {
+        if (signedContent != null) {
             signatureCryptographicVerification.setReferenceDataFound(true);
         }
-        signatureCryptographicVerification.setReferenceDataIntact(timestampToken.matchData(signedBytes));
+        signatureCryptographicVerification.setReferenceDataIntact(timestampToken.matchData(signedContent.getBytes()));
         signatureCryptographicVerification.setSignatureIntact(timestampToken.isSignatureValid());
         return signatureCryptographicVerification;
     }
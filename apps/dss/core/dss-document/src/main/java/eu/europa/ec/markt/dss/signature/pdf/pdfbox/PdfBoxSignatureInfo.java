@@ -21,7 +21,6 @@
 package eu.europa.ec.markt.dss.signature.pdf.pdfbox;
 
 import java.io.IOException;
-import java.io.InputStream;
 import java.security.cert.X509Certificate;
 import java.util.List;
 
@@ -31,7 +30,6 @@ import org.bouncycastle.cms.CMSException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import eu.europa.ec.markt.dss.signature.InMemoryDocument;
 import eu.europa.ec.markt.dss.signature.pdf.PdfDict;
 import eu.europa.ec.markt.dss.signature.pdf.PdfSignatureInfo;
 import eu.europa.ec.markt.dss.validation102853.CertificatePool;
@@ -49,16 +47,16 @@ class PdfBoxSignatureInfo extends PdfBoxCMSInfo implements PdfSignatureInfo {
 	 * @param outerCatalog       the PDF Dict of the outer document, if the PDFDocument in a enclosed revision. Can be null.
 	 * @param document           the signed PDFDocument
 	 * @param cms                the CMS (CAdES) bytes
-	 * @param inputStream        the stream of the whole signed document
+	 * @param pdfBytes           the buffer holding the whole signed document
+	 * @param length             the length of the revision in the buffer
 	 * @throws IOException
 	 */
-	PdfBoxSignatureInfo(CertificatePool validationCertPool, PdfDict outerCatalog, PDDocument document, PDSignature signature, byte[] cms,
-	                    InputStream inputStream) throws IOException {
-		super(validationCertPool, outerCatalog, document, signature, cms, inputStream);
+	PdfBoxSignatureInfo(CertificatePool validationCertPool, PdfDict outerCatalog, PDDocument document, PDSignature signature, byte[] cms, byte[] pdfBytes,
+	                    int length) throws IOException {
+		super(validationCertPool, outerCatalog, document, signature, cms, pdfBytes, length);
 		try {
 			cades = new CAdESSignature(cms, validationCertPool);
-			final InMemoryDocument detachedContent = new InMemoryDocument(signedBytes);
-			cades.setDetachedContents(detachedContent);
+			cades.setDetachedContents(signedContent);
 		} catch (CMSException e) {
 			throw new IOException(e);
 		}
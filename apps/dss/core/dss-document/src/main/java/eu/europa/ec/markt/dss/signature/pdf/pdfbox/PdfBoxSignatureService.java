@@ -28,6 +28,7 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.RandomAccessFile;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
@@ -57,6 +58,7 @@ import eu.europa.ec.markt.dss.signature.pdf.PDFSignatureService;
 import eu.europa.ec.markt.dss.signature.pdf.PdfDict;
 import eu.europa.ec.markt.dss.signature.pdf.PdfDocTimestampInfo;
 import eu.europa.ec.markt.dss.signature.pdf.PdfSignatureOrDocTimestampInfo;
+import eu.europa.ec.markt.dss.signature.pdf.PdfSigningSession;
 import eu.europa.ec.markt.dss.signature.pdf.SignatureValidationCallback;
 import eu.europa.ec.markt.dss.validation102853.CertificatePool;
 import eu.europa.ec.markt.dss.validation102853.TimestampType;
@@ -69,29 +71,11 @@ class PdfBoxSignatureService implements PDFSignatureService {
 	public byte[] digest(final InputStream toSignDocument, final SignatureParameters parameters, final DigestAlgorithm digestAlgorithm,
 	                     final Map.Entry<String, PdfDict>... extraDictionariesToAddBeforeSign) throws DSSException {
 
-		final byte[] signatureValue = DSSUtils.EMPTY_BYTE_ARRAY;
-		File toSignFile = null;
-		File signedFile = null;
-		PDDocument pdDocument = null;
+		final PdfSigningSession signingSession = prepare(toSignDocument, parameters, digestAlgorithm, extraDictionariesToAddBeforeSign);
 		try {
-
-			toSignFile = DSSPDFUtils.getFileFromPdfData(toSignDocument);
-
-			pdDocument = PDDocument.load(toSignFile);
-			addExtraDictionaries(pdDocument, extraDictionariesToAddBeforeSign);
-			PDSignature pdSignature = createSignatureDictionary(parameters);
-
-			signedFile = File.createTempFile("sd-dss-", "-signed.pdf");
-			final FileOutputStream fileOutputStream = DSSPDFUtils.getFileOutputStream(toSignFile, signedFile);
-
-			final byte[] digestValue = signDocumentAndReturnDigest(parameters, signatureValue, signedFile, fileOutputStream, pdDocument, pdSignature, digestAlgorithm);
-			return digestValue;
-		} catch (IOException e) {
-			throw new DSSException(e);
+			return signingSession.getDigest();
 		} finally {
-			DSSUtils.delete(toSignFile);
-			DSSUtils.delete(signedFile);
-			DSSPDFUtils.close(pdDocument);
+			signingSession.close();
 		}
 	}
 
@@ -99,14 +83,25 @@ class PdfBoxSignatureService implements PDFSignatureService {
 	public void sign(final InputStream pdfData, final byte[] signatureValue, final OutputStream signedStream, final SignatureParameters parameters,
 	                 final DigestAlgorithm digestAlgorithm, final Map.Entry<String, PdfDict>... extraDictionariesToAddBeforeSign) throws DSSException {
 
+		final PdfSigningSession signingSession = prepare(pdfData, parameters, digestAlgorithm, extraDictionariesToAddBeforeSign);
+		try {
+			signingSession.sign(signatureValue, signedStream);
+		} finally {
+			signingSession.close();
+		}
+	}
+
+	@Override
+	public PdfSigningSession prepare(final InputStream toSignDocument, final SignatureParameters parameters, final DigestAlgorithm digestAlgorithm,
+	                                 final Map.Entry<String, PdfDict>... extraDictionariesToAddBeforeSign) throws DSSException {
+
 		File toSignFile = null;
 		File signedFile = null;
-		FileInputStream fileInputStream = null;
-		FileInputStream finalFileInputStream = null;
 		PDDocument pdDocument = null;
+		PdfSigningSession signingSession = null;
 		try {
 
-			toSignFile = DSSPDFUtils.getFileFromPdfData(pdfData);
+			toSignFile = DSSPDFUtils.getFileFromPdfData(toSignDocument);
 
 			pdDocument = PDDocument.load(toSignFile);
 			addExtraDictionaries(pdDocument, extraDictionariesToAddBeforeSign);
@@ -115,27 +110,32 @@ class PdfBoxSignatureService implements PDFSignatureService {
 			signedFile = File.createTempFile("sd-dss-", "-signed.pdf");
 			final FileOutputStream fileOutputStream = DSSPDFUtils.getFileOutputStream(toSignFile, signedFile);
 
-			signDocumentAndReturnDigest(parameters, signatureValue, signedFile, fileOutputStream, pdDocument, pdSignature, digestAlgorithm);
-
-			finalFileInputStream = new FileInputStream(signedFile);
-			DSSUtils.copy(finalFileInputStream, signedStream);
+			signingSession = prepareRevision(parameters, toSignFile.length(), signedFile, fileOutputStream, pdDocument, pdSignature, digestAlgorithm);
+			return signingSession;
 		} catch (IOException e) {
 			throw new DSSException(e);
 		} finally {
-			DSSUtils.closeQuietly(fileInputStream);
-			DSSUtils.closeQuietly(finalFileInputStream);
 			DSSUtils.delete(toSignFile);
-			DSSUtils.delete(signedFile);
+			if (signingSession == null) {
+				DSSUtils.delete(signedFile);
+			}
 			DSSPDFUtils.close(pdDocument);
 		}
 	}
 
-	private byte[] signDocumentAndReturnDigest(final SignatureParameters parameters, final byte[] signatureBytes, final File signedFile, final FileOutputStream fileOutputStream,
-	                                           final PDDocument pdDocument, final PDSignature pdSignature, final DigestAlgorithm digestAlgorithm) throws DSSException {
+	/**
+	 * Writes the new revision with an empty signature: PDFBox reserves the /Contents placeholder and streams the signed byte range to the {@code SignatureInterface}.
+	 *
+	 * @param revisionStart the length of the original document, where the new revision starts
+	 * @return the {@code PdfSigningSession} holding the prepared revision
+	 */
+	private PdfSigningSession prepareRevision(final SignatureParameters parameters, final long revisionStart, final File signedFile, final FileOutputStream fileOutputStream,
+	                                          final PDDocument pdDocument, final PDSignature pdSignature, final DigestAlgorithm digestAlgorithm) throws DSSException {
 
 		try {
 
 			final MessageDigest digest = DSSUtils.getMessageDigest(digestAlgorithm);
+			final long[] signedLength = {0};
 			// register signature dictionary and sign interface
 			SignatureInterface signatureInterface = new SignatureInterface() {
 
@@ -146,8 +146,9 @@ class PdfBoxSignatureService implements PDFSignatureService {
 					int count;
 					while ((count = content.read(b)) > 0) {
 						digest.update(b, 0, count);
+						signedLength[0] += count;
 					}
-					return signatureBytes;
+					return DSSUtils.EMPTY_BYTE_ARRAY;
 				}
 			};
 			pdDocument.addSignature(pdSignature, signatureInterface);
@@ -158,7 +159,8 @@ class PdfBoxSignatureService implements PDFSignatureService {
 				LOG.debug("Digest to be signed: " + DSSUtils.encodeHexString(digestValue));
 			}
 			fileOutputStream.close();
-			return digestValue;
+			final int[] byteRange = getByteRange(signedFile, revisionStart, signedLength[0]);
+			return new PdfSigningSession(signedFile, byteRange, digestValue);
 		} catch (NoSuchAlgorithmException e) {
 			throw new DSSException(e);
 		} catch (IOException e) {
@@ -168,6 +170,50 @@ class PdfBoxSignatureService implements PDFSignatureService {
 		}
 	}
 
+	/**
+	 * This method locates the /Contents placeholder in the new revision. Its length is the part of the document which is not signed; it is the only string of hexadecimal
+	 * zeros of this length delimited by '&lt;' and '&gt;' in the revision.
+	 *
+	 * @param signedFile    the prepared document
+	 * @param revisionStart the offset of the new revision
+	 * @param signedLength  the number of signed bytes
+	 * @return the /ByteRange of the signature
+	 */
+	private static int[] getByteRange(final File signedFile, final long revisionStart, final long signedLength) throws IOException {
+
+		final long fileLength = signedFile.length();
+		final int placeholderLength = (int) (fileLength - signedLength);
+		final RandomAccessFile randomAccessFile = new RandomAccessFile(signedFile, "r");
+		try {
+
+			final byte[] revision = new byte[(int) (fileLength - revisionStart)];
+			randomAccessFile.seek(revisionStart);
+			randomAccessFile.readFully(revision);
+			for (int ii = 0; ii + placeholderLength <= revision.length; ii++) {
+
+				if (revision[ii] == '<' && revision[ii + placeholderLength - 1] == '>' && isZeroHexString(revision, ii + 1, ii + placeholderLength - 1)) {
+
+					final int placeholderStart = (int) (revisionStart + ii);
+					return new int[]{0, placeholderStart, placeholderStart + placeholderLength, (int) (fileLength - placeholderStart - placeholderLength)};
+				}
+			}
+			throw new DSSException("The signature placeholder cannot be found in the prepared document!");
+		} finally {
+			randomAccessFile.close();
+		}
+	}
+
+	private static boolean isZeroHexString(final byte[] bytes, final int from, final int to) {
+
+		for (int ii = from; ii < to; ii++) {
+
+			if (bytes[ii] != '0') {
+				return false;
+			}
+		}
+		return true;
+	}
+
 	private void addExtraDictionaries(final PDDocument doc, final Map.Entry<String, PdfDict>[] extraDictionariesToAddBeforeSign) {
 
 		final COSDictionary cosDictionary = doc.getDocumentCatalog().getCOSDictionary();
@@ -225,9 +271,15 @@ class PdfBoxSignatureService implements PDFSignatureService {
 
 	@Override
 	public void validateSignatures(CertificatePool validationCertPool, InputStream input, SignatureValidationCallback callback) throws DSSException {
+		// The document is read once: all the revisions and signatures share this buffer
+		final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		DSSUtils.copy(input, buffer);
+		final byte[] pdfBytes = buffer.toByteArray();
+		// The ends of the revisions are located once for all the signatures
+		final int[] revisionEnds = getRevisionEnds(pdfBytes);
 		// recursive search of signature
-		Map<String, Map<PdfSignatureOrDocTimestampInfo, Boolean>> byteRangeMap = new HashMap<String, Map<PdfSignatureOrDocTimestampInfo, Boolean>>();
-		final Map<PdfSignatureOrDocTimestampInfo, Boolean> signaturesFound = validateSignatures(validationCertPool, byteRangeMap, null, input);
+		final Map<Integer, Map<PdfSignatureOrDocTimestampInfo, Boolean>> revisions = new HashMap<Integer, Map<PdfSignatureOrDocTimestampInfo, Boolean>>();
+		final Map<PdfSignatureOrDocTimestampInfo, Boolean> signaturesFound = validateSignatures(validationCertPool, revisions, revisionEnds, null, pdfBytes, pdfBytes.length);
 		for (PdfSignatureOrDocTimestampInfo pdfSignatureOrDocTimestampInfo : signaturesFound.keySet()) {
 			callback.validate(pdfSignatureOrDocTimestampInfo);
 		}
@@ -237,28 +289,27 @@ class PdfBoxSignatureService implements PDFSignatureService {
 
 	/**
 	 * @param validationCertPool
-	 * @param byteRangeMap
-	 * @param outerCatalog       the PdfDictionary of the document that enclose the document stored in the input InputStream
-	 * @param input              the Pdf bytes to open as a PDF
+	 * @param revisions          the signatures found in the revisions already analysed, by length of the revision
+	 * @param revisionEnds       the ends of the revisions of the document, see {@link #getRevisionEnds(byte[])}
+	 * @param outerCatalog       the PdfDictionary of the document that enclose the analysed revision
+	 * @param pdfBytes           the buffer holding the whole Pdf document
+	 * @param length             the length of the revision to open as a PDF, the revision starts at the beginning of the buffer
 	 * @return
 	 * @throws DSSException
 	 */
 	private Map<PdfSignatureOrDocTimestampInfo, Boolean> validateSignatures(CertificatePool validationCertPool,
-	                                                                        Map<String, Map<PdfSignatureOrDocTimestampInfo, Boolean>> byteRangeMap, PdfDict outerCatalog,
-	                                                                        InputStream input) throws DSSException {
+	                                                                        Map<Integer, Map<PdfSignatureOrDocTimestampInfo, Boolean>> revisions, int[] revisionEnds,
+	                                                                        PdfDict outerCatalog, byte[] pdfBytes, int length) throws DSSException {
 		Map<PdfSignatureOrDocTimestampInfo, Boolean> signaturesFound = new LinkedHashMap<PdfSignatureOrDocTimestampInfo, Boolean>();
-		final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
 		PDDocument doc = null;
 		try {
 
-			DSSUtils.copy(input, buffer);
-
-			doc = PDDocument.load(new ByteArrayInputStream(buffer.toByteArray()));
+			doc = PDDocument.load(new ByteArrayInputStream(pdfBytes, 0, length));
 			final PdfDict catalog = new PdfBoxDict(doc.getDocumentCatalog().getCOSDictionary(), doc);
 
 			final List<PDSignature> signatureDictionaries = doc.getSignatureDictionaries();
 			if (LOG.isDebugEnabled()) {
-				LOG.debug("Found {} signatures in PDF dictionary of PDF sized {} bytes", signatureDictionaries.size(), buffer.size());
+				LOG.debug("Found {} signatures in PDF dictionary of PDF sized {} bytes", signatureDictionaries.size(), length);
 			}
 			for (int i = 0; i < signatureDictionaries.size(); i++) {
 
@@ -279,9 +330,9 @@ class PdfBoxSignatureService implements PDFSignatureService {
 				PdfSignatureOrDocTimestampInfo signatureInfo;
 				try {
 					if (PdfBoxDocTimeStampService.SUB_FILTER_ETSI_RFC3161.getName().equals(subFilter)) {
-						signatureInfo = PdfSignatureFactory.createPdfTimestampInfo(validationCertPool, outerCatalog, doc, signature, cms, buffer);
+						signatureInfo = PdfSignatureFactory.createPdfTimestampInfo(validationCertPool, outerCatalog, doc, signature, cms, pdfBytes, length);
 					} else {
-						signatureInfo = PdfSignatureFactory.createPdfSignatureInfo(validationCertPool, outerCatalog, doc, signature, cms, buffer);
+						signatureInfo = PdfSignatureFactory.createPdfSignatureInfo(validationCertPool, outerCatalog, doc, signature, cms, pdfBytes, length);
 					}
 				} catch (PdfSignatureOrDocTimestampInfo.DSSPadesNoSignatureFound e) {
 					LOG.debug("No signature found in signature Dictionary:Content", e);
@@ -290,17 +341,25 @@ class PdfBoxSignatureService implements PDFSignatureService {
 
 				signatureInfo = signatureAlreadyInListOrSelf(signaturesFound, signatureInfo);
 
-				// should store in memory this byte range with a list of signature found there
-				final String byteRange = Arrays.toString(signature.getByteRange());
-				Map<PdfSignatureOrDocTimestampInfo, Boolean> innerSignaturesFound = byteRangeMap.get(byteRange);
+				final int[] byteRange = signatureInfo.getSignatureByteRange();
+				if (!isByteRangeInRevision(byteRange, length)) {
+
+					// a malformed /ByteRange cannot designate a previous revision: the signature is kept but no inner signature is searched
+					LOG.warn("The /ByteRange {} of the signature does not fit in the revision of {} bytes: no previous revision is analysed.", Arrays.toString(byteRange), length);
+					signaturesFound.put(signatureInfo, true);
+					continue;
+				}
+				// The revision covered by this signature is the last complete revision before its signature value: each revision is analysed once (whatever the number of
+				// signatures covering it), as a view on the shared buffer. It is strictly shorter than the current revision, which guarantees the end of the recursion.
+				final Integer revisionLength = getCoveredRevisionEnd(revisionEnds, byteRange[1]);
+				Map<PdfSignatureOrDocTimestampInfo, Boolean> innerSignaturesFound = revisions.get(revisionLength);
 				if (innerSignaturesFound == null) {
 					// Recursive call to find inner signatures in the byte range covered by this signature. Deep first search.
-					final byte[] originalBytes = signatureInfo.getOriginalBytes();
 					if (LOG.isDebugEnabled()) {
-						LOG.debug("Searching signature in the previous revision of the document, size of revision is {} bytes", originalBytes.length);
+						LOG.debug("Searching signature in the previous revision of the document, size of revision is {} bytes", revisionLength);
 					}
-					innerSignaturesFound = validateSignatures(validationCertPool, byteRangeMap, catalog, new ByteArrayInputStream(originalBytes));
-					byteRangeMap.put(byteRange, innerSignaturesFound);
+					innerSignaturesFound = validateSignatures(validationCertPool, revisions, revisionEnds, catalog, pdfBytes, revisionLength);
+					revisions.put(revisionLength, innerSignaturesFound);
 				}
 
 				// need to mark a signature as included inside another one. It's needed to link timestamp signature with the signatures covered by the timestamp.
@@ -313,7 +372,7 @@ class PdfBoxSignatureService implements PDFSignatureService {
 				signaturesFound.put(signatureInfo, true);
 			}
 		} catch (IOException up) {
-			LOG.error("Error loading buffer of size {}", buffer.size(), up);
+			LOG.error("Error loading buffer of size {}", length, up);
 			// ignore error when loading signatures
 		} finally {
 			DSSPDFUtils.close(doc);
@@ -321,6 +380,87 @@ class PdfBoxSignatureService implements PDFSignatureService {
 		return signaturesFound;
 	}
 
+	/**
+	 * This method locates, in a single pass over the buffer, the end of each revision of the document: the position following each %%EOF marker and its end of line.
+	 *
+	 * @param pdfBytes the buffer holding the whole PDF document
+	 * @return the ends of the revisions in ascending order
+	 */
+	private static int[] getRevisionEnds(final byte[] pdfBytes) {
+
+		final byte[] eofMarker = DSSUtils.getUtf8Bytes("%%EOF");
+		int[] revisionEnds = new int[4];
+		int count = 0;
+		final int last = pdfBytes.length - eofMarker.length;
+		for (int ii = 0; ii <= last; ii++) {
+
+			if (pdfBytes[ii] != '%' || !startsWith(pdfBytes, ii, eofMarker)) {
+				continue;
+			}
+			int end = ii + eofMarker.length;
+			if (end < pdfBytes.length && pdfBytes[end] == '\r') {
+				end++;
+			}
+			if (end < pdfBytes.length && pdfBytes[end] == '\n') {
+				end++;
+			}
+			if (count == revisionEnds.length) {
+				revisionEnds = Arrays.copyOf(revisionEnds, count * 2);
+			}
+			revisionEnds[count++] = end;
+			ii = end - 1;
+		}
+		return Arrays.copyOf(revisionEnds, count);
+	}
+
+	private static boolean startsWith(final byte[] bytes, final int offset, final byte[] prefix) {
+
+		for (int ii = 0; ii < prefix.length; ii++) {
+
+			if (bytes[offset + ii] != prefix[ii]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * The first range of a signature ends where its signature value starts, within the revision holding the signature: the revision covered by the signature is the last
+	 * one ending before this position.
+	 *
+	 * @param revisionEnds        the ends of the revisions in ascending order
+	 * @param signatureValueStart the end of the first range of the /ByteRange
+	 * @return the length of the covered revision, {@code signatureValueStart} if no revision ends before it
+	 */
+	private static int getCoveredRevisionEnd(final int[] revisionEnds, final int signatureValueStart) {
+
+		int coveredRevisionEnd = signatureValueStart;
+		for (final int revisionEnd : revisionEnds) {
+
+			if (revisionEnd > signatureValueStart) {
+				break;
+			}
+			coveredRevisionEnd = revisionEnd;
+		}
+		return coveredRevisionEnd;
+	}
+
+	/**
+	 * Checks that the /ByteRange starts at the beginning of the document, that the signature value lies between its two ranges and that the second range ends within the
+	 * revision.
+	 *
+	 * @param byteRange the /ByteRange of the signature
+	 * @param length    the length of the revision in which the signature was found
+	 * @return {@code true} if the /ByteRange fits in the revision
+	 */
+	private static boolean isByteRangeInRevision(final int[] byteRange, final int length) {
+
+		if (byteRange == null || byteRange.length != 4) {
+			return false;
+		}
+		return byteRange[0] == 0 && byteRange[1] > 0 && byteRange[1] < byteRange[2] && byteRange[3] >= 0 && (long) byteRange[2] + byteRange[3] <= length;
+	}
+
 	/**
 	 * This method is needed because we will encounter many times the same signature during our document analysis.
 	 * We make sure that we always add it only once.
@@ -0,0 +1,117 @@
+/*
+ * DSS - Digital Signature Services
+ *
+ * Copyright (C) 2013 European Commission, Directorate-General Internal Market and Services (DG MARKT), B-1049 Bruxelles/Brussel
+ *
+ * Developed by: 2013 ARHS Developments S.A. (rue Nicolas Bové 2B, L-1253 Luxembourg) http://www.arhs-developments.com
+ *
+ * This file is part of the "DSS - Digital Signature Services" project.
+ *
+ * "DSS - Digital Signature Services" is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU Lesser General Public License as published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * DSS is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * "DSS - Digital Signature Services".  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.europa.ec.markt.dss.signature.pdf.pdfbox;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+
+import eu.europa.ec.markt.dss.DSSUtils;
+import eu.europa.ec.markt.dss.exception.DSSException;
+import eu.europa.ec.markt.dss.signature.CommonDocument;
+import eu.europa.ec.markt.dss.signature.MimeType;
+
+/**
+ * This document represents the content signed by a PDF signature: the two ranges of its /ByteRange. It is a view on the buffer holding the whole PDF document which is
+ * shared by all the signatures and revisions of the document; the signed content is only copied by {@link #getBytes()}.
+ *
+ * @version $Revision$ - $Date$
+ */
+class PdfByteRangeDocument extends CommonDocument {
+
+	private final byte[] pdfBytes;
+
+	private final int firstOffset;
+	private final int firstLength;
+	private final int secondOffset;
+	private final int secondLength;
+
+	/**
+	 * @param pdfBytes  the buffer holding the PDF document
+	 * @param length    the length of the document (or revision) in the buffer, the ranges are truncated to it
+	 * @param byteRange the /ByteRange of the signature
+	 */
+	PdfByteRangeDocument(final byte[] pdfBytes, final int length, final int[] byteRange) {
+
+		if (byteRange == null || byteRange.length != 4) {
+			throw new DSSException("The /ByteRange of the signature is not valid!");
+		}
+		for (final int value : byteRange) {
+
+			if (value < 0) {
+				throw new DSSException("The /ByteRange of the signature is not valid: negative value " + value);
+			}
+		}
+		this.pdfBytes = pdfBytes;
+		// The ends of the ranges are computed in long: the sum of two values read from the document can overflow an int
+		firstOffset = bound(byteRange[0], length);
+		firstLength = bound((long) byteRange[0] + byteRange[1], length) - firstOffset;
+		secondOffset = bound(byteRange[2], length);
+		secondLength = bound((long) byteRange[2] + byteRange[3], length) - secondOffset;
+		mimeType = MimeType.PDF;
+	}
+
+	private static int bound(final long position, final int length) {
+		return (int) Math.max(0, Math.min(position, length));
+	}
+
+	@Override
+	public InputStream openStream() throws DSSException {
+
+		final ByteArrayInputStream firstRange = new ByteArrayInputStream(pdfBytes, firstOffset, firstLength);
+		final ByteArrayInputStream secondRange = new ByteArrayInputStream(pdfBytes, secondOffset, secondLength);
+		return new SequenceInputStream(firstRange, secondRange);
+	}
+
+	@Override
+	public byte[] getBytes() throws DSSException {
+
+		final byte[] bytes = new byte[firstLength + secondLength];
+		System.arraycopy(pdfBytes, firstOffset, bytes, 0, firstLength);
+		System.arraycopy(pdfBytes, secondOffset, bytes, firstLength, secondLength);
+		return bytes;
+	}
+
+	/**
+	 * @return the bytes of the document before the signature value (the first range)
+	 */
+	byte[] getFirstRangeBytes() {
+
+		final byte[] bytes = new byte[firstLength];
+		System.arraycopy(pdfBytes, firstOffset, bytes, 0, firstLength);
+		return bytes;
+	}
+
+	@Override
+	public String getName() {
+		return null;
+	}
+
+	@Override
+	public String getAbsolutePath() {
+		return "PdfByteRangeDocument";
+	}
+
+	@Override
+	public void save(final String path) throws DSSException {
+		DSSUtils.saveToFile(getBytes(), DSSUtils.getFile(path));
+	}
+}
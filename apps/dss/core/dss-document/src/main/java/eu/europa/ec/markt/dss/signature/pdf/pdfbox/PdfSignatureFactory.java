@@ -20,8 +20,6 @@
 
 package eu.europa.ec.markt.dss.signature.pdf.pdfbox;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 
 import org.apache.pdfbox.pdmodel.PDDocument;
@@ -45,14 +43,14 @@ public class PdfSignatureFactory {
 
     // dependency to pdfbox/PDDocument is just for building inner object and pdf object can be closed after
     public static PdfSignatureInfo createPdfSignatureInfo(CertificatePool validationCertPool, PdfDict outerCatalog, PDDocument doc, PDSignature signature, byte[] cms,
-                                                          ByteArrayOutputStream buffer) throws IOException {
-        return new PdfBoxSignatureInfo(validationCertPool, outerCatalog, doc, signature, cms, new ByteArrayInputStream(buffer.toByteArray()));
+                                                          byte[] pdfBytes, int length) throws IOException {
+        return new PdfBoxSignatureInfo(validationCertPool, outerCatalog, doc, signature, cms, pdfBytes, length);
     }
 
     // dependency to pdfbox/PDDocument is just for building inner object and pdf object can be closed after
     public static PdfDocTimestampInfo createPdfTimestampInfo(CertificatePool validationCertPool, PdfDict outerCatalog, PDDocument doc, PDSignature signature, byte[] cms,
-                                                             ByteArrayOutputStream buffer) throws IOException {
-        return new PdfBoxDocTimestampInfo(validationCertPool, outerCatalog, doc, signature, cms, new ByteArrayInputStream(buffer.toByteArray()));
+                                                             byte[] pdfBytes, int length) throws IOException {
+        return new PdfBoxDocTimestampInfo(validationCertPool, outerCatalog, doc, signature, cms, pdfBytes, length);
     }
 
 }
@@ -21,7 +21,9 @@
 package eu.europa.ec.markt.dss.signature.xades;
 
 import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 
 import javax.xml.crypto.dsig.CanonicalizationMethod;
 
@@ -29,6 +31,7 @@ import org.w3c.dom.Text;
 
 import eu.europa.ec.markt.dss.DSSUtils;
 import eu.europa.ec.markt.dss.DSSXMLUtils;
+import eu.europa.ec.markt.dss.DigestAlgorithm;
 import eu.europa.ec.markt.dss.EncryptionAlgorithm;
 import eu.europa.ec.markt.dss.exception.DSSException;
 import eu.europa.ec.markt.dss.parameter.DSSReference;
@@ -99,12 +102,43 @@ class DetachedSignatureBuilder extends SignatureBuilder {
 	protected void incorporateReferences() throws DSSException {
 
 		final List<DSSReference> references = params.getReferences();
+		computeReferenceDigests(references);
 		for (final DSSReference reference : references) {
 
 			incorporateReference(reference);
 		}
 	}
 
+	/**
+	 * The detached documents are digested without transformation: all the digest algorithms used by the references to the same document are computed in one pass over its
+	 * content.
+	 *
+	 * @param references the {@code List} of {@code DSSReference}
+	 */
+	private static void computeReferenceDigests(final List<DSSReference> references) {
+
+		final Map<DSSDocument, List<DigestAlgorithm>> digestAlgorithmsByDocument = new IdentityHashMap<DSSDocument, List<DigestAlgorithm>>();
+		for (final DSSReference reference : references) {
+
+			final DSSDocument contents = reference.getContents();
+			if (contents == null || reference.getDigestMethodAlgorithm() == null) {
+				continue;
+			}
+			List<DigestAlgorithm> digestAlgorithms = digestAlgorithmsByDocument.get(contents);
+			if (digestAlgorithms == null) {
+
+				digestAlgorithms = new ArrayList<DigestAlgorithm>();
+				digestAlgorithmsByDocument.put(contents, digestAlgorithms);
+			}
+			digestAlgorithms.add(reference.getDigestMethodAlgorithm());
+		}
+		for (final Map.Entry<DSSDocument, List<DigestAlgorithm>> entry : digestAlgorithmsByDocument.entrySet()) {
+
+			final List<DigestAlgorithm> digestAlgorithms = entry.getValue();
+			entry.getKey().computeDigests(digestAlgorithms.toArray(new DigestAlgorithm[digestAlgorithms.size()]));
+		}
+	}
+
 	@Override
 	protected DSSDocument transformReference(final DSSReference reference) {
 
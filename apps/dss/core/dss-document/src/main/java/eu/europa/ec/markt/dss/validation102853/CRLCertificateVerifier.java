@@ -72,7 +72,6 @@ public class CRLCertificateVerifier implements CertificateStatusVerifier {
                 certificateToken.extraInfo().infoCRLIsNotValid();
                 return null;
             }
-            certificateToken.setRevocationToken(crlToken);
             return crlToken;
         } catch (final Exception e) {
 
@@ -20,6 +20,8 @@
 
 package eu.europa.ec.markt.dss.validation102853;
 
+import java.util.concurrent.ExecutorService;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -51,10 +53,22 @@ public class CryptographicSourceProvider implements CertificateVerifier {
 	private static final Logger LOG = LoggerFactory.getLogger(CryptographicSourceProvider.class);
 
 	/**
-	 * This field contains the validation certificate pool. To increase the performance of the validation it can be shared between different validation processes.
+	 * This field contains the validation certificate pool. To increase the performance of the validation it is shared between different validation processes: each validation
+	 * uses its own overlay on top of this pool.
 	 */
 	private CertificatePool validationPool;
 
+	/**
+	 * Indicates if the {@code validationPool} was built by this class from the trusted and adjunct certificate sources (and not set by the caller).
+	 */
+	private transient boolean validationPoolBuilt;
+
+	/**
+	 * The trusted certificate pool used to build the {@code validationPool}. When the trusted source provides a new pool (reload of the trusted lists) the validation pool is
+	 * rebuilt.
+	 */
+	private transient CertificatePool trustedCertPool;
+
 	/**
 	 * This field contains the reference to the trusted certificate source. This source is fixed, it means that the same source is used for different validations.
 	 */
@@ -90,6 +104,26 @@ public class CryptographicSourceProvider implements CertificateVerifier {
 	 */
 	private ListOCSPSource signatureOCSPSource;
 
+	/**
+	 * The application-scoped executor service shared by all validations to fetch the validation data.
+	 */
+	private transient ExecutorService executorService;
+
+	/**
+	 * The strategy used to query the online OCSP and CRL sources.
+	 */
+	private RevocationCheckingStrategy revocationCheckingStrategy = RevocationCheckingStrategy.SEQUENTIAL;
+
+	/**
+	 * The latency budget (in milliseconds) granted to the OCSP source before the CRL source is queried (hedged strategy only).
+	 */
+	private long revocationHedgingDelay = OCSPAndCRLCertificateVerifier.DEFAULT_HEDGING_DELAY;
+
+	/**
+	 * The executor running the concurrent OCSP and CRL lookups.
+	 */
+	private transient ExecutorService revocationExecutorService;
+
 	/**
 	 * This method returns a new instance of the {@code CommonCertificateVerifier} including the {@code OnlineCRLSource}, {@code OnlineOCSPSource} and {@code
 	 * CommonsDataLoader}.
@@ -161,13 +195,14 @@ public class CryptographicSourceProvider implements CertificateVerifier {
 
 	/**
 	 * This method allows to set the {@code CertificatePool} to be used during the validation process. The fact to reuse the same {@code CertificatePool} across different
-	 * validation processes increases the performances.
+	 * validation processes increases the performances. This pool is used as the base of the per-validation overlay pools.
 	 *
 	 * @param validationPool {@code CertificatePool} to be used
 	 */
 	@Override
 	public void setValidationPool(final CertificatePool validationPool) {
 		this.validationPool = validationPool;
+		this.validationPoolBuilt = false;
 	}
 
 	/**
@@ -224,6 +259,7 @@ public class CryptographicSourceProvider implements CertificateVerifier {
 	public void setTrustedCertSource(final TrustedCertificateSource trustedCertSource) {
 
 		this.trustedCertSource = trustedCertSource;
+		resetBuiltValidationPool();
 	}
 
 	/**
@@ -244,6 +280,16 @@ public class CryptographicSourceProvider implements CertificateVerifier {
 	public void setAdjunctCertSource(final CertificateSource adjunctCertSource) {
 
 		this.adjunctCertSource = adjunctCertSource;
+		resetBuiltValidationPool();
+	}
+
+	private synchronized void resetBuiltValidationPool() {
+
+		if (validationPoolBuilt) {
+
+			validationPool = null;
+			validationPoolBuilt = false;
+		}
 	}
 
 	/**
@@ -298,24 +344,96 @@ public class CryptographicSourceProvider implements CertificateVerifier {
 		this.dataLoader = dataLoader;
 	}
 
+	/**
+	 * The application-scoped executor service shared by all validations to fetch the validation data (AIA, OCSP, CRL).
+	 *
+	 * @return {@code ExecutorService} or null if each validation uses its own executor
+	 */
+	@Override
+	public ExecutorService getExecutorService() {
+		return executorService;
+	}
+
+	/**
+	 * The application-scoped executor service shared by all validations to fetch the validation data (AIA, OCSP, CRL). This executor is never shut down by the framework.
+	 *
+	 * @param executorService {@code ExecutorService}
+	 */
+	@Override
+	public void setExecutorService(final ExecutorService executorService) {
+		this.executorService = executorService;
+	}
+
+	@Override
+	public RevocationCheckingStrategy getRevocationCheckingStrategy() {
+		return revocationCheckingStrategy;
+	}
+
+	/**
+	 * Sets the strategy used to query the online OCSP and CRL sources. If {@code null} the {@code RevocationCheckingStrategy.SEQUENTIAL} strategy is used.
+	 *
+	 * @param revocationCheckingStrategy {@code RevocationCheckingStrategy}
+	 */
+	@Override
+	public void setRevocationCheckingStrategy(final RevocationCheckingStrategy revocationCheckingStrategy) {
+		this.revocationCheckingStrategy = revocationCheckingStrategy == null ? RevocationCheckingStrategy.SEQUENTIAL : revocationCheckingStrategy;
+	}
+
+	@Override
+	public long getRevocationHedgingDelay() {
+		return revocationHedgingDelay;
+	}
+
+	@Override
+	public void setRevocationHedgingDelay(final long revocationHedgingDelay) {
+		this.revocationHedgingDelay = revocationHedgingDelay;
+	}
+
+	@Override
+	public ExecutorService getRevocationExecutorService() {
+		return revocationExecutorService;
+	}
+
+	/**
+	 * The executor running the concurrent OCSP and CRL lookups. This executor is never shut down by the framework. If not set a bounded internal pool is used.
+	 *
+	 * @param revocationExecutorService {@code ExecutorService}
+	 */
+	@Override
+	public void setRevocationExecutorService(final ExecutorService revocationExecutorService) {
+		this.revocationExecutorService = revocationExecutorService;
+	}
+
 	/**
 	 * This method creates the validation pool of certificates which is used during the validation process. It contains the certificates that compose the trusted and the adjunct
 	 * certificate source.
+	 * <p/>
+	 * The certificates of the trusted and the adjunct certificate sources are merged only once into a frozen base pool which is shared by all validations. Each call returns a
+	 * new overlay pool on top of it: the certificates found during the validation (signature, OCSP, timestamps, AIA...) are added to this overlay only and are released with it.
 	 *
 	 * @return {@code CertificatePool}
 	 */
 	public CertificatePool createValidationPool() {
 
-		if (validationPool == null) {
+		return new CertificatePool(getBaseValidationPool());
+	}
+
+	private synchronized CertificatePool getBaseValidationPool() {
+
+		final CertificatePool currentTrustedCertPool = trustedCertSource == null ? null : trustedCertSource.getCertificatePool();
+		if (validationPool == null || (validationPoolBuilt && trustedCertPool != currentTrustedCertPool)) {
 
 			final CertificatePool validationPool = new CertificatePool();
-			if (trustedCertSource != null) {
-				validationPool.merge(trustedCertSource.getCertificatePool());
+			if (currentTrustedCertPool != null) {
+				validationPool.merge(currentTrustedCertPool);
 			}
 			if (adjunctCertSource != null) {
 				validationPool.merge(adjunctCertSource.getCertificatePool());
 			}
+			validationPool.freeze();
 			this.validationPool = validationPool;
+			this.validationPoolBuilt = true;
+			this.trustedCertPool = currentTrustedCertPool;
 		}
 		return validationPool;
 	}
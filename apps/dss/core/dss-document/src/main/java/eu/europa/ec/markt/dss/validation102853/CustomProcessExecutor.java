@@ -20,6 +20,8 @@
 package eu.europa.ec.markt.dss.validation102853;
 
 import java.util.Date;
+import java.util.EnumSet;
+import java.util.Set;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -31,6 +33,7 @@ import eu.europa.ec.markt.dss.validation102853.policy.ValidationPolicy;
 import eu.europa.ec.markt.dss.validation102853.processes.LongTermValidation;
 import eu.europa.ec.markt.dss.validation102853.report.DetailedReport;
 import eu.europa.ec.markt.dss.validation102853.report.DiagnosticData;
+import eu.europa.ec.markt.dss.validation102853.report.ReportType;
 import eu.europa.ec.markt.dss.validation102853.report.Reports;
 import eu.europa.ec.markt.dss.validation102853.report.SimpleReport;
 import eu.europa.ec.markt.dss.validation102853.report.SimpleReportBuilder;
@@ -87,6 +90,11 @@ public class CustomProcessExecutor implements ProcessExecutor {
 	 */
 	protected int concurrentThreadNumber = 0;
 
+	/**
+	 * The reports to be kept in the {@code Reports} returned by {@link #execute()}.
+	 */
+	protected Set<ReportType> reportTypes = EnumSet.allOf(ReportType.class);
+
 	/**
 	 * This is the default constructor. The process parameters must be initialised wih setters: {@code setDiagnosticDataDom} and {@code setValidationPolicyDom}
 	 */
@@ -104,6 +112,15 @@ public class CustomProcessExecutor implements ProcessExecutor {
 		this.concurrentThreadNumber = concurrentThreadNumber;
 	}
 
+	@Override
+	public void setReportTypes(final Set<ReportType> reportTypes) {
+
+		final EnumSet<ReportType> types = EnumSet.noneOf(ReportType.class);
+		types.addAll(reportTypes);
+		types.add(ReportType.SIMPLE_REPORT);
+		this.reportTypes = types;
+	}
+
 	@Override
 	public void setDiagnosticDataDom(final Document diagnosticDataDom) {
 		this.diagnosticDataDom = diagnosticDataDom;
@@ -143,6 +160,9 @@ public class CustomProcessExecutor implements ProcessExecutor {
 		processParams.setCountersignatureValidationPolicy(countersignatureValidationPolicy);
 		processParams.setCurrentTime(currentTime);
 		final XmlDom usedCertificates = diagnosticData.getElement("/DiagnosticData/UsedCertificates");
+		if (usedCertificates != null) {
+			usedCertificates.indexById("./Certificate");
+		}
 		processParams.setCertPool(usedCertificates);
 
 		final XmlNode mainNode = new XmlNode(NodeName.VALIDATION_DATA);
@@ -151,13 +171,13 @@ public class CustomProcessExecutor implements ProcessExecutor {
 		final LongTermValidation ltv = new LongTermValidation();
 		ltv.run(mainNode, processParams);
 
-		final Document validationReportDocument = mainNode.toDocument();
-		detailedReport = new DetailedReport(validationReportDocument);
+		detailedReport = reportTypes.contains(ReportType.DETAILED_REPORT) ? new DetailedReport(mainNode) : null;
 
 		final SimpleReportBuilder simpleReportBuilder = new SimpleReportBuilder(validationPolicy, diagnosticData);
 		simpleReport = simpleReportBuilder.build(processParams);
 
-		final Reports reports = new Reports(diagnosticData, detailedReport, simpleReport);
+		final DiagnosticData keptDiagnosticData = reportTypes.contains(ReportType.DIAGNOSTIC_DATA) ? diagnosticData : null;
+		final Reports reports = new Reports(keptDiagnosticData, detailedReport, simpleReport);
 		return reports;
 	}
 
@@ -17,9 +17,21 @@
  * You should have received a copy of the GNU Lesser General Public License along with
  * "DSS - Digital Signature Services".  If not, see <http://www.gnu.org/licenses/>.
  */
-
 package eu.europa.ec.markt.dss.validation102853;
 
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -28,7 +40,10 @@ import eu.europa.ec.markt.dss.validation102853.ocsp.OCSPSource;
 
 /**
  * Fetchs revocation data from a certificate by querying an OCSP server first and then a CRL server if no OCSP response
- * could be retrieved.
+ * could be retrieved. With the {@code RevocationCheckingStrategy.CONCURRENT} and {@code RevocationCheckingStrategy.HEDGED} strategies both sources can be queried at the same
+ * time, the first acceptable response wins.<p/>
+ * The lookups do not modify the {@code CertificateToken}: the retained revocation token is set by the calling thread only, a late lookup which could not be cancelled has no
+ * effect on the result.
  *
  * @version $Revision: 1820 $ - $Date: 2013-03-28 15:55:47 +0100 (Thu, 28 Mar 2013) $
  */
@@ -37,12 +52,35 @@ public class OCSPAndCRLCertificateVerifier implements CertificateStatusVerifier
 
 	private static final Logger LOG = LoggerFactory.getLogger(OCSPAndCRLCertificateVerifier.class);
 
+	/**
+	 * The default latency budget (in milliseconds) granted to the OCSP source before the CRL source is queried with the {@code RevocationCheckingStrategy.HEDGED} strategy.
+	 */
+	public static final long DEFAULT_HEDGING_DELAY = 1000;
+
+	/**
+	 * The maximum number of threads of the default executor. A blocked HTTP read cannot be cancelled: when all threads are busy (outage of a CA) the lookups are run
+	 * sequentially by the calling thread instead of piling up new threads.
+	 */
+	public static final int DEFAULT_MAX_THREADS = 32;
+
+	/**
+	 * The executor running the concurrent lookups when none is provided. It is not the validation executor: the lookups are started from its tasks and waiting on the same
+	 * bounded pool could dead-lock.
+	 */
+	private static ExecutorService defaultExecutorService;
+
 	private OCSPSource ocspSource;
 
 	private CRLSource crlSource;
 
 	private final CertificatePool validationCertPool;
 
+	private RevocationCheckingStrategy revocationCheckingStrategy = RevocationCheckingStrategy.SEQUENTIAL;
+
+	private long hedgingDelay = DEFAULT_HEDGING_DELAY;
+
+	private ExecutorService executorService;
+
 	/**
 	 * Build a OCSPAndCRLCertificateVerifier that will use the provided CRLSource and OCSPSource
 	 *
@@ -57,55 +95,260 @@ public class OCSPAndCRLCertificateVerifier implements CertificateStatusVerifier
 		this.validationCertPool = validationCertPool;
 	}
 
+	/**
+	 * @param revocationCheckingStrategy the strategy used to query the OCSP and CRL sources, {@code null} stands for {@code RevocationCheckingStrategy.SEQUENTIAL}
+	 */
+	public void setRevocationCheckingStrategy(final RevocationCheckingStrategy revocationCheckingStrategy) {
+		this.revocationCheckingStrategy = revocationCheckingStrategy == null ? RevocationCheckingStrategy.SEQUENTIAL : revocationCheckingStrategy;
+	}
+
+	/**
+	 * @param hedgingDelay the latency budget (in milliseconds) granted to the OCSP source before the CRL source is queried with the {@code RevocationCheckingStrategy.HEDGED}
+	 *                     strategy
+	 */
+	public void setHedgingDelay(final long hedgingDelay) {
+		this.hedgingDelay = hedgingDelay;
+	}
+
+	/**
+	 * Sets the executor running the concurrent lookups. It must not be a bounded pool shared with the caller. If not set an internal pool of at most
+	 * {@code DEFAULT_MAX_THREADS} threads is used. When the executor rejects a lookup, it is run by the calling thread.
+	 *
+	 * @param executorService {@code ExecutorService}
+	 */
+	public void setExecutorService(final ExecutorService executorService) {
+		this.executorService = executorService;
+	}
+
 	@Override
 	public RevocationToken check(final CertificateToken certificateToken) {
 
 		if (LOG.isTraceEnabled()) {
 			LOG.trace(certificateToken.toString());
 		}
-		final boolean debugEnabled = LOG.isDebugEnabled();
-		final String dssIdAsString = certificateToken.getDSSIdAsString();
-		if (ocspSource != null) {
+		final RevocationToken revocationToken;
+		if (ocspSource == null || crlSource == null || revocationCheckingStrategy == RevocationCheckingStrategy.SEQUENTIAL) {
 
-			final OCSPCertificateVerifier ocspVerifier = new OCSPCertificateVerifier(ocspSource, validationCertPool);
-			if (debugEnabled) {
-				LOG.debug("OCSP request for: " + dssIdAsString + " using: " + ocspSource.getClass().getSimpleName());
-			}
-			final RevocationToken revocation = ocspVerifier.check(certificateToken);
-			if (revocation != null && revocation.getStatus() != null) {
+			revocationToken = checkSequentially(certificateToken);
+		} else {
+
+			final long delay = revocationCheckingStrategy == RevocationCheckingStrategy.HEDGED ? hedgingDelay : 0;
+			revocationToken = checkConcurrently(certificateToken, delay);
+		}
+		if (revocationToken != null) {
+			certificateToken.setRevocationToken(revocationToken);
+		}
+		if (isAcceptable(revocationToken)) {
+			return revocationToken;
+		}
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("There is no response for " + certificateToken.getDSSIdAsString() + " neither from OCSP nor from CRL!");
+		}
+		return null;
+	}
+
+	/**
+	 * @param certificateToken the certificate to check
+	 * @return the token to set on the certificate: the first acceptable one or, failing that, the last one obtained
+	 */
+	private RevocationToken checkSequentially(final CertificateToken certificateToken) {
+
+		final RevocationToken ocspToken = checkOCSP(certificateToken);
+		if (isAcceptable(ocspToken)) {
 
-				if (debugEnabled) {
-					LOG.debug("OCSP response for " + dssIdAsString + " retrieved: " + revocation.getAbbreviation());
+			return ocspToken;
+		}
+		final RevocationToken crlToken = checkCRL(certificateToken);
+		return crlToken != null ? crlToken : ocspToken;
+	}
+
+	/**
+	 * Starts the OCSP lookup and, once the delay is elapsed without any acceptable OCSP response, the CRL lookup. The first acceptable response is returned and the other
+	 * lookup is cancelled.
+	 *
+	 * @param certificateToken the certificate to check
+	 * @param delay            the latency budget (in milliseconds) granted to the OCSP source, 0 to start both lookups immediately
+	 * @return the token to set on the certificate: the first acceptable one or, failing that, the last one obtained
+	 */
+	private RevocationToken checkConcurrently(final CertificateToken certificateToken, final long delay) {
+
+		final CompletionService<RevocationToken> completionService = new ExecutorCompletionService<RevocationToken>(getExecutorService());
+		final Future<RevocationToken> ocspFuture;
+		try {
+
+			ocspFuture = completionService.submit(new Callable<RevocationToken>() {
+
+				@Override
+				public RevocationToken call() throws Exception {
+					return checkOCSP(certificateToken);
 				}
-				return revocation;
-			}
+			});
+		} catch (RejectedExecutionException e) {
+
+			LOG.warn("No thread available for the revocation lookups of " + certificateToken.getDSSIdAsString() + ": sequential check");
+			return checkSequentially(certificateToken);
 		}
-		if (crlSource != null) {
+		Future<RevocationToken> crlFuture = null;
+		RevocationToken ocspToken = null;
+		RevocationToken crlToken = null;
+		try {
+
+			int pendingCount = 1;
+			if (delay > 0) {
+
+				final Future<RevocationToken> done = completionService.poll(delay, TimeUnit.MILLISECONDS);
+				if (done != null) {
 
-			if (debugEnabled) {
-				LOG.debug("CRL request for: " + dssIdAsString + " using: " + crlSource.getClass().getSimpleName());
+					pendingCount--;
+					ocspToken = getResult(done, certificateToken);
+					if (isAcceptable(ocspToken)) {
+						return ocspToken;
+					}
+				} else if (LOG.isDebugEnabled()) {
+					LOG.debug("No OCSP response for " + certificateToken.getDSSIdAsString() + " within " + delay + " ms: hedging with CRL");
+				}
 			}
-			/**
-			 * The validationPool is not needed for the CRLCertificateVerifier because it should be signed by the same certificate as the
-			 * certificate to be checked. But: - a CA Designated Responder (Authorized Responder, defined in
-			 Section 4.2.2.2) who holds a specially marked certificate issued
-			 directly by the CA, indicating that the responder may issue OCSP
-			 responses for that CA.
-
-			 */
-			final CRLCertificateVerifier crlVerifier = new CRLCertificateVerifier(crlSource);
-			final RevocationToken revocationToken = crlVerifier.check(certificateToken);
-			if (revocationToken != null && revocationToken.getStatus() != null) {
-
-				if (debugEnabled) {
-					LOG.debug("CRL for " + dssIdAsString + " retrieved: " + revocationToken.getAbbreviation());
+			try {
+
+				crlFuture = completionService.submit(new Callable<RevocationToken>() {
+
+					@Override
+					public RevocationToken call() throws Exception {
+						return checkCRL(certificateToken);
+					}
+				});
+				pendingCount++;
+			} catch (RejectedExecutionException e) {
+
+				LOG.warn("No thread available for the CRL lookup of " + certificateToken.getDSSIdAsString() + ": run by the calling thread");
+				crlToken = checkCRL(certificateToken);
+				if (isAcceptable(crlToken)) {
+					return crlToken;
+				}
+			}
+			while (pendingCount > 0) {
+
+				final Future<RevocationToken> done = completionService.take();
+				pendingCount--;
+				final RevocationToken revocationToken = getResult(done, certificateToken);
+				if (done == ocspFuture) {
+					ocspToken = revocationToken;
+				} else {
+					crlToken = revocationToken;
 				}
-				return revocationToken;
+				if (isAcceptable(revocationToken)) {
+					return revocationToken;
+				}
+			}
+			return crlToken != null ? crlToken : ocspToken;
+		} catch (InterruptedException e) {
+
+			Thread.currentThread().interrupt();
+			LOG.warn("Interrupted while waiting for the revocation data of " + certificateToken.getDSSIdAsString());
+			return null;
+		} finally {
+
+			ocspFuture.cancel(true);
+			if (crlFuture != null) {
+				crlFuture.cancel(true);
 			}
 		}
+	}
+
+	private RevocationToken getResult(final Future<RevocationToken> future, final CertificateToken certificateToken) throws InterruptedException {
+
+		try {
+			return future.get();
+		} catch (ExecutionException e) {
+
+			LOG.error("Exception when fetching the revocation data for " + certificateToken.getDSSIdAsString(), e.getCause());
+			return null;
+		}
+	}
+
+	private static boolean isAcceptable(final RevocationToken revocationToken) {
+
+		return revocationToken != null && revocationToken.getStatus() != null;
+	}
+
+	private ExecutorService getExecutorService() {
+
+		if (executorService != null) {
+			return executorService;
+		}
+		return getDefaultExecutorService();
+	}
+
+	private static synchronized ExecutorService getDefaultExecutorService() {
+
+		if (defaultExecutorService == null) {
+
+			final AtomicInteger threadNumber = new AtomicInteger();
+			final ThreadFactory threadFactory = new ThreadFactory() {
+
+				@Override
+				public Thread newThread(final Runnable runnable) {
+
+					final Thread thread = new Thread(runnable, "dss-revocation-" + threadNumber.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				}
+			};
+			// No queue: a lookup is either started at once or rejected (and run by the calling thread)
+			defaultExecutorService = new ThreadPoolExecutor(0, DEFAULT_MAX_THREADS, 60L, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(), threadFactory);
+		}
+		return defaultExecutorService;
+	}
+
+	/**
+	 * @param certificateToken the certificate to check
+	 * @return the OCSP response or null
+	 */
+	private RevocationToken checkOCSP(final CertificateToken certificateToken) {
+
+		if (ocspSource == null) {
+			return null;
+		}
+		final boolean debugEnabled = LOG.isDebugEnabled();
+		final String dssIdAsString = certificateToken.getDSSIdAsString();
+		final OCSPCertificateVerifier ocspVerifier = new OCSPCertificateVerifier(ocspSource, validationCertPool);
 		if (debugEnabled) {
-			LOG.debug("There is no response for " + dssIdAsString + " neither from OCSP nor from CRL!");
+			LOG.debug("OCSP request for: " + dssIdAsString + " using: " + ocspSource.getClass().getSimpleName());
 		}
-		return null;
+		final RevocationToken revocation = ocspVerifier.check(certificateToken);
+		if (isAcceptable(revocation) && debugEnabled) {
+			LOG.debug("OCSP response for " + dssIdAsString + " retrieved: " + revocation.getAbbreviation());
+		}
+		return revocation;
+	}
+
+	/**
+	 * @param certificateToken the certificate to check
+	 * @return the valid CRL token or null
+	 */
+	private RevocationToken checkCRL(final CertificateToken certificateToken) {
+
+		if (crlSource == null) {
+			return null;
+		}
+		final boolean debugEnabled = LOG.isDebugEnabled();
+		final String dssIdAsString = certificateToken.getDSSIdAsString();
+		if (debugEnabled) {
+			LOG.debug("CRL request for: " + dssIdAsString + " using: " + crlSource.getClass().getSimpleName());
+		}
+		/**
+		 * The validationPool is not needed for the CRLCertificateVerifier because it should be signed by the same certificate as the
+		 * certificate to be checked. But: - a CA Designated Responder (Authorized Responder, defined in
+		 Section 4.2.2.2) who holds a specially marked certificate issued
+		 directly by the CA, indicating that the responder may issue OCSP
+		 responses for that CA.
+
+		 */
+		final CRLCertificateVerifier crlVerifier = new CRLCertificateVerifier(crlSource);
+		final RevocationToken revocationToken = crlVerifier.check(certificateToken);
+		if (isAcceptable(revocationToken) && debugEnabled) {
+			LOG.debug("CRL for " + dssIdAsString + " retrieved: " + revocationToken.getAbbreviation());
+		}
+		return revocationToken;
 	}
 }
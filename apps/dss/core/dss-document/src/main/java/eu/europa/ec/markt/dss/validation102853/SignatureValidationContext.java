@@ -21,18 +21,16 @@
 package eu.europa.ec.markt.dss.validation102853;
 
 import java.security.cert.X509Certificate;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.RejectedExecutionException;
-import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
 import javax.security.auth.x500.X500Principal;
@@ -55,7 +53,12 @@ import eu.europa.ec.markt.dss.validation102853.ocsp.OCSPSource;
  * one validation request that contains every object retrieved so far.
  * <p/>
  * The validate method is multi-threaded, using an CachedThreadPool from ExecutorService, to parallelize fetching of the certificates from AIA and of the revocation information
- * from online sources.
+ * from online sources. Each token is submitted as soon as it is discovered and the calling thread is woken up only when the number of pending tasks drops to zero (or when
+ * the deadline defined by {@code MAX_TIMEOUT} is reached).
+ * <p/>
+ * When the {@code CertificateVerifier} provides an application-scoped {@code ExecutorService}, this executor is shared with other validations and is never shut down by this
+ * class. In this case {@code maxConcurrentTasks} can be used to limit the number of tasks of this validation running at the same time, which gives a fair share of the
+ * executor to all concurrent validations.
  *
  * @version $Revision: 1839 $ - $Date: 2013-04-04 17:40:51 +0200 (Thu, 04 Apr 2013) $
  */
@@ -65,14 +68,16 @@ public class SignatureValidationContext implements ValidationContext {
 	private static final Logger LOG = LoggerFactory.getLogger(SignatureValidationContext.class);
 
 	/**
-	 * Each unit is approximately 5 seconds
+	 * Each unit is 5 seconds
 	 */
 	public static int MAX_TIMEOUT = 5;
 
-	private final Set<CertificateToken> processedCertificates = new HashSet<CertificateToken>();
-	private final Set<RevocationToken> processedRevocations = new HashSet<RevocationToken>();
+	private static final long TIMEOUT_UNIT_MILLIS = 5000;
+
+	private final Set<CertificateToken> processedCertificates = Collections.synchronizedSet(new HashSet<CertificateToken>());
+	private final Set<RevocationToken> processedRevocations = Collections.synchronizedSet(new HashSet<RevocationToken>());
 
-	private final Set<TimestampToken> processedTimestamps = new HashSet<TimestampToken>();
+	private final Set<TimestampToken> processedTimestamps = Collections.synchronizedSet(new HashSet<TimestampToken>());
 
 	static int threadCount = 0;
 
@@ -86,7 +91,32 @@ public class SignatureValidationContext implements ValidationContext {
 	 */
 	protected CertificatePool validationCertificatePool;
 
-	private final Map<Token, Boolean> tokensToProcess = new HashMap<Token, Boolean>();
+	/**
+	 * All tokens added for verification so far. This set is also used as the monitor guarding {@code waitingTokens}, {@code validationStarted} and
+	 * {@code runningTaskCount}.
+	 */
+	private final Set<Token> tokensToProcess = new HashSet<Token>();
+
+	/**
+	 * The tokens which are not yet submitted to the executor service: added before the call to the {@code validate} method or waiting for a free slot when
+	 * {@code maxConcurrentTasks} is reached.
+	 */
+	private final LinkedList<Token> waitingTokens = new LinkedList<Token>();
+
+	/**
+	 * Indicates if the tokens are submitted as soon as they are added for verification.
+	 */
+	private boolean validationStarted = false;
+
+	/**
+	 * The number of submitted tasks which are not yet finished. When it drops to zero and there is no waiting token the validating thread is notified.
+	 */
+	private int runningTaskCount = 0;
+
+	/**
+	 * The maximum number of tasks of this validation running at the same time. 0 means no limit.
+	 */
+	private int maxConcurrentTasks = 0;
 
 	// External OCSP source.
 	private OCSPSource ocspSource;
@@ -100,6 +130,15 @@ public class SignatureValidationContext implements ValidationContext {
 	// CRLs from the signature.
 	private CRLSource signatureCRLSource;
 
+	// Strategy used to query the online OCSP and CRL sources.
+	private RevocationCheckingStrategy revocationCheckingStrategy;
+
+	// Latency budget (in milliseconds) granted to the online OCSP source with the hedged strategy.
+	private long revocationHedgingDelay;
+
+	// Executor running the concurrent OCSP and CRL lookups, null for the default one.
+	private ExecutorService revocationExecutorService;
+
 	// The digest value of the certification path references and the revocation status references.
 	private List<TimestampReference> timestampedReferences;
 
@@ -109,10 +148,15 @@ public class SignatureValidationContext implements ValidationContext {
 	protected Date currentTime = new Date();
 
 	/**
-	 * This variable :
+	 * The executor service used to retrieve the validation data.
 	 */
 	protected ExecutorService executorService;
 
+	/**
+	 * Indicates if the {@code executorService} is shared with other validations (provided by the {@code CertificateVerifier}). A shared executor service is never shut down.
+	 */
+	private boolean sharedExecutorService;
+
 	/**
 	 * This constructor is used when a signature need to be validated.
 	 *
@@ -133,6 +177,11 @@ public class SignatureValidationContext implements ValidationContext {
 		this.dataLoader = certificateVerifier.getDataLoader();
 		this.signatureCRLSource = certificateVerifier.getSignatureCRLSource();
 		this.signatureOCSPSource = certificateVerifier.getSignatureOCSPSource();
+		this.executorService = certificateVerifier.getExecutorService();
+		this.revocationCheckingStrategy = certificateVerifier.getRevocationCheckingStrategy();
+		this.revocationHedgingDelay = certificateVerifier.getRevocationHedgingDelay();
+		this.revocationExecutorService = certificateVerifier.getRevocationExecutorService();
+		this.sharedExecutorService = executorService != null;
 	}
 
 	@Override
@@ -140,9 +189,25 @@ public class SignatureValidationContext implements ValidationContext {
 		return executorService;
 	}
 
+	/**
+	 * Sets the executor service dedicated to this validation. This executor service is shut down at the end of the {@code validate} method.
+	 *
+	 * @param executorService {@code ExecutorService}
+	 */
 	@Override
 	public void setExecutorService(final ExecutorService executorService) {
 		this.executorService = executorService;
+		this.sharedExecutorService = false;
+	}
+
+	@Override
+	public int getMaxConcurrentTasks() {
+		return maxConcurrentTasks;
+	}
+
+	@Override
+	public void setMaxConcurrentTasks(final int maxConcurrentTasks) {
+		this.maxConcurrentTasks = maxConcurrentTasks;
 	}
 
 	private ExecutorService provideExecutorService() {
@@ -165,28 +230,6 @@ public class SignatureValidationContext implements ValidationContext {
 		this.currentTime = currentTime;
 	}
 
-	/**
-	 * This method returns a token to verify. If there is no more tokens to verify null is returned.
-	 *
-	 * @return token to verify or null
-	 */
-	private Token getNotYetVerifiedToken() {
-		//		LOG.debug("getNotYetVerifiedToken: trying to acquire synchronized block");
-		synchronized (tokensToProcess) {
-			//			LOG.debug("getNotYetVerifiedToken: acquired synchronized block");
-			for (final Entry<Token, Boolean> entry : tokensToProcess.entrySet()) {
-
-				if (entry.getValue() == null) {
-
-					entry.setValue(true);
-					return entry.getKey();
-				}
-			}
-			//			LOG.debug("getNotYetVerifiedToken: almost left synchronized block");
-			return null;
-		}
-	}
-
 	/**
 	 * This method returns the issuer certificate (the certificate which was used to sign the token) of the given token.
 	 *
@@ -284,44 +327,111 @@ public class SignatureValidationContext implements ValidationContext {
 	}
 
 	/**
-	 * Adds a new token to the list of tokes to verify only if it was not already verified.
+	 * Adds a new token to the list of tokes to verify only if it was not already verified. If the validation is already started the token is immediately submitted to the
+	 * executor service (as soon as a slot is free), otherwise it is kept until the call to {@code validate}.
 	 *
 	 * @param token token to verify
 	 * @return true if the token was not yet verified, false otherwise.
 	 */
 	private boolean addTokenForVerification(final Token token) {
 
+		if (token == null) {
+			return false;
+		}
 		final boolean traceEnabled = LOG.isTraceEnabled();
+		final List<Token> tokensToSubmit;
 		synchronized (tokensToProcess) {
 
+			if (!tokensToProcess.add(token)) {
+
+				if (traceEnabled) {
+					LOG.trace("Token was already in the list {}:{}", new Object[]{token.getClass().getSimpleName(), token.getAbbreviation()});
+				}
+				return false;
+			}
 			if (traceEnabled) {
-				LOG.trace("addTokenForVerification: trying to acquire synchronized block");
+				LOG.trace("+ New {} to check: {}", new Object[]{token.getClass().getSimpleName(), token.getAbbreviation()});
 			}
+			waitingTokens.add(token);
+			tokensToSubmit = pollSubmittableTokens();
+		}
+		submitTasks(tokensToSubmit);
+		return true;
+	}
+
+	/**
+	 * Takes the waiting tokens which can be submitted without exceeding {@code maxConcurrentTasks}. The returned tokens are counted as running. This method must be called
+	 * while holding the {@code tokensToProcess} monitor.
+	 *
+	 * @return the {@code List} of tokens to submit, never null
+	 */
+	private List<Token> pollSubmittableTokens() {
+
+		if (!validationStarted || waitingTokens.isEmpty()) {
+			return Collections.emptyList();
+		}
+		final List<Token> tokensToSubmit = new ArrayList<Token>();
+		while (!waitingTokens.isEmpty() && (maxConcurrentTasks <= 0 || runningTaskCount < maxConcurrentTasks)) {
+
+			runningTaskCount++;
+			tokensToSubmit.add(waitingTokens.poll());
+		}
+		return tokensToSubmit;
+	}
+
+	/**
+	 * Submits the verification of the given tokens to the executor service. The tokens must already be counted as running.
+	 *
+	 * @param tokens the tokens to verify
+	 */
+	private void submitTasks(final List<Token> tokens) {
+
+		for (int ii = 0; ii < tokens.size(); ii++) {
+
 			try {
 
-				if (token == null) {
-					return false;
-				}
-				if (tokensToProcess.containsKey(token)) {
+				provideExecutorService().submit(new Task(tokens.get(ii)));
+			} catch (RejectedExecutionException e) {
 
-					if (traceEnabled) {
-						LOG.trace("Token was already in the list {}:{}", new Object[]{token.getClass().getSimpleName(), token.getAbbreviation()});
-					}
-					return false;
-				}
-				tokensToProcess.put(token, null);
-				if (traceEnabled) {
-					LOG.trace("+ New {} to check: {}", new Object[]{token.getClass().getSimpleName(), token.getAbbreviation()});
-				}
-				return true;
-			} finally {
-				if (traceEnabled) {
-					LOG.trace("addTokenForVerification: almost left synchronized block");
+				LOG.error(e.getMessage(), e);
+				// The current and the remaining tokens will never be executed
+				synchronized (tokensToProcess) {
+
+					runningTaskCount -= tokens.size() - ii;
+					tokensToProcess.notifyAll();
 				}
+				throw new DSSException(e);
 			}
 		}
 	}
 
+	/**
+	 * Decrements the running task counter, submits the next waiting token if any and wakes up the validating thread when there is no more work to do.
+	 */
+	private void taskDone() {
+
+		final List<Token> tokensToSubmit;
+		synchronized (tokensToProcess) {
+
+			runningTaskCount--;
+			tokensToSubmit = pollSubmittableTokens();
+			if (isValidationDone()) {
+				tokensToProcess.notifyAll();
+			}
+		}
+		submitTasks(tokensToSubmit);
+	}
+
+	/**
+	 * This method must be called while holding the {@code tokensToProcess} monitor.
+	 *
+	 * @return true if there is neither running task nor waiting token
+	 */
+	private boolean isValidationDone() {
+
+		return runningTaskCount <= 0 && waitingTokens.isEmpty();
+	}
+
 	@Override
 	public void addRevocationTokenForVerification(final RevocationToken revocationToken) {
 
@@ -373,70 +483,76 @@ public class SignatureValidationContext implements ValidationContext {
 	@Override
 	public void validate() throws DSSException {
 
-		validateLoop();
 		try {
 
+			validateLoop();
+		} finally {
+
 			LOG.debug(">>> MT ***DONE***");
-			final ExecutorService executorService = provideExecutorService();
-			executorService.shutdown();
-			executorService.awaitTermination(5, TimeUnit.SECONDS);
-		} catch (InterruptedException e) {
-			throw new RuntimeException(e);
+			if (executorService != null && !sharedExecutorService) {
+
+				executorService.shutdown();
+				try {
+					executorService.awaitTermination(5, TimeUnit.SECONDS);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				executorService = null;
+			}
 		}
 	}
 
 	private void validateLoop() {
 
-		int threshold = 0;
-		int max_timeout = 0;
-		final ExecutorService executorService = provideExecutorService();
-		final ThreadPoolExecutor threadPoolExecutor = (ThreadPoolExecutor) executorService;
-		boolean exit = false;
-		boolean checkAgain = true;
-		do {
+		final List<Token> tokensToSubmit;
+		synchronized (tokensToProcess) {
 
-			final Token token = getNotYetVerifiedToken();
-			if (token != null) {
+			validationStarted = true;
+			tokensToSubmit = pollSubmittableTokens();
+		}
+		try {
 
-				checkAgain = true;
-				try {
+			submitTasks(tokensToSubmit);
+			awaitCompletion();
+		} finally {
 
-					//					System.out.println("----------------------------------------------------");
-					//					System.out.println(" DSS_ID: " + token.getDSSId());
-					//					System.out.println("----------------------------------------------------");
-					final Task task = new Task(token);
-					executorService.submit(task);
-				} catch (RejectedExecutionException e) {
-					LOG.error(e.getMessage(), e);
-					throw new DSSException(e);
-				}
-			} else {
+			synchronized (tokensToProcess) {
 
-				try {
+				validationStarted = false;
+				// In case of abort the tokens not yet submitted are discarded
+				waitingTokens.clear();
+			}
+		}
+	}
 
-					Thread.sleep(5);
-					threshold++;
-					if (threshold > 1000) {
+	/**
+	 * Blocks the current thread until all submitted tasks (including the ones submitted by the tasks themselves) are finished.
+	 *
+	 * @throws DSSException if the retrieval of the validation data takes more than {@code MAX_TIMEOUT} units
+	 */
+	private void awaitCompletion() throws DSSException {
 
-						LOG.warn("{} active threads", threadPoolExecutor.getActiveCount());
-						LOG.warn("{} completed tasks", threadPoolExecutor.getCompletedTaskCount());
-						LOG.warn("{} waiting tasks", threadPoolExecutor.getQueue());
-						max_timeout++;
-						if (max_timeout == MAX_TIMEOUT) {
-							throw new DSSException("Operation aborted, the retrieval of the validation data takes too long.");
-						}
-						threshold = 0;
-					}
+		final long timeoutMillis = MAX_TIMEOUT * TIMEOUT_UNIT_MILLIS;
+		final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+		synchronized (tokensToProcess) {
+
+			while (!isValidationDone()) {
+
+				final long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+				if (remainingMillis <= 0) {
+
+					LOG.warn("{} running tasks and {} waiting tokens after {} ms", new Object[]{runningTaskCount, waitingTokens.size(), timeoutMillis});
+					throw new DSSException("Operation aborted, the retrieval of the validation data takes too long.");
+				}
+				try {
+					tokensToProcess.wait(remainingMillis);
 				} catch (InterruptedException e) {
+
+					Thread.currentThread().interrupt();
 					throw new DSSException(e);
 				}
-				final boolean threadPoolExecutorEmpty = !(threadPoolExecutor.getActiveCount() > 0 || threadPoolExecutor.getQueue().size() > 0);
-				exit = threadPoolExecutorEmpty && !checkAgain;
-				if (threadPoolExecutorEmpty) {
-					checkAgain = false;
-				}
 			}
-		} while (!exit);
+		}
 	}
 
 	class Task implements Runnable {
@@ -451,6 +567,17 @@ public class SignatureValidationContext implements ValidationContext {
 		@Override
 		public void run() {
 
+			try {
+				verify();
+			} catch (RuntimeException e) {
+				LOG.error("Verification of the token " + token.getAbbreviation() + " failed: " + e.getMessage(), e);
+			} finally {
+				taskDone();
+			}
+		}
+
+		private void verify() {
+
 			final int threadCount_ = threadCount++;
 			LOG.debug(">>> MT IN  [" + threadCount_ + "] DSS_ID: " + token.getDSSId());
 			/**
@@ -515,6 +642,9 @@ public class SignatureValidationContext implements ValidationContext {
 		if (checkOnLine) {
 
 			final OCSPAndCRLCertificateVerifier onlineVerifier = new OCSPAndCRLCertificateVerifier(crlSource, ocspSource, validationCertificatePool);
+			onlineVerifier.setRevocationCheckingStrategy(revocationCheckingStrategy);
+			onlineVerifier.setHedgingDelay(revocationHedgingDelay);
+			onlineVerifier.setExecutorService(revocationExecutorService);
 			final RevocationToken revocationToken = onlineVerifier.check(certToken);
 			if (revocationToken != null) {
 
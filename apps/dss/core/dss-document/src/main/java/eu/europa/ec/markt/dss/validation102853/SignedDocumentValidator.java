@@ -27,6 +27,7 @@ import java.net.URL;
 import java.security.PublicKey;
 import java.security.cert.X509Certificate;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -111,6 +112,7 @@ import eu.europa.ec.markt.dss.validation102853.pades.PAdESSignature;
 import eu.europa.ec.markt.dss.validation102853.pades.PDFDocumentValidator;
 import eu.europa.ec.markt.dss.validation102853.policy.EtsiValidationPolicy;
 import eu.europa.ec.markt.dss.validation102853.policy.ValidationPolicy;
+import eu.europa.ec.markt.dss.validation102853.report.ReportType;
 import eu.europa.ec.markt.dss.validation102853.report.Reports;
 import eu.europa.ec.markt.dss.validation102853.rules.AttributeValue;
 import eu.europa.ec.markt.dss.validation102853.scope.SignatureScope;
@@ -139,6 +141,11 @@ public abstract class SignedDocumentValidator implements DocumentValidator {
 	 */
 	protected ProcessExecutor processExecutor = null;
 
+	/**
+	 * The reports to be returned by the validation, {@code null} means all reports.
+	 */
+	protected ReportType[] reportTypes = null;
+
 	protected SignatureScopeFinder<CAdESSignature> cadesSignatureScopeFinder = null;
 	protected SignatureScopeFinder<PAdESSignature> padesSignatureScopeFinder = null;
 	protected SignatureScopeFinder<XAdESSignature> xadesSignatureScopeFinder = null;
@@ -367,8 +374,8 @@ public abstract class SignedDocumentValidator implements DocumentValidator {
 	@Override
 	public Reports validateDocument(final InputStream policyDataStream) {
 
-		final Document validationPolicyDom = ValidationResourceManager.loadPolicyData(policyDataStream);
-		return validateDocument(validationPolicyDom);
+		final ValidationPolicy validationPolicy = ValidationResourceManager.getValidationPolicy(policyDataStream);
+		return validateDocument(validationPolicy);
 	}
 
 	/**
@@ -404,10 +411,12 @@ public abstract class SignedDocumentValidator implements DocumentValidator {
 		}
 		final ProcessExecutor executor = provideProcessExecutorInstance();
 		executor.setValidationPolicy(validationPolicy);
+		if (reportTypes != null) {
+			executor.setReportTypes(new HashSet<ReportType>(Arrays.asList(reportTypes)));
+		}
 		if (countersignatureValidationPolicy == null) {
 
-			final Document countersignaturePolicyData = ValidationResourceManager.loadCountersignaturePolicyData(null);
-			countersignatureValidationPolicy = new EtsiValidationPolicy(countersignaturePolicyData);
+			countersignatureValidationPolicy = ValidationResourceManager.getCountersignatureValidationPolicy(null);
 		}
 		executor.setCountersignatureValidationPolicy(countersignatureValidationPolicy);
 
@@ -438,6 +447,12 @@ public abstract class SignedDocumentValidator implements DocumentValidator {
 		this.processExecutor = processExecutor;
 	}
 
+	@Override
+	public void setReportTypes(final ReportType... reportTypes) {
+
+		this.reportTypes = reportTypes;
+	}
+
 	/**
 	 * This method returns the process executor. If the instance of this class is not yet instantiated then the new instance is created.
 	 *
@@ -472,8 +487,15 @@ public abstract class SignedDocumentValidator implements DocumentValidator {
 		final int concurrentThreadNumber = processExecutor.getConcurrentThreadNumber();
 		if (concurrentThreadNumber > 0) {
 
-			final ExecutorService executorService = Executors.newFixedThreadPool(concurrentThreadNumber);
-			validationContext.setExecutorService(executorService);
+			if (certificateVerifier.getExecutorService() != null) {
+
+				// The shared executor service is used, the number of concurrent tasks of this validation is limited
+				validationContext.setMaxConcurrentTasks(concurrentThreadNumber);
+			} else {
+
+				final ExecutorService executorService = Executors.newFixedThreadPool(concurrentThreadNumber);
+				validationContext.setExecutorService(executorService);
+			}
 		}
 
 		// The list of all signing certificates is created to allow a parallel validation.
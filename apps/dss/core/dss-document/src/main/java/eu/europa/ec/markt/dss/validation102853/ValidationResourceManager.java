@@ -19,7 +19,10 @@
  */
 package eu.europa.ec.markt.dss.validation102853;
 
+import java.io.ByteArrayInputStream;
 import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
@@ -29,10 +32,14 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.w3c.dom.Document;
 
+import eu.europa.ec.markt.dss.DSSUtils;
 import eu.europa.ec.markt.dss.DSSXMLUtils;
+import eu.europa.ec.markt.dss.DigestAlgorithm;
 import eu.europa.ec.markt.dss.exception.DSSException;
 import eu.europa.ec.markt.dss.validation102853.data.diagnostic.DiagnosticData;
 import eu.europa.ec.markt.dss.validation102853.data.diagnostic.ObjectFactory;
+import eu.europa.ec.markt.dss.validation102853.policy.EtsiValidationPolicy;
+import eu.europa.ec.markt.dss.validation102853.policy.ValidationPolicy;
 
 public class ValidationResourceManager {
 
@@ -42,8 +49,25 @@ public class ValidationResourceManager {
 	public static String defaultCountersignaturePolicyConstraintsLocation = "/102853/policy/countersignature-constraint.xml";
 	public static String defaultPolicyXsdLocation = "/102853/policy/policy.xsd";
 
+	/**
+	 * The maximum number of validation policies kept by {@link #getValidationPolicy(java.io.InputStream)}.
+	 */
+	public static int validationPolicyCacheSize = 32;
+
 	private static JAXBContext jaxbContext;
 
+	/**
+	 * The validation policies already built, keyed by the digest of their constraint file or by the location of the default constraint file. The least recently
+	 * used policies are removed first.
+	 */
+	private static final Map<String, ValidationPolicy> validationPolicies = new LinkedHashMap<String, ValidationPolicy>(16, 0.75f, true) {
+
+		@Override
+		protected boolean removeEldestEntry(final Map.Entry<String, ValidationPolicy> eldest) {
+			return size() > validationPolicyCacheSize;
+		}
+	};
+
 	static {
 
 		try {
@@ -93,6 +117,56 @@ public class ValidationResourceManager {
 		return null;
 	}
 
+	/**
+	 * This method returns the {@code ValidationPolicy} corresponding to the given constraint file. If the policyDataStream is null then the default policy is
+	 * returned. The policies are kept and shared between the validations: the constraint file is parsed only once for a given content.
+	 *
+	 * @param policyDataStream the constraint file or null
+	 * @return the corresponding {@code ValidationPolicy}
+	 */
+	public static ValidationPolicy getValidationPolicy(final InputStream policyDataStream) {
+
+		return getValidationPolicy(policyDataStream, defaultPolicyConstraintsLocation);
+	}
+
+	/**
+	 * This method returns the countersignature {@code ValidationPolicy} corresponding to the given constraint file. If the policyDataStream is null then the
+	 * default countersignature policy is returned. The policies are kept and shared between the validations.
+	 *
+	 * @param policyDataStream the constraint file or null
+	 * @return the corresponding {@code ValidationPolicy}
+	 */
+	public static ValidationPolicy getCountersignatureValidationPolicy(final InputStream policyDataStream) {
+
+		return getValidationPolicy(policyDataStream, defaultCountersignaturePolicyConstraintsLocation);
+	}
+
+	private static ValidationPolicy getValidationPolicy(final InputStream policyDataStream, final String defaultLocation) {
+
+		final String key;
+		byte[] policyData = null;
+		if (policyDataStream != null) {
+
+			policyData = DSSUtils.toByteArray(policyDataStream);
+			key = DSSUtils.encodeHexString(DSSUtils.digest(DigestAlgorithm.SHA256, policyData));
+		} else {
+			key = defaultLocation;
+		}
+		synchronized (validationPolicies) {
+
+			final ValidationPolicy validationPolicy = validationPolicies.get(key);
+			if (validationPolicy != null) {
+				return validationPolicy;
+			}
+		}
+		final Document document = policyData != null ? load(new ByteArrayInputStream(policyData)) : load(defaultLocation);
+		final ValidationPolicy validationPolicy = new EtsiValidationPolicy(document);
+		synchronized (validationPolicies) {
+			validationPolicies.put(key, validationPolicy);
+		}
+		return validationPolicy;
+	}
+
 	/**
 	 * This method loads the data from the resource file into an {@link java.io.InputStream}.
 	 *
@@ -159,7 +233,6 @@ public class ValidationResourceManager {
 
 			final Document diagnosticData = DSSXMLUtils.buildDOM();
 			Marshaller marshaller = jaxbContext.createMarshaller();
-			marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, Boolean.TRUE);
 			marshaller.marshal(diagnosticDataJB, diagnosticData);
 			return diagnosticData;
 		} catch (JAXBException e) {
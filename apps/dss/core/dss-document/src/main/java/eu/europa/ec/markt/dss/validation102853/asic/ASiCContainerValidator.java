@@ -21,12 +21,20 @@
 package eu.europa.ec.markt.dss.validation102853.asic;
 
 import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
 import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.Map;
+import java.util.Set;
 import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 import java.util.zip.ZipInputStream;
 
 import org.slf4j.Logger;
@@ -43,8 +51,11 @@ import eu.europa.ec.markt.dss.exception.DSSNotETSICompliantException;
 import eu.europa.ec.markt.dss.exception.DSSNullException;
 import eu.europa.ec.markt.dss.signature.AsicManifestDocument;
 import eu.europa.ec.markt.dss.signature.DSSDocument;
+import eu.europa.ec.markt.dss.signature.FileDocument;
 import eu.europa.ec.markt.dss.signature.InMemoryDocument;
+import eu.europa.ec.markt.dss.signature.MappedFileDocument;
 import eu.europa.ec.markt.dss.signature.MimeType;
+import eu.europa.ec.markt.dss.signature.ZipEntryDocument;
 import eu.europa.ec.markt.dss.signature.asic.ASiCService;
 import eu.europa.ec.markt.dss.validation102853.AdvancedSignature;
 import eu.europa.ec.markt.dss.validation102853.DocumentValidator;
@@ -90,10 +101,20 @@ public class ASiCContainerValidator extends SignedDocumentValidator {
 
 	private static final String MIME_TYPE = "mimetype";
 	private static final String MIME_TYPE_COMMENT = MIME_TYPE + "=";
+
+	/**
+	 * The maximum length of the end of a ZIP file: end of central directory record (22 bytes) followed by the comment (at most 65535 bytes).
+	 */
+	private static final int ZIP_END_MAX_LENGTH = 22 + 0xFFFF;
 	private static final String META_INF_FOLDER = "META-INF/";
 
 	private final DSSDocument asicContainer;
 
+	/**
+	 * The opened container file shared by its {@code ZipEntryDocument}s, null when the container is not stored in a file or is closed.
+	 */
+	private ZipFile containerZipFile;
+
 	/**
 	 * This is the subordinated validator: can be XML or CMS
 	 */
@@ -167,7 +188,7 @@ public class ASiCContainerValidator extends SignedDocumentValidator {
 
 			return asicEntryMimetype;
 		}
-		final MimeType asicCommentString = getZipComment(asicContainer.getBytes());
+		final MimeType asicCommentString = getZipComment(getZipEnd(asicContainer));
 		if (isASiCMimeType(asicCommentString)) {
 
 			return asicCommentString;
@@ -234,59 +255,10 @@ public class ASiCContainerValidator extends SignedDocumentValidator {
 
 	private void analyseEntries() throws DSSException {
 
-		ZipInputStream asicsInputStream = null;
 		try {
 
-			MimeType asicEntryMimeType = null;
-			asicsInputStream = new ZipInputStream(asicContainer.openStream()); // The underlying stream is closed by the parent (asicsInputStream).
-
-			for (ZipEntry entry = asicsInputStream.getNextEntry(); entry != null; entry = asicsInputStream.getNextEntry()) {
-
-				String entryName = entry.getName();
-				if (isCAdES(entryName)) {
-
-					if (xadesSigned) {
-						throw new DSSNotETSICompliantException(DSSNotETSICompliantException.MSG.DIFFERENT_SIGNATURE_FORMATS);
-					}
-					addEntryElement(entryName, signatures, asicsInputStream);
-					cadesSigned = true;
-				} else if (isXAdES(entryName)) {
-
-					if (cadesSigned) {
-						throw new DSSNotETSICompliantException(DSSNotETSICompliantException.MSG.DIFFERENT_SIGNATURE_FORMATS);
-					}
-					addEntryElement(entryName, signatures, asicsInputStream);
-					xadesSigned = true;
-				} else if (isTimestamp(entryName)) {
-
-					addEntryElement(entryName, signatures, asicsInputStream);
-					timestamped = true;
-				} else if (isASiCManifest(entryName)) {
-
-					addAsicManifestEntryElement(entryName, detachedContents, asicsInputStream);
-				} else if (isManifest(entryName)) {
-
-					addEntryElement(entryName, detachedContents, asicsInputStream);
-				} else if (isContainer(entryName)) {
-
-					addEntryElement(entryName, detachedContents, asicsInputStream);
-				} else if (isMetadata(entryName)) {
-
-					addEntryElement(entryName, detachedContents, asicsInputStream);
-				} else if (MIME_TYPE.equalsIgnoreCase(entryName)) {
-
-					final DSSDocument mimeType = addEntryElement(entryName, detachedContents, asicsInputStream);
-					asicEntryMimeType = getMimeType(mimeType);
-				} else if (entryName.indexOf("/") == -1) {
-
-					addEntryElement(entryName, detachedContents, asicsInputStream);
-				} else if (entryName.endsWith("/")) { // Folder
-					continue;
-				} else {
-
-					addEntryElement(entryName, detachedContents, asicsInputStream);
-				}
-			}
+			final File containerFile = getContainerFile(asicContainer);
+			final MimeType asicEntryMimeType = containerFile != null ? analyseEntries(containerFile) : analyseEntries(asicContainer.openStream());
 			asicMimeType = determinateAsicMimeType(asicContainer.getMimeType(), asicEntryMimeType);
 			if (MimeType.ASICS == asicMimeType) {
 
@@ -307,11 +279,228 @@ public class ASiCContainerValidator extends SignedDocumentValidator {
 				throw (DSSException) e;
 			}
 			throw new DSSException(e);
+		}
+	}
+
+	/**
+	 * This method reads the entries of a container stored in a file through its central directory: only the signatures, the manifests and the metadata are loaded,
+	 * the signed data objects are represented by {@code ZipEntryDocument}s which are inflated each time they are read. The consistency of the central directory with the local
+	 * headers is checked first. The {@code ZipFile} stays open, shared by the {@code ZipEntryDocument}s, until {@link #close()} is called.
+	 *
+	 * @param containerFile the file of the container
+	 * @return the mime-type held by the 'mimetype' entry, {@code null} if the entry is absent
+	 * @throws IOException
+	 */
+	private MimeType analyseEntries(final File containerFile) throws IOException {
+
+		final ZipFile zipFile = new ZipFile(containerFile);
+		boolean analysed = false;
+		try {
+
+			checkZipConsistency(containerFile, zipFile);
+			MimeType asicEntryMimeType = null;
+			final Enumeration<? extends ZipEntry> entries = zipFile.entries();
+			while (entries.hasMoreElements()) {
+
+				final ZipEntry entry = entries.nextElement();
+				final String entryName = entry.getName();
+				final DSSDocument entryDocument;
+				if (isDataObject(entryName)) {
+
+					entryDocument = new ZipEntryDocument(containerFile, zipFile, entryName);
+				} else {
+
+					final byte[] bytes = DSSUtils.toByteArray(zipFile.getInputStream(entry));
+					entryDocument = new InMemoryDocument(bytes, entryName);
+				}
+				final MimeType mimeType = analyseEntry(entryName, entryDocument);
+				if (mimeType != null) {
+					asicEntryMimeType = mimeType;
+				}
+			}
+			containerZipFile = zipFile;
+			analysed = true;
+			return asicEntryMimeType;
+		} finally {
+			if (!analysed) {
+				zipFile.close();
+			}
+		}
+	}
+
+	/**
+	 * This method closes the container file shared by the signed data objects. It is called at the end of {@link #validateDocument(ValidationPolicy)}; the signed data objects
+	 * read afterwards open the container file again.
+	 */
+	public void close() {
+
+		final ZipFile zipFile = containerZipFile;
+		containerZipFile = null;
+		if (zipFile != null) {
+			try {
+				zipFile.close();
+			} catch (IOException e) {
+				LOG.warn("The container file cannot be closed: {}", e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * This method reads sequentially the entries of a container which is not stored in a file. All entries are loaded in memory.
+	 *
+	 * @param inputStream the content of the container
+	 * @return the mime-type held by the 'mimetype' entry, {@code null} if the entry is absent
+	 * @throws IOException
+	 */
+	private MimeType analyseEntries(final InputStream inputStream) throws IOException {
+
+		final ZipInputStream asicsInputStream = new ZipInputStream(inputStream); // The underlying stream is closed by the parent (asicsInputStream).
+		try {
+
+			MimeType asicEntryMimeType = null;
+			final Set<String> entryNames = new HashSet<String>();
+			for (ZipEntry entry = asicsInputStream.getNextEntry(); entry != null; entry = asicsInputStream.getNextEntry()) {
+
+				final String entryName = entry.getName();
+				if (!entryNames.add(entryName)) {
+					throw new DSSException("The container holds several entries named '" + entryName + "'.");
+				}
+				final ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+				DSSUtils.copy(asicsInputStream, byteArrayOutputStream);
+				final MimeType mimeType = analyseEntry(entryName, new InMemoryDocument(byteArrayOutputStream.toByteArray(), entryName));
+				if (mimeType != null) {
+					asicEntryMimeType = mimeType;
+				}
+			}
+			return asicEntryMimeType;
 		} finally {
 			DSSUtils.closeQuietly(asicsInputStream);
 		}
 	}
 
+	/**
+	 * The entries of a container stored in a file are read through the central directory ({@code ZipFile}, {@code ZipEntryDocument}) while the signature and the extension
+	 * of a container read the local headers sequentially ({@code ZipInputStream}). This method rejects a container for which both readers would not see the same entries
+	 * with the same content: duplicate entry names, entries present in only one of both structures or whose CRC or size differ.
+	 *
+	 * @param containerFile the file of the container
+	 * @param zipFile       the opened container
+	 * @throws IOException
+	 */
+	private static void checkZipConsistency(final File containerFile, final ZipFile zipFile) throws IOException {
+
+		final Map<String, ZipEntry> centralEntries = new LinkedHashMap<String, ZipEntry>();
+		final Enumeration<? extends ZipEntry> entries = zipFile.entries();
+		while (entries.hasMoreElements()) {
+
+			final ZipEntry entry = entries.nextElement();
+			if (centralEntries.put(entry.getName(), entry) != null) {
+				throw new DSSException("The container holds several entries named '" + entry.getName() + "'.");
+			}
+		}
+		final Set<String> localEntryNames = new HashSet<String>();
+		final ZipInputStream zipInputStream = new ZipInputStream(DSSUtils.toInputStream(containerFile));
+		try {
+
+			final byte[] buffer = new byte[8192];
+			for (ZipEntry localEntry = zipInputStream.getNextEntry(); localEntry != null; localEntry = zipInputStream.getNextEntry()) {
+
+				final String entryName = localEntry.getName();
+				if (!localEntryNames.add(entryName)) {
+					throw new DSSException("The container holds several entries named '" + entryName + "'.");
+				}
+				final ZipEntry centralEntry = centralEntries.get(entryName);
+				if (centralEntry == null) {
+					throw new DSSException("The entry '" + entryName + "' of the container is not in the central directory.");
+				}
+				// the entry must be read entirely to know its CRC and size when they are given in a data descriptor
+				while (zipInputStream.read(buffer) != -1) {
+					// the content is only checked
+				}
+				if (localEntry.getCrc() != centralEntry.getCrc() || localEntry.getSize() != centralEntry.getSize()) {
+					throw new DSSException("The entry '" + entryName + "' of the container differs from its description in the central directory.");
+				}
+			}
+		} finally {
+			DSSUtils.closeQuietly(zipInputStream);
+		}
+		if (localEntryNames.size() != centralEntries.size()) {
+			throw new DSSException("Some entries of the central directory of the container have no local header.");
+		}
+	}
+
+	/**
+	 * This method dispatches an entry of the container between the signatures and the detached contents.
+	 *
+	 * @param entryName     the name of the entry
+	 * @param entryDocument the content of the entry
+	 * @return the mime-type held by the entry if this is the 'mimetype' entry, {@code null} otherwise
+	 */
+	private MimeType analyseEntry(final String entryName, final DSSDocument entryDocument) {
+
+		if (isCAdES(entryName)) {
+
+			if (xadesSigned) {
+				throw new DSSNotETSICompliantException(DSSNotETSICompliantException.MSG.DIFFERENT_SIGNATURE_FORMATS);
+			}
+			signatures.add(entryDocument);
+			cadesSigned = true;
+		} else if (isXAdES(entryName)) {
+
+			if (cadesSigned) {
+				throw new DSSNotETSICompliantException(DSSNotETSICompliantException.MSG.DIFFERENT_SIGNATURE_FORMATS);
+			}
+			signatures.add(entryDocument);
+			xadesSigned = true;
+		} else if (isTimestamp(entryName)) {
+
+			signatures.add(entryDocument);
+			timestamped = true;
+		} else if (isASiCManifest(entryName)) {
+
+			detachedContents.add(new AsicManifestDocument(entryDocument.getBytes(), entryName));
+		} else if (MIME_TYPE.equalsIgnoreCase(entryName)) {
+
+			detachedContents.add(entryDocument);
+			return getMimeType(entryDocument);
+		} else if (!entryName.endsWith("/")) { // Not a folder
+
+			// manifest.xml, container.xml, metadata.xml and the signed data objects
+			detachedContents.add(entryDocument);
+		}
+		return null;
+	}
+
+	/**
+	 * @param entryName the name of the entry
+	 * @return {@code true} if the entry is a signed data object: neither a signature, nor a manifest, nor the metadata of the container
+	 */
+	private static boolean isDataObject(final String entryName) {
+
+		return !(isCAdES(entryName) || isXAdES(entryName) || isTimestamp(entryName) || isASiCManifest(entryName) || isManifest(entryName) || isContainer(
+			  entryName) || isMetadata(entryName) || MIME_TYPE.equalsIgnoreCase(entryName));
+	}
+
+	/**
+	 * @param asicContainer the ZIP container
+	 * @return the file holding the whole container, {@code null} if the container is not stored in a file
+	 */
+	private static File getContainerFile(final DSSDocument asicContainer) {
+
+		if (asicContainer instanceof FileDocument) {
+
+			return new File(asicContainer.getAbsolutePath());
+		}
+		if (asicContainer instanceof MappedFileDocument) {
+
+			final File file = new File(asicContainer.getAbsolutePath());
+			if (((MappedFileDocument) asicContainer).getLength() == file.length()) {
+				return file;
+			}
+		}
+		return null;
+	}
+
 	public MimeType getAsicMimeType() {
 		return asicMimeType;
 	}
@@ -335,23 +524,6 @@ public class ASiCContainerValidator extends SignedDocumentValidator {
 		}
 	}
 
-	private static DSSDocument addEntryElement(final String entryName, final List<DSSDocument> list, final ZipInputStream asicsInputStream) {
-
-		final ByteArrayOutputStream signature = new ByteArrayOutputStream();
-		DSSUtils.copy(asicsInputStream, signature);
-		final InMemoryDocument inMemoryDocument = new InMemoryDocument(signature.toByteArray(), entryName);
-		list.add(inMemoryDocument);
-		return inMemoryDocument;
-	}
-
-	private static void addAsicManifestEntryElement(final String entryName, final List<DSSDocument> list, final ZipInputStream asicsInputStream) {
-
-		final ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
-		DSSUtils.copy(asicsInputStream, byteArrayOutputStream);
-		final AsicManifestDocument inMemoryDocument = new AsicManifestDocument(byteArrayOutputStream.toByteArray(), entryName);
-		list.add(inMemoryDocument);
-	}
-
 	/**
 	 * 6.2.2 Contents of Container
 	 * 4) Other application specific information may be added in further files contained within the META-INF directory, such as:
@@ -421,6 +593,30 @@ public class ASiCContainerValidator extends SignedDocumentValidator {
 		return signature;
 	}
 
+	/**
+	 * This method returns the end of the ZIP container which holds its comment. Only this part is read when the container is stored in a file.
+	 *
+	 * @param asicContainer the ZIP container
+	 * @return the last bytes of the container
+	 */
+	private static byte[] getZipEnd(final DSSDocument asicContainer) {
+
+		final MappedFileDocument mappedContainer;
+		if (asicContainer instanceof MappedFileDocument) {
+
+			mappedContainer = (MappedFileDocument) asicContainer;
+		} else if (asicContainer instanceof FileDocument) {
+
+			mappedContainer = new MappedFileDocument(asicContainer.getAbsolutePath());
+		} else {
+
+			return asicContainer.getBytes();
+		}
+		final long length = mappedContainer.getLength();
+		final long zipEndLength = Math.min(length, ZIP_END_MAX_LENGTH);
+		return mappedContainer.getRange(length - zipEndLength, zipEndLength).getBytes();
+	}
+
 	private static MimeType getZipComment(final byte[] buffer) {
 
 		final int len = buffer.length;
@@ -470,12 +666,24 @@ public class ASiCContainerValidator extends SignedDocumentValidator {
 	@Override
 	public Reports validateDocument(final ValidationPolicy validationPolicy) {
 
+		try {
+			return validateSubordinatedDocuments(validationPolicy);
+		} finally {
+			close();
+		}
+	}
+
+	private Reports validateSubordinatedDocuments(final ValidationPolicy validationPolicy) {
+
 		Reports lastReports = null;
 		Reports firstReport = null;
 		DocumentValidator currentSubordinatedValidator = subordinatedValidator;
 		do {
 
 			currentSubordinatedValidator.setProcessExecutor(processExecutor);
+			if (reportTypes != null) {
+				currentSubordinatedValidator.setReportTypes(reportTypes);
+			}
 			if (MimeType.ASICE.equals(asicMimeType) && currentSubordinatedValidator instanceof ASiCCMSDocumentValidator) {
 
 				final DSSDocument signature = currentSubordinatedValidator.getDocument();
@@ -1690,9 +1690,10 @@ public class CAdESSignature extends DefaultAdvancedSignature {
 			ContentInfo content = signedData.getEncapContentInfo();
 			if (content == null || content.getContent() == null) {
 			    /* Detached signatures have either no encapContentInfo in signedData, or it exists but has no eContent */
-				if (getOriginalDocumentBytes() != null) {
+				final byte[] originalDocumentBytes = getOriginalDocumentBytes();
+				if (originalDocumentBytes != null) {
 					data.write(content.toASN1Primitive().getEncoded());
-					data.write(getOriginalDocumentBytes());
+					data.write(originalDocumentBytes);
 				} else {
 					throw new DSSException("Signature is detached and no original data provided.");
 				}
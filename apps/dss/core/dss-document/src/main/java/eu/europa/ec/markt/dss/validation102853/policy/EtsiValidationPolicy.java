@@ -20,10 +20,12 @@
 
 package eu.europa.ec.markt.dss.validation102853.policy;
 
+import java.util.Collections;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.w3c.dom.Document;
 
@@ -35,6 +37,9 @@ import eu.europa.ec.markt.dss.validation102853.xml.XmlDom;
 /**
  * This class encapsulates the constraint file that controls the policy to be used during the validation process. It
  * adds the functions to direct access to the file data. It is the implementation of the ETSI 102853 standard.
+ * <p/>
+ * The policy document is considered as read-only: each query is evaluated only once against the document and its result is kept, so the same instance can be
+ * shared between concurrent validations. The returned constraints are always new objects as they are completed during the validation process.
  *
  * @author bielecro
  */
@@ -47,20 +52,129 @@ public class EtsiValidationPolicy extends ValidationPolicy {
 
 	private String maxRevocationFreshnessUnit;
 
-	private Long maxRevocationFreshness;
+	private volatile Long maxRevocationFreshness;
 
-	private Long timestampDelayTime;
-	private Map<String, Date> algorithmExpirationDate = new HashMap<String, Date>();
+	private volatile Long timestampDelayTime;
+	private final ConcurrentMap<String, Date> algorithmExpirationDate = new ConcurrentHashMap<String, Date>();
+
+	/**
+	 * The results of the queries already evaluated against the policy document, keyed by the formatted XPath query.
+	 */
+	private final ConcurrentMap<String, String> values = new ConcurrentHashMap<String, String>();
+	private final ConcurrentMap<String, Boolean> presences = new ConcurrentHashMap<String, Boolean>();
+	private final ConcurrentMap<String, List<String>> stringLists = new ConcurrentHashMap<String, List<String>>();
+	private final ConcurrentMap<String, Map<String, String>> stringMaps = new ConcurrentHashMap<String, Map<String, String>>();
+	private final ConcurrentMap<String, Map<String, Date>> dateMaps = new ConcurrentHashMap<String, Map<String, Date>>();
 
 	public EtsiValidationPolicy(Document document) {
 
 		super(document);
 	}
 
+	private static String getKey(final String xPath, final Object... params) {
+
+		return params.length == 0 ? xPath : String.format(xPath, params);
+	}
+
+	/**
+	 * The DOM is not thread-safe even for reading: the evaluation of a query is done under the lock of the policy, the result is then served without
+	 * synchronisation.
+	 *
+	 * @see XmlDom#getValue(String, Object...)
+	 */
+	@Override
+	public String getValue(final String xPath, final Object... params) {
+
+		final String key = getKey(xPath, params);
+		String value = values.get(key);
+		if (value == null) {
+
+			synchronized (this) {
+				value = super.getValue(xPath, params);
+			}
+			values.put(key, value);
+		}
+		return value;
+	}
+
+	/**
+	 * @param xPath  the XPath query
+	 * @param params the parameters of the query
+	 * @return true if the query selects at least one element
+	 */
+	private boolean isPresent(final String xPath, final Object... params) {
+
+		final String key = getKey(xPath, params);
+		Boolean present = presences.get(key);
+		if (present == null) {
+
+			synchronized (this) {
+				present = getElement(xPath, params) != null;
+			}
+			presences.put(key, present);
+		}
+		return present;
+	}
+
+	/**
+	 * @param xPath  the XPath query
+	 * @param params the parameters of the query
+	 * @return the unmodifiable list of the text values of the selected elements
+	 */
+	private List<String> getStringList(final String xPath, final Object... params) {
+
+		final String key = getKey(xPath, params);
+		List<String> stringList = stringLists.get(key);
+		if (stringList == null) {
+
+			synchronized (this) {
+				stringList = Collections.unmodifiableList(XmlDom.convertToStringList(getElements(xPath, params)));
+			}
+			stringLists.put(key, stringList);
+		}
+		return stringList;
+	}
+
+	/**
+	 * @param xPath         the XPath query
+	 * @param attributeName the name of the attribute providing the value
+	 * @return the unmodifiable map of the text values of the selected elements to the value of the given attribute
+	 */
+	private Map<String, String> getStringMap(final String xPath, final String attributeName) {
+
+		Map<String, String> stringMap = stringMaps.get(xPath);
+		if (stringMap == null) {
+
+			synchronized (this) {
+				stringMap = Collections.unmodifiableMap(XmlDom.convertToStringMap(getElements(xPath), attributeName));
+			}
+			stringMaps.put(xPath, stringMap);
+		}
+		return stringMap;
+	}
+
+	/**
+	 * @param xPath         the XPath query
+	 * @param attributeName the name of the attribute providing the date
+	 * @return the unmodifiable map of the text values of the selected elements to the date of the given attribute
+	 */
+	private Map<String, Date> getDateMap(final String xPath, final String attributeName) {
+
+		Map<String, Date> dateMap = dateMaps.get(xPath);
+		if (dateMap == null) {
+
+			synchronized (this) {
+				dateMap = Collections.unmodifiableMap(XmlDom.convertToStringDateMap(getElements(xPath), attributeName));
+			}
+			dateMaps.put(xPath, dateMap);
+		}
+		return dateMap;
+	}
+
 	@Override
 	public boolean isRevocationFreshnessToBeChecked() {
 
-		return null != getElement("/ConstraintsParameters/Revocation/RevocationFreshness/");
+		return isPresent("/ConstraintsParameters/Revocation/RevocationFreshness/");
 	}
 
 	@Override
@@ -76,12 +190,12 @@ public class EtsiValidationPolicy extends ValidationPolicy {
 	@Override
 	public Long getMaxRevocationFreshness() {
 
+		Long maxRevocationFreshness = this.maxRevocationFreshness;
 		if (maxRevocationFreshness == null) {
 
 			maxRevocationFreshness = Long.MAX_VALUE;
 
-			final XmlDom revocationFreshness = getElement("/ConstraintsParameters/Revocation/RevocationFreshness");
-			if (revocationFreshness != null) {
+			if (isPresent("/ConstraintsParameters/Revocation/RevocationFreshness")) {
 
 				maxRevocationFreshnessString = getLongValue("/ConstraintsParameters/Revocation/RevocationFreshness/text()");
 				maxRevocationFreshnessUnit = getValue("/ConstraintsParameters/Revocation/RevocationFreshness/@Unit");
@@ -91,6 +205,7 @@ public class EtsiValidationPolicy extends ValidationPolicy {
 					maxRevocationFreshness = Long.MAX_VALUE;
 				}
 			}
+			this.maxRevocationFreshness = maxRevocationFreshness;
 		}
 		return maxRevocationFreshness;
 	}
@@ -101,18 +216,17 @@ public class EtsiValidationPolicy extends ValidationPolicy {
 		Date date = algorithmExpirationDate.get(algorithm);
 		if (date == null) {
 
-			final XmlDom algoExpirationDateDom = getElement("/ConstraintsParameters/Timestamp/Cryptographic/AlgoExpirationDate");
-			if (algoExpirationDateDom == null) {
+			if (!isPresent("/ConstraintsParameters/Timestamp/Cryptographic/AlgoExpirationDate")) {
 
 				return null;
 			}
-			String expirationDateFormat = algoExpirationDateDom.getValue("./@Format");
+			String expirationDateFormat = getValue("/ConstraintsParameters/Timestamp/Cryptographic/AlgoExpirationDate/@Format");
 			if (expirationDateFormat.isEmpty()) {
 
 				expirationDateFormat = "yyyy-MM-dd";
 			}
 
-			final String expirationDateString = algoExpirationDateDom.getValue("./Algo[@Name='%s']/text()", algorithm);
+			final String expirationDateString = getValue("/ConstraintsParameters/Timestamp/Cryptographic/AlgoExpirationDate/Algo[@Name='%s']/text()", algorithm);
 			if (expirationDateString.isEmpty()) {
 
 				throw new DSSException(String.format("The the expiration date is not defined for '%s' algorithm!", algorithm));
@@ -131,8 +245,7 @@ public class EtsiValidationPolicy extends ValidationPolicy {
 
 			final SignaturePolicyConstraint constraint = new SignaturePolicyConstraint(level);
 
-			final List<XmlDom> policyList = getElements("/ConstraintsParameters/MainSignature/AcceptablePolicies/Id");
-			final List<String> identifierList = XmlDom.convertToStringList(policyList);
+			final List<String> identifierList = getStringList("/ConstraintsParameters/MainSignature/AcceptablePolicies/Id");
 			constraint.setIdentifiers(identifierList);
 			constraint.setExpectedValue(identifierList.toString());
 			return constraint;
@@ -183,8 +296,7 @@ public class EtsiValidationPolicy extends ValidationPolicy {
 		if (DSSUtils.isNotBlank(level)) {
 
 			final Constraint constraint = new Constraint(level);
-			final List<XmlDom> commitmentTypeIndications = getElements("/ConstraintsParameters/MainSignature/MandatedSignedQProperties/CommitmentTypeIndication/Identifier");
-			final List<String> identifierList = XmlDom.convertToStringList(commitmentTypeIndications);
+			final List<String> identifierList = getStringList("/ConstraintsParameters/MainSignature/MandatedSignedQProperties/CommitmentTypeIndication/Identifier");
 			constraint.setExpectedValue(identifierList.toString());
 			constraint.setIdentifiers(identifierList);
 			return constraint;
@@ -223,8 +335,7 @@ public class EtsiValidationPolicy extends ValidationPolicy {
 		if (DSSUtils.isNotBlank(level)) {
 
 			final Constraint constraint = new Constraint(level);
-			final List<XmlDom> claimedRoles = getElements("/ConstraintsParameters/MainSignature/MandatedSignedQProperties/ClaimedRoles/Role");
-			final List<String> claimedRoleList = XmlDom.convertToStringList(claimedRoles);
+			final List<String> claimedRoleList = getStringList("/ConstraintsParameters/MainSignature/MandatedSignedQProperties/ClaimedRoles/Role");
 			constraint.setExpectedValue(claimedRoleList.toString());
 			constraint.setIdentifiers(claimedRoleList);
 			return constraint;
@@ -235,23 +346,20 @@ public class EtsiValidationPolicy extends ValidationPolicy {
 	@Override
 	public List<String> getClaimedRoles() {
 
-		final List<XmlDom> list = getElements("/ConstraintsParameters/MainSignature/MandatedSignedQProperties/ClaimedRoles/Role");
-		final List<String> claimedRoles = XmlDom.convertToStringList(list);
+		final List<String> claimedRoles = getStringList("/ConstraintsParameters/MainSignature/MandatedSignedQProperties/ClaimedRoles/Role");
 		return claimedRoles;
 	}
 
 	@Override
 	public boolean shouldCheckIfCertifiedRoleIsPresent() {
 
-		final long count = getCountValue("count(/ConstraintsParameters/MainSignature/MandatedSignedQProperties/CertifiedRoles/Role)");
-		return count > 0;
+		return !getCertifiedRoles().isEmpty();
 	}
 
 	@Override
 	public List<String> getCertifiedRoles() {
 
-		final List<XmlDom> list = getElements("/ConstraintsParameters/MainSignature/MandatedSignedQProperties/CertifiedRoles/Role");
-		final List<String> claimedRoles = XmlDom.convertToStringList(list);
+		final List<String> claimedRoles = getStringList("/ConstraintsParameters/MainSignature/MandatedSignedQProperties/CertifiedRoles/Role");
 		return claimedRoles;
 	}
 
@@ -272,16 +380,17 @@ public class EtsiValidationPolicy extends ValidationPolicy {
 	@Override
 	public Long getTimestampDelayTime() {
 
+		Long timestampDelayTime = this.timestampDelayTime;
 		if (timestampDelayTime == null) {
 
-			final XmlDom timestampDelayPresent = getElement("/ConstraintsParameters/Timestamp/TimestampDelay");
-			if (timestampDelayPresent == null) {
+			if (!isPresent("/ConstraintsParameters/Timestamp/TimestampDelay")) {
 
 				return null;
 			}
 			final long timestampDelay = getLongValue("/ConstraintsParameters/Timestamp/TimestampDelay/text()");
 			final String timestampUnit = getValue("/ConstraintsParameters/Timestamp/TimestampDelay/@Unit");
 			timestampDelayTime = RuleUtils.convertDuration(timestampUnit, "MILLISECONDS", timestampDelay);
+			this.timestampDelayTime = timestampDelayTime;
 		}
 		return timestampDelayTime;
 	}
@@ -315,20 +424,16 @@ public class EtsiValidationPolicy extends ValidationPolicy {
 
 			final SignatureCryptographicConstraint constraint = new SignatureCryptographicConstraint(level, context, subContext);
 
-			final List<XmlDom> encryptionAlgoList = getElements(rootXPathQuery + "/AcceptableEncryptionAlgo/Algo");
-			final List<String> encryptionAlgoStringList = XmlDom.convertToStringList(encryptionAlgoList);
+			final List<String> encryptionAlgoStringList = getStringList(rootXPathQuery + "/AcceptableEncryptionAlgo/Algo");
 			constraint.setEncryptionAlgorithms(encryptionAlgoStringList);
 
-			final List<XmlDom> digestAlgoList = getElements(rootXPathQuery + "/AcceptableDigestAlgo/Algo");
-			final List<String> digestAlgoStringList = XmlDom.convertToStringList(digestAlgoList);
+			final List<String> digestAlgoStringList = getStringList(rootXPathQuery + "/AcceptableDigestAlgo/Algo");
 			constraint.setDigestAlgorithms(digestAlgoStringList);
 
-			final List<XmlDom> miniPublicKeySizeList = getElements(rootXPathQuery + "/MiniPublicKeySize/Algo");
-			final Map<String, String> miniPublicKeySizeStringMap = XmlDom.convertToStringMap(miniPublicKeySizeList, SIZE);
+			final Map<String, String> miniPublicKeySizeStringMap = getStringMap(rootXPathQuery + "/MiniPublicKeySize/Algo", SIZE);
 			constraint.setMinimumPublicKeySizes(miniPublicKeySizeStringMap);
 
-			final List<XmlDom> algoExpirationDateList = getElements("/ConstraintsParameters/Cryptographic/AlgoExpirationDate/Algo");
-			final Map<String, Date> algoExpirationDateStringMap = XmlDom.convertToStringDateMap(algoExpirationDateList, DATE);
+			final Map<String, Date> algoExpirationDateStringMap = getDateMap("/ConstraintsParameters/Cryptographic/AlgoExpirationDate/Algo", DATE);
 			constraint.setAlgorithmExpirationDates(algoExpirationDateStringMap);
 
 			return constraint;
@@ -343,8 +448,7 @@ public class EtsiValidationPolicy extends ValidationPolicy {
 		if (DSSUtils.isNotBlank(level)) {
 
 			final Constraint constraint = new Constraint(level);
-			final List<XmlDom> keyUsages = getElements("/ConstraintsParameters/%s/SigningCertificate/KeyUsage/Identifier", context);
-			final List<String> identifierList = XmlDom.convertToStringList(keyUsages);
+			final List<String> identifierList = getStringList("/ConstraintsParameters/%s/SigningCertificate/KeyUsage/Identifier", context);
 			constraint.setExpectedValue(identifierList.toString());
 			constraint.setIdentifiers(identifierList);
 			return constraint;
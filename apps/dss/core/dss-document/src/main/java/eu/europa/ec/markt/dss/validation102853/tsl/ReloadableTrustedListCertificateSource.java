@@ -20,13 +20,15 @@
 
 package eu.europa.ec.markt.dss.validation102853.tsl;
 
+import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import eu.europa.ec.markt.dss.exception.DSSEncodingException;
 import eu.europa.ec.markt.dss.validation102853.CertificatePool;
 import eu.europa.ec.markt.dss.validation102853.CertificateToken;
 
@@ -34,6 +36,10 @@ import eu.europa.ec.markt.dss.validation102853.CertificateToken;
  * This CertificateSource keep a list of trusted certificates extracted from the trusted list. To populate this list {@link
  * TrustedListsCertificateSource} class is used. This list is refreshed when the method refresh
  * is called.
+ * <p/>
+ * The refresh is double-buffered: the trusted lists are loaded in a new {@code TrustedListsCertificateSource} while the previous one is still used. The new source is published
+ * only when its loading succeeded, in case of failure the previous source is kept. When the trusted lists of some territories cannot be loaded, the new source is published with
+ * the trusted services of these territories taken from the previous source and the refresh is reported as {@code DEGRADED}.
  *
  * @version $Revision$ - $Date$
  */
@@ -42,14 +48,33 @@ public class ReloadableTrustedListCertificateSource extends TrustedListsCertific
 
     private static final Logger LOG = LoggerFactory.getLogger(ReloadableTrustedListCertificateSource.class);
 
-    private TrustedListsCertificateSource currentSource = new TrustedListsCertificateSource();
+    /**
+     * The status of the last refresh. {@code DEGRADED} means that the refreshed trusted lists were published but that some of them could not be loaded: see {@link
+     * #getLastRefreshFailure()}.
+     */
+    public static enum RefreshStatus {
+
+        NEVER_REFRESHED, IN_PROGRESS, SUCCEEDED, DEGRADED, FAILED
+    }
+
+    private volatile TrustedListsCertificateSource currentSource = new TrustedListsCertificateSource();
+
+    private volatile RefreshStatus refreshStatus = RefreshStatus.NEVER_REFRESHED;
+
+    private volatile Date lastRefreshStartTime;
+
+    private volatile Date lastRefreshEndTime;
+
+    private volatile Date lastSuccessfulRefreshTime;
+
+    private volatile String lastRefreshFailure;
 
     public ReloadableTrustedListCertificateSource() {
 
         super();
     }
 
-    static class Reloader implements Runnable {
+    class Reloader implements Runnable {
 
         private TrustedListsCertificateSource underlyingSource;
 
@@ -66,28 +91,149 @@ public class ReloadableTrustedListCertificateSource extends TrustedListsCertific
                 LOG.info("--> run(): START LOADING");
                 underlyingSource.init();
                 LOG.info("--> run(): END LOADING");
+                if (underlyingSource.isAllLoaded()) {
+                    publish(underlyingSource);
+                } else {
+                    publishDegraded(underlyingSource);
+                }
+            } catch (Exception e) {
+
+                makeATrace(e);
+                failed(e);
+            } catch (Error e) {
 
-            } catch (DSSEncodingException e) {
+                // The status must not stay IN_PROGRESS, otherwise no refresh could be started anymore
                 makeATrace(e);
+                failed(e);
+                throw e;
             }
         }
 
-        private static void makeATrace(final Exception e) {
+        private void makeATrace(final Throwable e) {
 
             LOG.error(e.getMessage(), e);
         }
     }
 
+    /**
+     * This method starts the loading of the trusted lists in a new thread. The current trusted certificates stay available until the loading succeeds. If a refresh is already
+     * in progress this method does nothing.
+     */
     public synchronized void refresh() {
 
+        if (refreshStatus == RefreshStatus.IN_PROGRESS) {
+
+            LOG.info("--> refresh(): a refresh is already in progress.");
+            return;
+        }
         final TrustedListsCertificateSource newSource = new TrustedListsCertificateSource(this);
-	    final Reloader target = new Reloader(newSource);
-	    final Thread reloader = new Thread(target);
+        final Reloader target = new Reloader(newSource);
+        final Thread reloader = new Thread(target);
         LOG.debug("--> refresh(): START");
+        lastRefreshStartTime = new Date();
+        lastRefreshEndTime = null;
+        refreshStatus = RefreshStatus.IN_PROGRESS;
         reloader.start();
         LOG.debug("--> refresh(): END");
+    }
+
+    private synchronized void publish(final TrustedListsCertificateSource newSource) {
 
         currentSource = newSource;
+        lastRefreshEndTime = new Date();
+        lastSuccessfulRefreshTime = lastRefreshEndTime;
+        lastRefreshFailure = null;
+        refreshStatus = RefreshStatus.SUCCEEDED;
+        LOG.info("Trusted lists refreshed in {} ms: {} certificates", getLastRefreshDuration(), newSource.getCertificatePool().getNumberOfCertificates());
+    }
+
+    /**
+     * Publishes a source for which some trusted lists could not be loaded. The trusted services of the failed territories are recovered from the current source so that a
+     * temporary unavailability of a trusted list does not remove its trust anchors.
+     *
+     * @param newSource the newly loaded source
+     */
+    private synchronized void publishDegraded(final TrustedListsCertificateSource newSource) {
+
+        final Set<String> failedTerritories = newSource.getFailedTerritories();
+        final List<String> recovered = new ArrayList<String>();
+        final List<String> lost = new ArrayList<String>();
+        for (final String territory : failedTerritories) {
+
+            if (newSource.recoverTerritory(territory, currentSource)) {
+                recovered.add(territory);
+            } else {
+                lost.add(territory);
+            }
+        }
+        currentSource = newSource;
+        lastRefreshEndTime = new Date();
+        lastSuccessfulRefreshTime = lastRefreshEndTime;
+        lastRefreshFailure = "Trusted lists not loaded: " + failedTerritories + ", previous trusted services kept for: " + recovered + ", no trusted services for: " + lost;
+        refreshStatus = RefreshStatus.DEGRADED;
+        LOG.warn("Trusted lists partially refreshed in {} ms: {} certificates. {}",
+              new Object[]{getLastRefreshDuration(), newSource.getCertificatePool().getNumberOfCertificates(), lastRefreshFailure});
+    }
+
+    private synchronized void failed(final Throwable e) {
+
+        lastRefreshEndTime = new Date();
+        lastRefreshFailure = e.toString();
+        refreshStatus = RefreshStatus.FAILED;
+        LOG.warn("Trusted lists refresh failed after {} ms, the previous trusted lists are kept.", getLastRefreshDuration());
+    }
+
+    /**
+     * @return the status of the last refresh
+     */
+    public RefreshStatus getRefreshStatus() {
+
+        return refreshStatus;
+    }
+
+    /**
+     * @return the start time of the last refresh or null if the source was never refreshed
+     */
+    public Date getLastRefreshStartTime() {
+
+        return lastRefreshStartTime;
+    }
+
+    /**
+     * @return the end time of the last refresh or null if no refresh is finished
+     */
+    public Date getLastRefreshEndTime() {
+
+        return lastRefreshEndTime;
+    }
+
+    /**
+     * @return the duration (in milliseconds) of the last finished refresh or -1
+     */
+    public long getLastRefreshDuration() {
+
+        final Date startTime = lastRefreshStartTime;
+        final Date endTime = lastRefreshEndTime;
+        if (startTime == null || endTime == null) {
+            return -1;
+        }
+        return endTime.getTime() - startTime.getTime();
+    }
+
+    /**
+     * @return the time of the publication of the current trusted lists or null if they were never loaded
+     */
+    public Date getLastSuccessfulRefreshTime() {
+
+        return lastSuccessfulRefreshTime;
+    }
+
+    /**
+     * @return the cause of the failure of the last refresh or null
+     */
+    public String getLastRefreshFailure() {
+
+        return lastRefreshFailure;
     }
 
     public Map<String, String> getDiagnosticInfo() {
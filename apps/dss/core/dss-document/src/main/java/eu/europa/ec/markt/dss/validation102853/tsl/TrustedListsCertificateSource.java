@@ -22,6 +22,7 @@ package eu.europa.ec.markt.dss.validation102853.tsl;
 
 import java.io.File;
 import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.PrintWriter;
 import java.io.StringWriter;
@@ -31,10 +32,19 @@ import java.security.cert.X509Certificate;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
-import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import javax.security.auth.x500.X500Principal;
 
@@ -83,6 +93,22 @@ public class TrustedListsCertificateSource extends CommonTrustedCertificateSourc
 
 	public static final String TSL_HASH_PROPERTIES = "tsl_hash.properties";
 	public static final String TSL_NEXT_UPDATE_PROPERTIES = "tsl_next_update.properties";
+	public static final String TSL_SNAPSHOT = "tsl_snapshot.dat";
+
+	/**
+	 * The minimal length (in bytes) of the key used to authenticate the snapshot.
+	 */
+	public static final int MIN_SNAPSHOT_KEY_LENGTH = 16;
+
+	/**
+	 * The default number of trusted lists loaded in parallel.
+	 */
+	public static final int DEFAULT_TSL_LOADING_THREAD_NUMBER = 8;
+
+	/**
+	 * The default time (in milliseconds) allowed to download, check and parse one trusted list: 2 minutes.
+	 */
+	public static final long DEFAULT_TSL_LOADING_TIMEOUT = 120000;
 
 	private File tslPropertyCacheFolder = new File(System.getProperty("java.io.tmpdir"));
 	private Properties tslHashes = null;
@@ -94,7 +120,46 @@ public class TrustedListsCertificateSource extends CommonTrustedCertificateSourc
 
 	protected transient DataLoader dataLoader;
 
-	private Map<String, String> diagnosticInfo = new HashMap<String, String>();
+	private Map<String, String> diagnosticInfo = new ConcurrentHashMap<String, String>();
+
+	/**
+	 * The maximal number of trusted lists loaded in parallel.
+	 */
+	protected int tslLoadingThreadNumber = DEFAULT_TSL_LOADING_THREAD_NUMBER;
+
+	/**
+	 * The time (in milliseconds) allowed to load one trusted list. It is counted from the moment the loading of the list starts.
+	 */
+	protected long tslLoadingTimeout = DEFAULT_TSL_LOADING_TIMEOUT;
+
+	/**
+	 * Defines if the loaded trusted certificates are persisted in a snapshot (in {@code tslPropertyCacheFolder}) reused at the next start when the trusted lists did not change.
+	 * The default value is false. The snapshot also requires a {@code snapshotKey} and a {@code tslPropertyCacheFolder} other than the system temporary directory.
+	 */
+	protected boolean useSnapshot = false;
+
+	/**
+	 * The secret key of the HMAC which authenticates the snapshot. The snapshot is not used if no key is defined.
+	 */
+	protected byte[] snapshotKey;
+
+	/**
+	 * The SHA2 hash value and the nextUpdate of each trusted list loaded during the current {@code init}, used to build the snapshot.
+	 */
+	private final Map<String, String> loadedTslHashes = new ConcurrentHashMap<String, String>();
+	private final Map<String, Date> loadedTslNextUpdates = new ConcurrentHashMap<String, Date>();
+	private volatile boolean loadedTslHashesComplete = true;
+
+	/**
+	 * The territories (or the URL when the territory is unknown) of the trusted lists referenced by the LOTL which could not be loaded during the current {@code init}.
+	 */
+	private final Set<String> failedTerritories = Collections.synchronizedSet(new LinkedHashSet<String>());
+
+	/**
+	 * The certificates and the associated service information loaded from each territory during the current {@code init}. They allow to recover the trusted services of a
+	 * territory when its trusted list cannot be loaded by the next refresh.
+	 */
+	private final Map<String, List<TerritoryService>> territoryServices = new ConcurrentHashMap<String, List<TerritoryService>>();
 
 	/**
 	 * Defines if the TL signature must be checked. The default value is true.
@@ -128,6 +193,10 @@ public class TrustedListsCertificateSource extends CommonTrustedCertificateSourc
 		this.setLotlUrl(trustedListsCertificateSource.lotlUrl);
 		this.setTslPropertyCacheFolder(trustedListsCertificateSource.tslPropertyCacheFolder);
 		this.setTslRefreshPolicy(trustedListsCertificateSource.tslRefreshPolicy);
+		this.setTslLoadingThreadNumber(trustedListsCertificateSource.tslLoadingThreadNumber);
+		this.setTslLoadingTimeout(trustedListsCertificateSource.tslLoadingTimeout);
+		this.setUseSnapshot(trustedListsCertificateSource.useSnapshot);
+		this.snapshotKey = trustedListsCertificateSource.snapshotKey;
 	}
 
 	@Override
@@ -158,11 +227,12 @@ public class TrustedListsCertificateSource extends CommonTrustedCertificateSourc
 	 * @param tlWellSigned    Indicates if the signature of trusted list is valid
 	 */
 	private synchronized void addCertificate(final X509Certificate x509Certificate, final AbstractTrustService trustedService, final TrustServiceProvider tsProvider,
-	                                         final boolean tlWellSigned) {
+	                                         final boolean tlWellSigned, final List<TerritoryService> services) {
 
 		try {
 			final ServiceInfo serviceInfo = getServiceInfo(trustedService, tsProvider, tlWellSigned);
 			addCertificate(x509Certificate, serviceInfo);
+			services.add(new TerritoryService(x509Certificate, serviceInfo));
 		} catch (DSSNotETSICompliantException ex) {
 
 			LOG.error("The entry for " + trustedService.getServiceName() + " doesn't respect ETSI specification " + ex.getLocalizedMessage());
@@ -209,6 +279,46 @@ public class TrustedListsCertificateSource extends CommonTrustedCertificateSourc
 		return Collections.unmodifiableMap(diagnosticInfo);
 	}
 
+	/**
+	 * @return {@code true} if all the trusted lists referenced by the LOTL were loaded by the last {@code init}
+	 */
+	public boolean isAllLoaded() {
+
+		return failedTerritories.isEmpty();
+	}
+
+	/**
+	 * @return the territories (or the URL when the territory is unknown) of the trusted lists referenced by the LOTL which could not be loaded by the last {@code init}
+	 */
+	public Set<String> getFailedTerritories() {
+
+		synchronized (failedTerritories) {
+			return new LinkedHashSet<String>(failedTerritories);
+		}
+	}
+
+	/**
+	 * This method adds to this source the trusted services loaded by the {@code previousSource} for the given territory. It is used when the trusted list of the territory
+	 * could not be loaded: the previous trusted services are kept instead of being lost until the next refresh.
+	 *
+	 * @param territory      the territory (as returned by {@link #getFailedTerritories()})
+	 * @param previousSource the source loaded by the previous refresh
+	 * @return {@code true} if the previous source knew some trusted services for this territory
+	 */
+	public boolean recoverTerritory(final String territory, final TrustedListsCertificateSource previousSource) {
+
+		final List<TerritoryService> previousServices = previousSource.territoryServices.get(territory);
+		if (previousServices == null || previousServices.isEmpty()) {
+			return false;
+		}
+		for (final TerritoryService territoryService : previousServices) {
+
+			addCertificate(territoryService.certificate, territoryService.serviceInfo);
+		}
+		territoryServices.put(territory, previousServices);
+		return true;
+	}
+
 	/**
 	 * Gets the LOTL certificate as an inputStream stream
 	 *
@@ -260,9 +370,46 @@ public class TrustedListsCertificateSource extends CommonTrustedCertificateSourc
 		final TrustStatusList trustStatusList = TrustServiceListFactory.newInstance(doc);
 		trustStatusList.setWellSigned(coreValidity);
 		updateTslNextUpdateDate(url, trustStatusList);
+		if (useSnapshot) {
+			recordLoadedTsl(url, trustStatusList);
+		}
 		return trustStatusList;
 	}
 
+	private void recordLoadedTsl(final String url, final TrustStatusList trustStatusList) {
+
+		final String currentHashValue = getCurrentTSLHashCode(url);
+		if (currentHashValue == null) {
+
+			loadedTslHashesComplete = false;
+			return;
+		}
+		loadedTslHashes.put(url, currentHashValue);
+		final Date nextUpdate = trustStatusList.getNextUpdate();
+		if (nextUpdate != null) {
+			loadedTslNextUpdates.put(url, nextUpdate);
+		}
+	}
+
+	/**
+	 * @param url of the TSL
+	 * @return the content of the SHA2 file published with the TSL or null if it cannot be obtained
+	 */
+	private String getCurrentTSLHashCode(final String url) {
+
+		try {
+
+			final byte[] sha2Bytes = dataLoader.get(getSha2Url(url));
+			if (sha2Bytes == null) {
+				return null;
+			}
+			final String currentHashValue = new String(sha2Bytes).trim();
+			return DSSUtils.isBlank(currentHashValue) ? null : currentHashValue;
+		} catch (Exception e) {
+			return null;
+		}
+	}
+
 	private boolean validateTslSignature(final List<X509Certificate> signingCertList, final byte[] bytes) {
 
 		boolean coreValidity = false;
@@ -289,14 +436,14 @@ public class TrustedListsCertificateSource extends CommonTrustedCertificateSourc
 		return coreValidity;
 	}
 
-	protected void updateTSLHashCode(final String url, final String currentHashValue) {
+	protected synchronized void updateTSLHashCode(final String url, final String currentHashValue) {
 
 		ensureTSLHashCodePropertyFileLoaded();
 		tslHashes.setProperty(url, currentHashValue);
 		saveProperties(tslHashes, TSL_HASH_PROPERTIES);
 	}
 
-	protected String getTSLHashCode(final String url) {
+	protected synchronized String getTSLHashCode(final String url) {
 
 		ensureTSLHashCodePropertyFileLoaded();
 		return tslHashes.getProperty(url);
@@ -308,13 +455,13 @@ public class TrustedListsCertificateSource extends CommonTrustedCertificateSourc
 		}
 	}
 
-	protected String getTSLNextUpdateDate(final String url) {
+	protected synchronized String getTSLNextUpdateDate(final String url) {
 
 		ensureTSLNextUpdatePropertyFileLoaded();
 		return tslNextUpdates.getProperty(url);
 	}
 
-	protected void updateTslNextUpdateDate(final String url, final TrustStatusList tsl) {
+	protected synchronized void updateTslNextUpdateDate(final String url, final TrustStatusList tsl) {
 
 		ensureTSLNextUpdatePropertyFileLoaded();
 		final Date nextUpdate = tsl.getNextUpdate();
@@ -423,7 +570,9 @@ public class TrustedListsCertificateSource extends CommonTrustedCertificateSourc
 	}
 
 	/**
-	 * Load the certificates (trust anchors) contained in all the TSL referenced by the LOTL
+	 * Load the certificates (trust anchors) contained in all the TSL referenced by the LOTL. The TSLs are downloaded, checked and parsed in parallel (at most
+	 * {@code tslLoadingThreadNumber} at a time), a TSL which fails or which is not loaded within {@code tslLoadingTimeout} is skipped. The certificates are always added to the
+	 * pool in the order of the LOTL. The trusted lists which could not be loaded are reported by {@link #getFailedTerritories()}.
 	 */
 	public void init() {
 
@@ -433,41 +582,55 @@ public class TrustedListsCertificateSource extends CommonTrustedCertificateSourc
 		}
 
 		diagnosticInfo.clear();
+		loadedTslHashes.clear();
+		loadedTslNextUpdates.clear();
+		loadedTslHashesComplete = true;
+		failedTerritories.clear();
+		territoryServices.clear();
+
+		final boolean snapshotUsable = useSnapshot && isSnapshotUsable();
+		if (snapshotUsable && loadSnapshot()) {
 
+			loadAdditionalLists();
+			LOG.info("Loading completed from the snapshot: {} certificates", certPool.getNumberOfCertificates());
+			return;
+		}
 		final TrustStatusList lotl = loadLotl();
-		final int size = lotl.getOtherTSLPointers().size();
-		//        final ExecutorService executorService = Executors.newFixedThreadPool(size);
-		//        List<Future> futures = new ArrayList<Future>(size);
-		for (final PointerToOtherTSL pointerToTSL : lotl.getOtherTSLPointers()) {
-			//            Runnable runnable = new Runnable() {
-			//                public void run() {
-
-			final String url = pointerToTSL.getTslLocation();
-			final String territory = pointerToTSL.getTerritory();
-			final List<X509Certificate> signingCertList = pointerToTSL.getDigitalIdentity();
-			try {
+		final List<PointerToOtherTSL> otherTSLPointers = lotl.getOtherTSLPointers();
+		final int size = otherTSLPointers.size();
+		final ExecutorService executorService = Executors.newFixedThreadPool(Math.max(1, Math.min(tslLoadingThreadNumber, size)));
+		boolean allLoaded = true;
+		try {
 
-				loadTSL(url, territory, signingCertList);
-			} catch (DSSException e) {
-				LOG.error("Error loading trusted list for {} at {}", new Object[]{territory, url, e});
-				// do nothing continue with the next trusted list.
+			final List<TSLLoader> loaders = new ArrayList<TSLLoader>(size);
+			final List<Future<TrustStatusList>> futures = new ArrayList<Future<TrustStatusList>>(size);
+			for (final PointerToOtherTSL pointerToTSL : otherTSLPointers) {
+
+				final TSLLoader loader = new TSLLoader(pointerToTSL.getTslLocation(), pointerToTSL.getTerritory(), pointerToTSL.getDigitalIdentity());
+				loaders.add(loader);
+				futures.add(executorService.submit(loader));
 			}
+			for (int ii = 0; ii < size; ii++) {
+
+				// in case of error the trusted list is recorded as failed and the loading continues with the next one.
+				final TSLLoader loader = loaders.get(ii);
+				if (!mergeTSL(loader, futures.get(ii))) {
 
-			//                }
-			//            };
-			//            final Future submit = executorService.submit(runnable);
-			//            futures.add(submit);
-		}
-
-		//        executorService.shutdown();
-		//        while (!executorService.isTerminated()){
-		//            try {
-		//                Thread.sleep(100);
-		//            } catch (InterruptedException e) {
-		//                throw new RuntimeException(e);
-		//            }
-		//        }
-		//        LOG.info("Parallel download of Trusted list done");
+					failedTerritories.add(getTerritoryKey(loader.url, loader.territory));
+					allLoaded = false;
+				}
+			}
+		} finally {
+			executorService.shutdownNow();
+		}
+		LOG.info("Parallel download of Trusted list done");
+		if (snapshotUsable) {
+			if (allLoaded && loadedTslHashesComplete) {
+				saveSnapshot();
+			} else {
+				LOG.info("The trusted lists snapshot is not saved: some trusted lists or their SHA2 files could not be loaded.");
+			}
+		}
 		loadAdditionalLists();
 		LOG.info("Loading completed: {} trusted lists", size);
 		LOG.info("                 : {} certificates", certPool.getNumberOfCertificates());
@@ -543,6 +706,215 @@ public class TrustedListsCertificateSource extends CommonTrustedCertificateSourc
 		loadTSL(url, territory, signingCertificates);
 	}
 
+	/**
+	 * This method waits for the given TSL to be loaded and adds its certificates to the pool.
+	 *
+	 * @param loader {@code TSLLoader} of the TSL
+	 * @param future the result of the loading
+	 * @return {@code true} if the TSL was loaded
+	 */
+	private boolean mergeTSL(final TSLLoader loader, final Future<TrustStatusList> future) {
+
+		try {
+
+			final TrustStatusList countryTSL = awaitTSL(loader, future);
+			loadOneTSL(loader.url, loader.territory, countryTSL);
+			return true;
+		} catch (ExecutionException e) {
+
+			final Throwable cause = e.getCause();
+			if (cause instanceof DSSNullReturnedException) {
+
+				LOG.info("Download skipped.");
+				// do nothing: it can happened when a mock data loader is used.
+			} else {
+				makeATrace(loader.url, "Other problem: " + cause.toString(), cause);
+			}
+		} catch (TimeoutException e) {
+
+			future.cancel(true);
+			makeATrace(loader.url, "The trusted list for '" + loader.territory + "' was not loaded within " + tslLoadingTimeout + " ms.", e);
+		} catch (InterruptedException e) {
+
+			Thread.currentThread().interrupt();
+			throw new DSSException(e);
+		} catch (final Throwable e) {
+			makeATrace(loader.url, "Other problem: " + e.toString(), e);
+		}
+		return false;
+	}
+
+	/**
+	 * The snapshot is used only if a key is defined to authenticate it and if it is not stored in the shared temporary directory of the system (the default {@code
+	 * tslPropertyCacheFolder}): the snapshot must be kept in a folder writable only by the application. The permissions of the folder cannot be checked with Java 6, they must
+	 * be ensured when the folder is configured.
+	 *
+	 * @return {@code true} if the snapshot can be read and written
+	 */
+	private boolean isSnapshotUsable() {
+
+		if (snapshotKey == null || snapshotKey.length < MIN_SNAPSHOT_KEY_LENGTH) {
+
+			LOG.warn("The trusted lists snapshot is not used: a snapshot key of at least {} bytes must be defined.", MIN_SNAPSHOT_KEY_LENGTH);
+			return false;
+		}
+		try {
+
+			final File temporaryFolder = new File(System.getProperty("java.io.tmpdir")).getCanonicalFile();
+			if (temporaryFolder.equals(tslPropertyCacheFolder.getCanonicalFile())) {
+
+				LOG.warn("The trusted lists snapshot is not used: it cannot be stored in the shared temporary directory '{}'.", temporaryFolder);
+				return false;
+			}
+		} catch (IOException e) {
+
+			LOG.warn("The trusted lists snapshot is not used: {}", e.toString());
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * This method restores the trusted certificates from the snapshot if the snapshot was created with the same configuration and if the SHA2 hash values of all trusted lists
+	 * are still the same and their nextUpdate is not reached.
+	 *
+	 * @return {@code true} if the certificates were restored from the snapshot
+	 */
+	private boolean loadSnapshot() {
+
+		final File file = new File(tslPropertyCacheFolder, TSL_SNAPSHOT);
+		if (!file.exists()) {
+			return false;
+		}
+		final TrustedListsSnapshot snapshot = TrustedListsSnapshot.read(file, snapshotKey);
+		if (snapshot == null || !snapshot.isCreatedWith(lotlUrl, lotlCertificate, checkSignature)) {
+			return false;
+		}
+		final Date now = new Date();
+		for (final Map.Entry<String, String> entry : snapshot.tslHashes.entrySet()) {
+
+			final String url = entry.getKey();
+			final Date nextUpdate = snapshot.tslNextUpdates.get(url);
+			if (nextUpdate != null && now.after(nextUpdate)) {
+
+				LOG.info("The trusted lists snapshot is not used: the nextUpdate of {} is reached.", url);
+				return false;
+			}
+			if (!entry.getValue().equals(getCurrentTSLHashCode(url))) {
+
+				LOG.info("The trusted lists snapshot is not used: {} has changed.", url);
+				return false;
+			}
+		}
+		for (final TrustedListsSnapshot.Entry entry : snapshot.entries) {
+
+			final X509Certificate x509Certificate = DSSUtils.loadCertificate(entry.encodedCertificate);
+			addCertificate(x509Certificate, entry.serviceInfo);
+			List<TerritoryService> services = territoryServices.get(entry.territory);
+			if (services == null) {
+
+				services = new ArrayList<TerritoryService>();
+				territoryServices.put(entry.territory, services);
+			}
+			services.add(new TerritoryService(x509Certificate, entry.serviceInfo));
+		}
+		final String diagnostic = "Loaded from the snapshot of " + snapshot.creationDate.toString();
+		for (final String url : snapshot.tslHashes.keySet()) {
+			diagnosticInfo.put(url, diagnostic);
+		}
+		LOG.info("The trusted lists snapshot created on {} is used.", snapshot.creationDate);
+		return true;
+	}
+
+	/**
+	 * This method persists the trusted certificates loaded from the trusted lists together with the SHA2 hash values of the trusted lists.
+	 */
+	private void saveSnapshot() {
+
+		final TrustedListsSnapshot snapshot = new TrustedListsSnapshot(lotlUrl, lotlCertificate, checkSignature, loadedTslHashes, loadedTslNextUpdates);
+		for (final Map.Entry<String, List<TerritoryService>> entry : territoryServices.entrySet()) {
+
+			for (final TerritoryService territoryService : entry.getValue()) {
+
+				snapshot.addEntry(entry.getKey(), DSSUtils.getEncoded(territoryService.certificate), territoryService.serviceInfo);
+			}
+		}
+		if (snapshot.write(new File(tslPropertyCacheFolder, TSL_SNAPSHOT), snapshotKey)) {
+			LOG.info("The trusted lists snapshot is saved: {} certificates.", snapshot.entries.size());
+		}
+	}
+
+	/**
+	 * Waits for the result of the loading. The timeout is counted from the moment the loading of the TSL started (the TSL can wait in the queue of the executor).
+	 */
+	private TrustStatusList awaitTSL(final TSLLoader loader, final Future<TrustStatusList> future) throws InterruptedException, ExecutionException, TimeoutException {
+
+		while (true) {
+
+			final long startTime = loader.startTime;
+			final long waitTime = startTime == 0 ? tslLoadingTimeout : startTime + tslLoadingTimeout - System.currentTimeMillis();
+			if (waitTime <= 0) {
+				throw new TimeoutException();
+			}
+			try {
+				return future.get(waitTime, TimeUnit.MILLISECONDS);
+			} catch (TimeoutException e) {
+				if (startTime != 0) {
+					throw e;
+				}
+				// the loading was still waiting in the queue: the timeout is computed again
+			}
+		}
+	}
+
+	/**
+	 * Downloads, checks and parses a TSL. It can be executed in parallel with the other TSLs.
+	 */
+	private class TSLLoader implements Callable<TrustStatusList> {
+
+		private final String url;
+		private final String territory;
+		private final List<X509Certificate> signingCertList;
+
+		private volatile long startTime;
+
+		TSLLoader(final String url, final String territory, final List<X509Certificate> signingCertList) {
+
+			this.url = url == null ? null : url.trim();
+			this.territory = territory;
+			this.signingCertList = signingCertList;
+		}
+
+		@Override
+		public TrustStatusList call() throws Exception {
+
+			startTime = System.currentTimeMillis();
+			if (DSSUtils.isBlank(url)) {
+
+				LOG.error("The URL is blank!");
+				throw new DSSException("The URL of the trusted list for '" + territory + "' is blank!");
+			}
+			diagnosticInfo.put(url, "Loading");
+			LOG.info("Downloading TrustStatusList for '{}' from url= {}", territory, url);
+			return getTrustStatusList(url, signingCertList);
+		}
+	}
+
+	/**
+	 * A trusted certificate with the service information loaded from the trusted list of one territory.
+	 */
+	private static final class TerritoryService {
+
+		private final X509Certificate certificate;
+		private final ServiceInfo serviceInfo;
+
+		TerritoryService(final X509Certificate certificate, final ServiceInfo serviceInfo) {
+
+			this.certificate = certificate;
+			this.serviceInfo = serviceInfo;
+		}
+	}
+
 	/**
 	 * @param url             of the TSL to load
 	 * @param territory       of the TSL
@@ -561,9 +933,7 @@ public class TrustedListsCertificateSource extends CommonTrustedCertificateSourc
 			diagnosticInfo.put(trimmedUrl, "Loading");
 			LOG.info("Downloading TrustStatusList for '{}' from url= {}", territory, trimmedUrl);
 			final TrustStatusList countryTSL = getTrustStatusList(trimmedUrl, signingCertList);
-			loadAllCertificatesFromOneTSL(countryTSL);
-			LOG.info(".... done for '{}'", territory);
-			diagnosticInfo.put(trimmedUrl, "Loaded " + new Date().toString());
+			loadOneTSL(trimmedUrl, territory, countryTSL);
 		} catch (final DSSNullReturnedException e) {
 
 			LOG.info("Download skipped.");
@@ -573,6 +943,20 @@ public class TrustedListsCertificateSource extends CommonTrustedCertificateSourc
 		}
 	}
 
+	private void loadOneTSL(final String url, final String territory, final TrustStatusList countryTSL) {
+
+		final List<TerritoryService> services = new ArrayList<TerritoryService>();
+		loadAllCertificatesFromOneTSL(countryTSL, services);
+		territoryServices.put(getTerritoryKey(url, territory), services);
+		LOG.info(".... done for '{}'", territory);
+		diagnosticInfo.put(url, "Loaded " + new Date().toString());
+	}
+
+	private static String getTerritoryKey(final String url, final String territory) {
+
+		return DSSUtils.isBlank(territory) ? url : territory;
+	}
+
 	private void makeATrace(final String url, final String message, final Throwable e) {
 
 		LOG.error(message, e);
@@ -586,8 +970,9 @@ public class TrustedListsCertificateSource extends CommonTrustedCertificateSourc
 	 * CertificateSource
 	 *
 	 * @param trustStatusList
+	 * @param services        receives the added certificates with their service information
 	 */
-	private void loadAllCertificatesFromOneTSL(final TrustStatusList trustStatusList) {
+	private void loadAllCertificatesFromOneTSL(final TrustStatusList trustStatusList, final List<TerritoryService> services) {
 
 		for (final TrustServiceProvider trustServiceProvider : trustStatusList.getTrustServicesProvider()) {
 
@@ -618,7 +1003,7 @@ public class TrustedListsCertificateSource extends CommonTrustedCertificateSourc
 						}
 						if (x509Certificate != null) {
 
-							addCertificate(x509Certificate, trustService, trustServiceProvider, trustStatusList.isWellSigned());
+							addCertificate(x509Certificate, trustService, trustServiceProvider, trustStatusList.isWellSigned(), services);
 						}
 					} catch (DSSException e) {
 
@@ -639,6 +1024,45 @@ public class TrustedListsCertificateSource extends CommonTrustedCertificateSourc
 		this.tslRefreshPolicy = tslRefreshPolicy;
 	}
 
+	/**
+	 * This method allows to define the maximal number of trusted lists loaded in parallel. The default value is {@code DEFAULT_TSL_LOADING_THREAD_NUMBER}.
+	 *
+	 * @param tslLoadingThreadNumber the number of threads (1 to load the trusted lists one after another)
+	 */
+	public void setTslLoadingThreadNumber(final int tslLoadingThreadNumber) {
+		this.tslLoadingThreadNumber = tslLoadingThreadNumber;
+	}
+
+	/**
+	 * This method allows to define the time allowed to load one trusted list. The trusted lists which are not loaded in time are skipped. The default value is {@code
+	 * DEFAULT_TSL_LOADING_TIMEOUT}.
+	 *
+	 * @param tslLoadingTimeout the timeout in milliseconds
+	 */
+	public void setTslLoadingTimeout(final long tslLoadingTimeout) {
+		this.tslLoadingTimeout = tslLoadingTimeout;
+	}
+
+	/**
+	 * Defines if the loaded trusted certificates are persisted in a snapshot. The snapshot is reused by {@code init} as long as the SHA2 files published with the trusted lists
+	 * do not change: the trusted lists are then neither downloaded nor parsed and their signature is not validated again.
+	 *
+	 * @param useSnapshot {@code true} to use the snapshot
+	 */
+	public void setUseSnapshot(final boolean useSnapshot) {
+		this.useSnapshot = useSnapshot;
+	}
+
+	/**
+	 * Defines the secret key (at least {@code MIN_SNAPSHOT_KEY_LENGTH} bytes) of the HMAC which authenticates the snapshot. A snapshot which was not written with this key is
+	 * ignored. Without key the snapshot is not used.
+	 *
+	 * @param snapshotKey the secret key
+	 */
+	public void setSnapshotKey(final byte[] snapshotKey) {
+		this.snapshotKey = snapshotKey == null ? null : snapshotKey.clone();
+	}
+
 	/**
 	 * Defines if the TL signature must be checked.
 	 *
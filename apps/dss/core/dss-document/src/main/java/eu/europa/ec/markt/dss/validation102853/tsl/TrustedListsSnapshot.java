@@ -0,0 +1,464 @@
+/*
+ * DSS - Digital Signature Services
+ *
+ * Copyright (C) 2013 European Commission, Directorate-General Internal Market and Services (DG MARKT), B-1049 Bruxelles/Brussel
+ *
+ * Developed by: 2013 ARHS Developments S.A. (rue Nicolas Bové 2B, L-1253 Luxembourg) http://www.arhs-developments.com
+ *
+ * This file is part of the "DSS - Digital Signature Services" project.
+ *
+ * "DSS - Digital Signature Services" is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU Lesser General Public License as published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * DSS is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * "DSS - Digital Signature Services".  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package eu.europa.ec.markt.dss.validation102853.tsl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import eu.europa.ec.markt.dss.DSSUtils;
+import eu.europa.ec.markt.dss.exception.DSSException;
+import eu.europa.ec.markt.dss.validation102853.condition.CompositeCondition;
+import eu.europa.ec.markt.dss.validation102853.condition.Condition;
+import eu.europa.ec.markt.dss.validation102853.condition.CriteriaListCondition;
+import eu.europa.ec.markt.dss.validation102853.condition.KeyUsageCondition;
+import eu.europa.ec.markt.dss.validation102853.condition.MatchingCriteriaIndicator;
+import eu.europa.ec.markt.dss.validation102853.condition.PolicyIdCondition;
+import eu.europa.ec.markt.dss.validation102853.condition.QcStatementCondition;
+import eu.europa.ec.markt.dss.validation102853.condition.ServiceInfo;
+
+/**
+ * This class represents the persisted state of a {@code TrustedListsCertificateSource}: the trusted certificates with their service information (history and qualifiers) by
+ * territory and the SHA2 hash value of each trusted list used to build it. The snapshot can be reused only if the configuration is the same and none of the trusted lists has
+ * changed.
+ * <p/>
+ * The snapshot is written in an explicit binary format (no Java serialization) followed by an HMAC-SHA256 computed with a key known only by the application: a snapshot
+ * which was not written with the same key is rejected before any of its content is interpreted.
+ *
+ * @version $Revision$ - $Date$
+ */
+
+class TrustedListsSnapshot {
+
+	private static final Logger LOG = LoggerFactory.getLogger(TrustedListsSnapshot.class);
+
+	private static final int MAGIC = 0x44535354;
+	private static final int VERSION = 1;
+
+	private static final String MAC_ALGORITHM = "HmacSHA256";
+
+	private static final int CONDITION_CRITERIA_LIST = 1;
+	private static final int CONDITION_COMPOSITE = 2;
+	private static final int CONDITION_KEY_USAGE = 3;
+	private static final int CONDITION_POLICY_ID = 4;
+	private static final int CONDITION_QC_STATEMENT = 5;
+
+	final Date creationDate;
+
+	final String lotlUrl;
+	final String lotlCertificate;
+	final boolean checkSignature;
+
+	/**
+	 * The SHA2 hash value of each trusted list (including the LOTL) by URL
+	 */
+	final Map<String, String> tslHashes;
+
+	/**
+	 * The nextUpdate of each trusted list by URL
+	 */
+	final Map<String, Date> tslNextUpdates;
+
+	final List<Entry> entries = new ArrayList<Entry>();
+
+	TrustedListsSnapshot(final String lotlUrl, final String lotlCertificate, final boolean checkSignature, final Map<String, String> tslHashes,
+	                     final Map<String, Date> tslNextUpdates) {
+
+		this(new Date(), lotlUrl, lotlCertificate, checkSignature, new HashMap<String, String>(tslHashes), new HashMap<String, Date>(tslNextUpdates));
+	}
+
+	private TrustedListsSnapshot(final Date creationDate, final String lotlUrl, final String lotlCertificate, final boolean checkSignature, final Map<String, String> tslHashes,
+	                             final Map<String, Date> tslNextUpdates) {
+
+		this.creationDate = creationDate;
+		this.lotlUrl = lotlUrl;
+		this.lotlCertificate = lotlCertificate;
+		this.checkSignature = checkSignature;
+		this.tslHashes = tslHashes;
+		this.tslNextUpdates = tslNextUpdates;
+	}
+
+	/**
+	 * @param territory          the territory of the trusted list which defines the service
+	 * @param encodedCertificate DER encoded trusted certificate
+	 * @param serviceInfo        the {@code ServiceInfo} associated to the certificate
+	 */
+	void addEntry(final String territory, final byte[] encodedCertificate, final ServiceInfo serviceInfo) {
+
+		entries.add(new Entry(territory, encodedCertificate, serviceInfo));
+	}
+
+	/**
+	 * Indicates if the snapshot was created with the given configuration.
+	 */
+	boolean isCreatedWith(final String lotlUrl, final String lotlCertificate, final boolean checkSignature) {
+
+		return DSSUtils.equals(this.lotlUrl, lotlUrl) && DSSUtils.equals(this.lotlCertificate, lotlCertificate) && this.checkSignature == checkSignature;
+	}
+
+	/**
+	 * Writes the snapshot. A temporary file is written first, then renamed.
+	 *
+	 * @param file the destination file
+	 * @param key  the key of the HMAC
+	 * @return {@code true} if the snapshot was written
+	 */
+	boolean write(final File file, final byte[] key) {
+
+		final File temporaryFile = new File(file.getParentFile(), file.getName() + ".tmp");
+		OutputStream outputStream = null;
+		try {
+
+			final byte[] content = encode();
+			outputStream = new FileOutputStream(temporaryFile);
+			outputStream.write(content);
+			outputStream.write(computeMac(key, content, content.length));
+			outputStream.close();
+			outputStream = null;
+			if (file.exists() && !file.delete()) {
+				throw new IllegalStateException("The previous snapshot cannot be deleted.");
+			}
+			if (!temporaryFile.renameTo(file)) {
+				throw new IllegalStateException("The snapshot cannot be renamed.");
+			}
+			return true;
+		} catch (Exception e) {
+
+			LOG.error("Impossible to save the trusted lists snapshot: '{}'", file.getAbsolutePath(), e);
+			DSSUtils.closeQuietly(outputStream);
+			temporaryFile.delete();
+			return false;
+		}
+	}
+
+	/**
+	 * Reads a snapshot. The HMAC is checked before the content is decoded.
+	 *
+	 * @param file the snapshot file
+	 * @param key  the key of the HMAC
+	 * @return {@code TrustedListsSnapshot} or null if the file cannot be read or was not written with the same key
+	 */
+	static TrustedListsSnapshot read(final File file, final byte[] key) {
+
+		try {
+
+			final byte[] bytes = DSSUtils.toByteArray(file);
+			final Mac mac = getMac(key);
+			final int contentLength = bytes.length - mac.getMacLength();
+			if (contentLength <= 0) {
+				throw new DSSException("The snapshot is truncated.");
+			}
+			final byte[] expectedMac = computeMac(key, bytes, contentLength);
+			final byte[] actualMac = new byte[expectedMac.length];
+			System.arraycopy(bytes, contentLength, actualMac, 0, actualMac.length);
+			if (!MessageDigest.isEqual(expectedMac, actualMac)) {
+				throw new DSSException("The HMAC of the snapshot is not valid.");
+			}
+			return decode(new DataInputStream(new ByteArrayInputStream(bytes, 0, contentLength)));
+		} catch (Exception e) {
+
+			LOG.warn("Impossible to read the trusted lists snapshot: '{}': {}", file.getAbsolutePath(), e.toString());
+			return null;
+		}
+	}
+
+	private static Mac getMac(final byte[] key) throws GeneralSecurityException {
+
+		final Mac mac = Mac.getInstance(MAC_ALGORITHM);
+		mac.init(new SecretKeySpec(key, MAC_ALGORITHM));
+		return mac;
+	}
+
+	private static byte[] computeMac(final byte[] key, final byte[] content, final int length) throws GeneralSecurityException {
+
+		final Mac mac = getMac(key);
+		mac.update(content, 0, length);
+		return mac.doFinal();
+	}
+
+	private byte[] encode() throws IOException {
+
+		final ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+		final DataOutputStream out = new DataOutputStream(byteArrayOutputStream);
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		out.writeLong(creationDate.getTime());
+		writeString(out, lotlUrl);
+		writeString(out, lotlCertificate);
+		out.writeBoolean(checkSignature);
+		out.writeInt(tslHashes.size());
+		for (final Map.Entry<String, String> entry : tslHashes.entrySet()) {
+
+			out.writeUTF(entry.getKey());
+			out.writeUTF(entry.getValue());
+		}
+		out.writeInt(tslNextUpdates.size());
+		for (final Map.Entry<String, Date> entry : tslNextUpdates.entrySet()) {
+
+			out.writeUTF(entry.getKey());
+			out.writeLong(entry.getValue().getTime());
+		}
+		out.writeInt(entries.size());
+		for (final Entry entry : entries) {
+
+			out.writeUTF(entry.territory);
+			out.writeInt(entry.encodedCertificate.length);
+			out.write(entry.encodedCertificate);
+			writeServiceInfo(out, entry.serviceInfo);
+		}
+		out.flush();
+		return byteArrayOutputStream.toByteArray();
+	}
+
+	private static TrustedListsSnapshot decode(final DataInputStream in) throws IOException {
+
+		if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+			throw new DSSException("Unknown snapshot format.");
+		}
+		final Date creationDate = new Date(in.readLong());
+		final String lotlUrl = readString(in);
+		final String lotlCertificate = readString(in);
+		final boolean checkSignature = in.readBoolean();
+		final Map<String, String> tslHashes = new HashMap<String, String>();
+		for (int ii = readCount(in); ii > 0; ii--) {
+
+			final String url = in.readUTF();
+			tslHashes.put(url, in.readUTF());
+		}
+		final Map<String, Date> tslNextUpdates = new HashMap<String, Date>();
+		for (int ii = readCount(in); ii > 0; ii--) {
+
+			final String url = in.readUTF();
+			tslNextUpdates.put(url, new Date(in.readLong()));
+		}
+		final TrustedListsSnapshot snapshot = new TrustedListsSnapshot(creationDate, lotlUrl, lotlCertificate, checkSignature, tslHashes, tslNextUpdates);
+		for (int ii = readCount(in); ii > 0; ii--) {
+
+			final String territory = in.readUTF();
+			final byte[] encodedCertificate = new byte[readCount(in)];
+			in.readFully(encodedCertificate);
+			snapshot.addEntry(territory, encodedCertificate, readServiceInfo(in));
+		}
+		if (in.read() != -1) {
+			throw new DSSException("Unexpected data at the end of the snapshot.");
+		}
+		return snapshot;
+	}
+
+	private static void writeServiceInfo(final DataOutputStream out, final ServiceInfo serviceInfo) throws IOException {
+
+		writeString(out, serviceInfo.getTspName());
+		writeString(out, serviceInfo.getTspTradeName());
+		writeString(out, serviceInfo.getTspPostalAddress());
+		writeString(out, serviceInfo.getTspElectronicAddress());
+		writeString(out, serviceInfo.getType());
+		writeString(out, serviceInfo.getServiceName());
+		writeString(out, serviceInfo.getStatus());
+		writeDate(out, serviceInfo.getStatusStartDate());
+		writeDate(out, serviceInfo.getStatusEndDate());
+		writeDate(out, serviceInfo.getExpiredCertsRevocationInfo());
+		out.writeBoolean(serviceInfo.isTlWellSigned());
+		final Map<String, List<Condition>> qualifiersAndConditions = serviceInfo.getQualifiersAndConditions();
+		out.writeInt(qualifiersAndConditions.size());
+		for (final Map.Entry<String, List<Condition>> entry : qualifiersAndConditions.entrySet()) {
+
+			out.writeUTF(entry.getKey());
+			writeConditions(out, entry.getValue());
+		}
+	}
+
+	private static ServiceInfo readServiceInfo(final DataInputStream in) throws IOException {
+
+		final ServiceInfo serviceInfo = new ServiceInfo();
+		serviceInfo.setTspName(readString(in));
+		serviceInfo.setTspTradeName(readString(in));
+		serviceInfo.setTspPostalAddress(readString(in));
+		serviceInfo.setTspElectronicAddress(readString(in));
+		serviceInfo.setType(readString(in));
+		serviceInfo.setServiceName(readString(in));
+		serviceInfo.setStatus(readString(in));
+		serviceInfo.setStatusStartDate(readDate(in));
+		serviceInfo.setStatusEndDate(readDate(in));
+		serviceInfo.setExpiredCertsRevocationInfo(readDate(in));
+		serviceInfo.setTlWellSigned(in.readBoolean());
+		for (int ii = readCount(in); ii > 0; ii--) {
+
+			final String qualifier = in.readUTF();
+			for (final Condition condition : readConditions(in)) {
+
+				serviceInfo.addQualifierAndCondition(qualifier, condition);
+			}
+		}
+		return serviceInfo;
+	}
+
+	/**
+	 * Only the conditions created from the trusted lists are supported: a snapshot containing another kind of condition is not written.
+	 */
+	private static void writeConditions(final DataOutputStream out, final List<Condition> conditions) throws IOException {
+
+		out.writeInt(conditions.size());
+		for (final Condition condition : conditions) {
+
+			final Class<? extends Condition> conditionClass = condition.getClass();
+			if (conditionClass == CriteriaListCondition.class) {
+
+				out.writeByte(CONDITION_CRITERIA_LIST);
+				out.writeUTF(((CriteriaListCondition) condition).getMatchingCriteriaIndicator().name());
+				writeConditions(out, ((CompositeCondition) condition).getChildren());
+			} else if (conditionClass == CompositeCondition.class) {
+
+				out.writeByte(CONDITION_COMPOSITE);
+				writeConditions(out, ((CompositeCondition) condition).getChildren());
+			} else if (conditionClass == KeyUsageCondition.class) {
+
+				final KeyUsageCondition keyUsageCondition = (KeyUsageCondition) condition;
+				out.writeByte(CONDITION_KEY_USAGE);
+				out.writeUTF(keyUsageCondition.getBit().name());
+				out.writeBoolean(keyUsageCondition.getValue());
+			} else if (conditionClass == PolicyIdCondition.class) {
+
+				out.writeByte(CONDITION_POLICY_ID);
+				out.writeUTF(((PolicyIdCondition) condition).getPolicyOid());
+			} else if (conditionClass == QcStatementCondition.class) {
+
+				out.writeByte(CONDITION_QC_STATEMENT);
+				writeString(out, ((QcStatementCondition) condition).getQcStatementId());
+			} else {
+				throw new DSSException("Unsupported condition: " + conditionClass.getName());
+			}
+		}
+	}
+
+	private static List<Condition> readConditions(final DataInputStream in) throws IOException {
+
+		final int size = readCount(in);
+		final List<Condition> conditions = new ArrayList<Condition>();
+		for (int ii = 0; ii < size; ii++) {
+
+			final int type = in.readByte();
+			switch (type) {
+				case CONDITION_CRITERIA_LIST:
+					final CriteriaListCondition criteriaListCondition = new CriteriaListCondition(MatchingCriteriaIndicator.valueOf(in.readUTF()));
+					addChildren(criteriaListCondition, readConditions(in));
+					conditions.add(criteriaListCondition);
+					break;
+				case CONDITION_COMPOSITE:
+					final CompositeCondition compositeCondition = new CompositeCondition();
+					addChildren(compositeCondition, readConditions(in));
+					conditions.add(compositeCondition);
+					break;
+				case CONDITION_KEY_USAGE:
+					final String bit = in.readUTF();
+					conditions.add(new KeyUsageCondition(bit, in.readBoolean()));
+					break;
+				case CONDITION_POLICY_ID:
+					conditions.add(new PolicyIdCondition(in.readUTF()));
+					break;
+				case CONDITION_QC_STATEMENT:
+					conditions.add(new QcStatementCondition(readString(in)));
+					break;
+				default:
+					throw new DSSException("Unknown condition type: " + type);
+			}
+		}
+		return conditions;
+	}
+
+	private static void addChildren(final CompositeCondition parent, final List<Condition> children) {
+
+		for (final Condition child : children) {
+
+			parent.addChild(child);
+		}
+	}
+
+	private static int readCount(final DataInputStream in) throws IOException {
+
+		final int count = in.readInt();
+		if (count < 0 || count > in.available()) {
+			throw new DSSException("Invalid count in the snapshot: " + count);
+		}
+		return count;
+	}
+
+	private static void writeString(final DataOutputStream out, final String value) throws IOException {
+
+		out.writeBoolean(value != null);
+		if (value != null) {
+			out.writeUTF(value);
+		}
+	}
+
+	private static String readString(final DataInputStream in) throws IOException {
+
+		return in.readBoolean() ? in.readUTF() : null;
+	}
+
+	private static void writeDate(final DataOutputStream out, final Date value) throws IOException {
+
+		out.writeBoolean(value != null);
+		if (value != null) {
+			out.writeLong(value.getTime());
+		}
+	}
+
+	private static Date readDate(final DataInputStream in) throws IOException {
+
+		return in.readBoolean() ? new Date(in.readLong()) : null;
+	}
+
+	/**
+	 * A trusted certificate and the service information defined by the trusted list of a territory.
+	 */
+	static class Entry {
+
+		final String territory;
+		final byte[] encodedCertificate;
+		final ServiceInfo serviceInfo;
+
+		Entry(final String territory, final byte[] encodedCertificate, final ServiceInfo serviceInfo) {
+
+			this.territory = territory;
+			this.encodedCertificate = encodedCertificate;
+			this.serviceInfo = serviceInfo;
+		}
+	}
+}
@@ -20,12 +20,22 @@
 
 package eu.europa.ec.markt.dss.validation102853.crl;
 
+import java.io.ByteArrayInputStream;
+import java.io.File;
 import java.security.cert.X509CRL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -41,6 +51,18 @@ import eu.europa.ec.markt.dss.validation102853.loader.DataLoader;
  * To speed up the retrieval of the CRL(s) the {@code InMemoryCacheOnlineCRLSource} class allows to define the freshness of CRL. This latter is the period of time during which the
  * CRL can be reused. The freshness is defined as the difference between the thisUpdate field of the CRL and the current time. During the retrieval process the nextUpdate field of
  * the CRL is also checked. If its value is before the current time then the refresh is forced.
+ * <p/>
+ * The CRLs are kept parsed and with their signature already verified, for each URL, issuer certificate and list of distribution points. The revoked certificates are indexed by serial number. When the same
+ * CRL is requested concurrently by several threads, only one of them downloads it, the other ones wait for the result. The size of the cache is bounded by
+ * {@code maxCacheSize} (sum of the encoded CRL sizes): the CRLs with the earliest nextUpdate are evicted first. A CRL which is not in the cache is first requested without
+ * refresh, to reuse the copy of the {@code DataLoader} if it is still fresh; a CRL which is not fresh anymore is requested with refresh.
+ * <p/>
+ * The CRLs bigger than {@code compactCRLThreshold} are parsed with the {@code StreamingCRLParser} and kept as {@code CompactCRL}: only the serial numbers, the revocation
+ * dates and the reasons are kept in memory. The encoded CRL is stored as is in a temporary file (see {@code setEncodedCRLFolder}) and read back only when it must be
+ * included in a signature.
+ * <p/>
+ * The failures (download or parsing error, CRL whose signature cannot be verified) are remembered during {@code failureCacheDuration} to not download and verify the
+ * same broken CRL for each validation. A CRL with an invalid signature is still returned, with its invalidity reason, to appear in the report.
  * Note that to be efficient this class must relay on a {@code DataLoader} allowing the caching mechanism as {@link eu.europa.ec.markt.dss.validation102853.https.FileCacheDataLoader}.
  *
  * @author Robert Bielecki
@@ -51,6 +73,21 @@ public class InMemoryCacheOnlineCRLSource extends OnlineCRLSource {
 
 	private static final Logger LOG = LoggerFactory.getLogger(InMemoryCacheOnlineCRLSource.class);
 
+	/**
+	 * The default maximum size of the cache: 256 MB of encoded CRLs.
+	 */
+	public static final long DEFAULT_MAX_CACHE_SIZE = 256L * 1024 * 1024;
+
+	/**
+	 * The default size of the encoded CRL above which the CRL is kept in the compact form: 1 MB.
+	 */
+	public static final long DEFAULT_COMPACT_CRL_THRESHOLD = 1024L * 1024;
+
+	/**
+	 * The default time (millis) during which a failure is remembered: 1 minute.
+	 */
+	public static final long DEFAULT_FAILURE_CACHE_DURATION = 60000;
+
 	/**
 	 * This field contains the freshness time unit to be used when dealing with the revocation freshness. The default value is {@code TimeUnit.DAYS}
 	 */
@@ -62,9 +99,34 @@ public class InMemoryCacheOnlineCRLSource extends OnlineCRLSource {
 	private long freshnessValue = 1;
 
 	/**
-	 * This {@code Map} contains for each CRL (represented by its URL) the pair of: thisUpdate and nextUpdate dates
+	 * The maximum size (in bytes) of the encoded CRLs kept in the cache.
+	 */
+	private long maxCacheSize = DEFAULT_MAX_CACHE_SIZE;
+
+	/**
+	 * The size (in bytes) of the encoded CRL above which the CRL is parsed with the {@code StreamingCRLParser}.
+	 */
+	private long compactCRLThreshold = DEFAULT_COMPACT_CRL_THRESHOLD;
+
+	/**
+	 * The folder of the temporary files holding the encoded CRLs kept in the compact form, null for the default temporary directory.
+	 */
+	private File encodedCRLFolder;
+
+	/**
+	 * The time (millis) during which a failure to obtain a valid CRL is remembered.
+	 */
+	private long failureCacheDuration = DEFAULT_FAILURE_CACHE_DURATION;
+
+	/**
+	 * This {@code Map} contains for each CRL (represented by its URL and the DSS id of its issuer) the parsed and verified CRL.
+	 */
+	private final ConcurrentMap<String, FutureTask<CachedCRL>> crlCache = new ConcurrentHashMap<String, FutureTask<CachedCRL>>();
+
+	/**
+	 * The current size (in bytes) of the encoded CRLs kept in the cache.
 	 */
-	private Map<String, DatePair> crlFreshness = new HashMap<String, DatePair>();
+	private final AtomicLong cacheSize = new AtomicLong();
 
 	/**
 	 * This constructor allows to set a specific {@code DataLoader}.
@@ -76,7 +138,6 @@ public class InMemoryCacheOnlineCRLSource extends OnlineCRLSource {
 		super(dataLoader);
 	}
 
-
 	@Override
 	public CRLToken findCrl(final CertificateToken certificateToken) throws DSSException {
 
@@ -93,41 +154,175 @@ public class InMemoryCacheOnlineCRLSource extends OnlineCRLSource {
 		}
 		for (final String crlUrl : crlUrls) {
 
-			final boolean refresh = shouldRefresh(crlUrl);
-			final byte[] crlData = dataLoader.get(crlUrl, refresh);
-			if (crlData == null) {
+			final CachedCRL cachedCRL = getCachedCRL(crlUrl, issuerToken, crlUrls);
+			if (cachedCRL == null || cachedCRL.crlValidity == null) {
 				continue;
 			}
-			final X509CRL x509Crl = buildX509Crl(crlData);
-			if (x509Crl == null) {
-				return null;
-			}
-			final CRLValidity crlValidity = isValidCRL(x509Crl, issuerToken, crlUrls);
-			final CRLToken crlToken = new CRLToken(certificateToken, crlValidity);
+			final CRLToken crlToken = new CRLToken(certificateToken, cachedCRL.crlValidity);
 			crlToken.setSourceURL(crlUrl);
-			if (refresh) {
-				crlFreshness.put(crlUrl, new DatePair(crlToken.getThisUpdate(), crlToken.getNextUpdate()));
-			}
 			return crlToken;
 		}
 		return null;
 	}
 
 	/**
-	 * This method indicates if the cached CRL (if any) related to the given {@code crlUrl} should be refreshed or not. The nextUpdate of the CRL and the {@code freshnessValue}
-	 * are
-	 * checked.
+	 * This method returns the cached CRL related to the given {@code crlUrl} and {@code issuerToken}. If there is no such CRL or if it should be refreshed (the nextUpdate of
+	 * the CRL and the {@code freshnessValue} are checked) then the CRL is downloaded. Only one thread downloads a given CRL at a time.
+	 *
+	 * @param crlUrl      the {@code String} representation of the CRL's URL
+	 * @param issuerToken the issuer of the CRL
+	 * @param dpUrlList   {@code List} of {@code String} representation of the certificate's DP urls
+	 * @return {@code CachedCRL} (its {@code crlValidity} is null if the CRL cannot be obtained) or null
+	 */
+	private CachedCRL getCachedCRL(final String crlUrl, final CertificateToken issuerToken, final List<String> dpUrlList) {
+
+		final String key = crlUrl + "|" + issuerToken.getDSSId() + "|" + dpUrlList;
+		while (true) {
+
+			FutureTask<CachedCRL> future = crlCache.get(key);
+			if (future != null && future.isDone()) {
+
+				final CachedCRL cachedCRL = getResult(key, future);
+				if (cachedCRL != null && isUsable(cachedCRL)) {
+					return cachedCRL;
+				}
+			}
+			if (future == null || future.isDone()) {
+
+				// An entry which is not usable anymore is refreshed, a missing entry can be served by the cache of the DataLoader
+				final boolean refresh = future != null;
+				final FutureTask<CachedCRL> newFuture = new FutureTask<CachedCRL>(new CRLLoader(crlUrl, issuerToken, dpUrlList, refresh));
+				final boolean installed = future == null ? crlCache.putIfAbsent(key, newFuture) == null : crlCache.replace(key, future, newFuture);
+				if (!installed) {
+					// Another thread is already refreshing this CRL
+					continue;
+				}
+				if (future != null) {
+					release(future);
+				}
+				newFuture.run();
+				future = newFuture;
+			}
+			final CachedCRL cachedCRL = getResult(key, future);
+			if (cachedCRL == null) {
+
+				// Unexpected failure (the known failures are cached by the CRLLoader)
+				crlCache.remove(key, future);
+				return null;
+			}
+			evictIfNeeded(cachedCRL.size);
+			return cachedCRL;
+		}
+	}
+
+	private CachedCRL getResult(final String key, final FutureTask<CachedCRL> future) {
+
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new DSSException(e);
+		} catch (ExecutionException e) {
+			LOG.warn("Impossible to load the CRL {}: {}", key, e.getCause() == null ? e.getMessage() : e.getCause().getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * Updates the size of the cache when the given entry is removed.
+	 *
+	 * @param future removed entry
+	 */
+	private void release(final FutureTask<CachedCRL> future) {
+
+		try {
+
+			final CachedCRL cachedCRL = future.get();
+			if (cachedCRL != null) {
+				cacheSize.addAndGet(-cachedCRL.size);
+			}
+		} catch (Exception e) {
+			// nothing was accounted
+		}
+	}
+
+	/**
+	 * This method evicts the entries which are not valid anymore (nextUpdate in the past) and, if the {@code maxCacheSize} is still exceeded, the entries with the earliest
+	 * nextUpdate.
 	 *
-	 * @param crlUrl the {@code String} representation of the CRL's URL
-	 * @return {@code true} if the cached CRL should be refreshed, {@code false} otherwise
+	 * @param addedSize the size of the entry just added
+	 */
+	private synchronized void evictIfNeeded(final long addedSize) {
+
+		if (cacheSize.get() <= maxCacheSize) {
+			return;
+		}
+		final Date now = new Date();
+		final List<Map.Entry<String, FutureTask<CachedCRL>>> candidates = new ArrayList<Map.Entry<String, FutureTask<CachedCRL>>>();
+		for (final Map.Entry<String, FutureTask<CachedCRL>> entry : crlCache.entrySet()) {
+
+			final FutureTask<CachedCRL> future = entry.getValue();
+			if (!future.isDone()) {
+				continue;
+			}
+			final CachedCRL cachedCRL = getDoneResult(future);
+			if (cachedCRL == null) {
+				continue;
+			}
+			if (cachedCRL.nextUpdate == null || cachedCRL.nextUpdate.before(now)) {
+				remove(entry.getKey(), future);
+			} else {
+				candidates.add(entry);
+			}
+		}
+		if (cacheSize.get() <= maxCacheSize) {
+			return;
+		}
+		Collections.sort(candidates, new Comparator<Map.Entry<String, FutureTask<CachedCRL>>>() {
+
+			@Override
+			public int compare(final Map.Entry<String, FutureTask<CachedCRL>> entry1, final Map.Entry<String, FutureTask<CachedCRL>> entry2) {
+				return getDoneResult(entry1.getValue()).nextUpdate.compareTo(getDoneResult(entry2.getValue()).nextUpdate);
+			}
+		});
+		for (final Map.Entry<String, FutureTask<CachedCRL>> entry : candidates) {
+
+			if (cacheSize.get() <= maxCacheSize) {
+				break;
+			}
+			remove(entry.getKey(), entry.getValue());
+		}
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("CRL cache size after eviction: {} bytes ({} bytes added)", cacheSize.get(), addedSize);
+		}
+	}
+
+	private void remove(final String key, final FutureTask<CachedCRL> future) {
+
+		if (crlCache.remove(key, future)) {
+			release(future);
+		}
+	}
+
+	private static CachedCRL getDoneResult(final FutureTask<CachedCRL> future) {
+
+		try {
+			return future.get();
+		} catch (Exception e) {
+			return null;
+		}
+	}
+
+	/**
+	 * @param cachedCRL the cached entry
+	 * @return true if the cached entry can be reused: a failure until its expiration, a CRL while it is fresh
 	 */
-	private boolean shouldRefresh(final String crlUrl) {
+	private boolean isUsable(final CachedCRL cachedCRL) {
 
-		final DatePair crlFreshnessInfo = crlFreshness.get(crlUrl);
-		if (crlFreshnessInfo != null) {
-			return !isFresh(crlFreshnessInfo.nextUpdate, crlFreshnessInfo.thisUpdate);
+		if (cachedCRL.failureExpiration != null) {
+			return new Date().before(cachedCRL.failureExpiration);
 		}
-		return true;
+		return isFresh(cachedCRL.nextUpdate, cachedCRL.thisUpdate);
 	}
 
 	@Override
@@ -141,7 +336,7 @@ public class InMemoryCacheOnlineCRLSource extends OnlineCRLSource {
 	private boolean isFresh(final Date nextUpdate, final Date issuingTime) {
 
 		final Date now = new Date();
-		if (nextUpdate.after(now)) {
+		if (nextUpdate != null && nextUpdate.after(now)) {
 
 			final long freshness = DSSUtils.getDateDiff(now, issuingTime, freshnessTimeUnit);
 			if (freshness <= freshnessValue) {
@@ -152,22 +347,240 @@ public class InMemoryCacheOnlineCRLSource extends OnlineCRLSource {
 	}
 
 	/**
-	 * The class representing the thisUpdate and nextUpdate fields of a CRL.
+	 * @return the maximum size (in bytes) of the encoded CRLs kept in the cache
+	 */
+	public long getMaxCacheSize() {
+		return maxCacheSize;
+	}
+
+	/**
+	 * This method allows to define the maximum size (in bytes) of the encoded CRLs kept in the cache. The default value is {@code DEFAULT_MAX_CACHE_SIZE}.
+	 *
+	 * @param maxCacheSize the maximum size in bytes
+	 */
+	public void setMaxCacheSize(final long maxCacheSize) {
+		this.maxCacheSize = maxCacheSize;
+	}
+
+	/**
+	 * @return the size (in bytes) of the encoded CRL above which the CRL is kept in the compact form
+	 */
+	public long getCompactCRLThreshold() {
+		return compactCRLThreshold;
+	}
+
+	/**
+	 * This method allows to define the size (in bytes) of the encoded CRL above which the CRL is parsed with the {@code StreamingCRLParser} and kept in the compact form. The
+	 * default value is {@code DEFAULT_COMPACT_CRL_THRESHOLD}. Use {@code Long.MAX_VALUE} to disable the compact form.
+	 *
+	 * @param compactCRLThreshold the size in bytes
+	 */
+	public void setCompactCRLThreshold(final long compactCRLThreshold) {
+		this.compactCRLThreshold = compactCRLThreshold;
+	}
+
+	/**
+	 * @return the folder of the temporary files holding the encoded CRLs kept in the compact form, null for the default temporary directory
+	 */
+	public File getEncodedCRLFolder() {
+		return encodedCRLFolder;
+	}
+
+	/**
+	 * This method allows to define the folder of the temporary files holding the encoded CRLs kept in the compact form. The default value is null: the default temporary
+	 * directory is used.
+	 *
+	 * @param encodedCRLFolder the folder
+	 */
+	public void setEncodedCRLFolder(final File encodedCRLFolder) {
+		this.encodedCRLFolder = encodedCRLFolder;
+	}
+
+	/**
+	 * @return the time (millis) during which a failure to obtain a valid CRL is remembered
+	 */
+	public long getFailureCacheDuration() {
+		return failureCacheDuration;
+	}
+
+	/**
+	 * This method allows to define the time (millis) during which a failure to obtain a valid CRL (download or parsing error, invalid signature) is remembered. The default
+	 * value is {@code DEFAULT_FAILURE_CACHE_DURATION}. Use 0 to not cache the failures.
+	 *
+	 * @param failureCacheDuration the time in millis
+	 */
+	public void setFailureCacheDuration(final long failureCacheDuration) {
+		this.failureCacheDuration = failureCacheDuration;
+	}
+
+	/**
+	 * This method removes all cached CRLs.
+	 */
+	public void clearCache() {
+
+		for (final Map.Entry<String, FutureTask<CachedCRL>> entry : crlCache.entrySet()) {
+			remove(entry.getKey(), entry.getValue());
+		}
+	}
+
+	/**
+	 * Downloads, parses and verifies a CRL.
+	 */
+	private class CRLLoader implements Callable<CachedCRL> {
+
+		private final String crlUrl;
+		private final CertificateToken issuerToken;
+		private final List<String> dpUrlList;
+		private final boolean refresh;
+
+		CRLLoader(final String crlUrl, final CertificateToken issuerToken, final List<String> dpUrlList, final boolean refresh) {
+
+			this.crlUrl = crlUrl;
+			this.issuerToken = issuerToken;
+			this.dpUrlList = dpUrlList;
+			this.refresh = refresh;
+		}
+
+		@Override
+		public CachedCRL call() throws Exception {
+
+			try {
+
+				CachedCRL cachedCRL = load(refresh);
+				if (!refresh && cachedCRL != null && cachedCRL.failureExpiration == null && !isUsable(cachedCRL)) {
+
+					// The copy of the DataLoader is not fresh anymore
+					cacheSize.addAndGet(-cachedCRL.size);
+					cachedCRL = load(true);
+				}
+				return cachedCRL == null ? CachedCRL.failure(null, 0, getFailureExpiration()) : cachedCRL;
+			} catch (DSSException e) {
+
+				LOG.warn("Impossible to load the CRL {}: {}", crlUrl, e.getMessage());
+				return CachedCRL.failure(null, 0, getFailureExpiration());
+			}
+		}
+
+		private Date getFailureExpiration() {
+			return new Date(System.currentTimeMillis() + failureCacheDuration);
+		}
+
+		/**
+		 * @param refresh indicates if the copy of the CRL kept by the {@code DataLoader} (if any) must be refreshed
+		 * @return {@code CachedCRL} or null if the CRL cannot be obtained
+		 */
+		private CachedCRL load(final boolean refresh) {
+
+			final byte[] crlData = dataLoader.get(crlUrl, refresh);
+			if (crlData == null) {
+				return null;
+			}
+			if (crlData.length > compactCRLThreshold) {
+
+				final CachedCRL cachedCRL = loadCompactCRL(crlData);
+				if (cachedCRL != null) {
+					return cachedCRL;
+				}
+			}
+			final X509CRL x509Crl = buildX509Crl(crlData);
+			if (x509Crl == null) {
+				return null;
+			}
+			final CRLValidity crlValidity = isValidCRL(x509Crl, issuerToken, dpUrlList);
+			if (!crlValidity.signatureIntact) {
+
+				LOG.warn("The CRL {} is not signed by {}: {}", new Object[]{crlUrl, issuerToken.getAbbreviation(), crlValidity.signatureInvalidityReason});
+				// Kept (not indexed) with its invalidity reason to appear in the report
+				final CachedCRL cachedCRL = CachedCRL.failure(crlValidity, crlData.length, getFailureExpiration());
+				cacheSize.addAndGet(cachedCRL.size);
+				return cachedCRL;
+			}
+			crlValidity.indexRevokedCertificates();
+			final CachedCRL cachedCRL = new CachedCRL(crlValidity, crlData.length);
+			cacheSize.addAndGet(cachedCRL.size);
+			return cachedCRL;
+		}
+
+		/**
+		 * Parses the CRL with the {@code StreamingCRLParser}. The indirect CRLs and the CRLs whose signature cannot be verified during the parsing are handled as
+		 * {@code X509CRL}.
+		 *
+		 * @return {@code CachedCRL} or null if the compact form cannot be used
+		 */
+		private CachedCRL loadCompactCRL(final byte[] crlData) {
+
+			final CompactCRL compactCRL;
+			try {
+				compactCRL = new StreamingCRLParser(issuerToken.getPublicKey()).parse(new ByteArrayInputStream(crlData));
+			} catch (DSSException e) {
+
+				LOG.debug("The CRL {} cannot be parsed in the compact form: {}", crlUrl, e.getMessage());
+				return null;
+			}
+			if (compactCRL.indirect || !compactCRL.signatureIntact) {
+				return null;
+			}
+			try {
+				compactCRL.setEncoded(crlData, encodedCRLFolder);
+			} catch (DSSException e) {
+
+				LOG.warn("The CRL {} cannot be kept in the compact form: {}", crlUrl, e.getMessage());
+				return null;
+			}
+			final CRLValidity crlValidity = isValidCRL(compactCRL, issuerToken, dpUrlList);
+			final CachedCRL cachedCRL = new CachedCRL(crlValidity, compactCRL.getSize());
+			cacheSize.addAndGet(cachedCRL.size);
+			return cachedCRL;
+		}
+	}
+
+	/**
+	 * The class representing a parsed and verified CRL together with its thisUpdate and nextUpdate fields.
 	 */
-	static class DatePair {
+	static class CachedCRL {
 
+		public final CRLValidity crlValidity;
 		public final Date thisUpdate;
 		public final Date nextUpdate;
+		public final long size;
+
+		/**
+		 * The time until which a failure is remembered, null for a valid CRL
+		 */
+		public final Date failureExpiration;
 
 		/**
-		 * Constructor for a {@code DatePair}.
+		 * Constructor for a {@code CachedCRL}.
 		 *
-		 * @param thisUpdate {@code Date} of the this update
-		 * @param nextUpdate {@code Date} of the next update
+		 * @param crlValidity {@code CRLValidity} of the parsed and verified CRL
+		 * @param size        the size of the encoded CRL or of the {@code CompactCRL}
+		 */
+		public CachedCRL(final CRLValidity crlValidity, final long size) {
+
+			this.crlValidity = crlValidity;
+			this.thisUpdate = crlValidity.getThisUpdate();
+			this.nextUpdate = crlValidity.getNextUpdate();
+			this.size = size;
+			this.failureExpiration = null;
+		}
+
+		private CachedCRL(final CRLValidity crlValidity, final long size, final Date failureExpiration) {
+
+			this.crlValidity = crlValidity;
+			this.thisUpdate = crlValidity == null ? null : crlValidity.getThisUpdate();
+			this.nextUpdate = crlValidity == null ? null : crlValidity.getNextUpdate();
+			this.size = size;
+			this.failureExpiration = failureExpiration;
+		}
+
+		/**
+		 * @param crlValidity       {@code CRLValidity} of a CRL whose signature is not valid or null if the CRL cannot be obtained
+		 * @param size              the size of the encoded CRL, 0 if the CRL cannot be obtained
+		 * @param failureExpiration the time until which the failure is remembered
+		 * @return a {@code CachedCRL} representing a failure
 		 */
-		public DatePair(final Date thisUpdate, final Date nextUpdate) {
-			this.thisUpdate = thisUpdate;
-			this.nextUpdate = nextUpdate;
+		static CachedCRL failure(final CRLValidity crlValidity, final long size, final Date failureExpiration) {
+			return new CachedCRL(crlValidity, size, failureExpiration);
 		}
 	}
-}
\ No newline at end of file
+}
@@ -92,6 +92,14 @@ public class CommonDataLoader implements DataLoader, DSSNotifier {
 
 	public static final int TIMEOUT_SOCKET = 6000;
 
+	/**
+	 * HttpClient defaults (20 in total, 2 per host) are too low for the parallel retrieval of the validation data: most of the OCSP, CRL and AIA requests of a validation
+	 * target the few hosts of the same CA.
+	 */
+	public static final int CONNECTIONS_MAX_TOTAL = 100;
+
+	public static final int CONNECTIONS_MAX_PER_ROUTE = 10;
+
 	public static final String CONTENT_TYPE = "Content-Type";
 
 	protected String contentType;
@@ -104,11 +112,18 @@ public class CommonDataLoader implements DataLoader, DSSNotifier {
 
 	private int timeoutConnection = TIMEOUT_CONNECTION;
 	private int timeoutSocket = TIMEOUT_SOCKET;
+	private int connectionsMaxTotal = CONNECTIONS_MAX_TOTAL;
+	private int connectionsMaxPerRoute = CONNECTIONS_MAX_PER_ROUTE;
 
 	private final Map<HttpHost, UsernamePasswordCredentials> authenticationMap = new HashMap<HttpHost, UsernamePasswordCredentials>();
 
 	private HttpClient httpClient;
 
+	/**
+	 * Remembers the unreachable hosts to fail fast instead of waiting for the timeouts again. {@code null} disables this feature.
+	 */
+	private HostHealthTracker hostHealthTracker = new HostHealthTracker();
+
 	/**
 	 * This variable indicates if any parameter has changed: authentication, proxy...
 	 */
@@ -137,7 +152,10 @@ public class CommonDataLoader implements DataLoader, DSSNotifier {
 		socketFactoryRegistryBuilder = setConnectionManagerSchemeHttp(socketFactoryRegistryBuilder);
 		socketFactoryRegistryBuilder = setConnectionManagerSchemeHttps(socketFactoryRegistryBuilder);
 
-		final HttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager(socketFactoryRegistryBuilder.build());
+		final PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager(socketFactoryRegistryBuilder.build());
+		// Bounds the number of concurrent requests per host when the data loader is shared by concurrent validations
+		connectionManager.setMaxTotal(connectionsMaxTotal);
+		connectionManager.setDefaultMaxPerRoute(connectionsMaxPerRoute);
 		return connectionManager;
 	}
 
@@ -407,6 +425,8 @@ public class CommonDataLoader implements DataLoader, DSSNotifier {
 	protected byte[] httpGet(final String urlString) throws DSSException {
 
 		final URI uri = DSSUtils.toUri(urlString.trim());
+		checkHostAvailable(uri);
+		boolean hostFailed = true;
 		HttpGet httpGet = null;
 		HttpResponse httpResponse = null;
 		try {
@@ -416,8 +436,10 @@ public class CommonDataLoader implements DataLoader, DSSNotifier {
 			defineContentTransferEncoding(httpGet);
 			httpResponse = getHttpResponse(httpGet, uri);
 			final byte[] returnedBytes = readHttpResponse(uri, httpResponse);
+			hostFailed = isServerError(httpResponse);
 			return returnedBytes;
 		} finally {
+			recordHostHealth(uri, hostFailed);
 			if (httpGet != null) {
 				httpGet.releaseConnection();
 			}
@@ -447,11 +469,13 @@ public class CommonDataLoader implements DataLoader, DSSNotifier {
 		if (LOG.isDebugEnabled()) {
 			LOG.debug("Fetching data via POST from url " + url);
 		}
+		final URI uri = DSSUtils.toUri(url.trim());
+		checkHostAvailable(uri);
+		boolean hostFailed = true;
 		HttpPost httpPost = null;
 		HttpResponse httpResponse = null;
 		try {
 
-			final URI uri = DSSUtils.toUri(url.trim());
 			httpPost = new HttpPost(uri);
 
 			// The length for the InputStreamEntity is needed, because some receivers (on the other side) need this information.
@@ -468,10 +492,12 @@ public class CommonDataLoader implements DataLoader, DSSNotifier {
 			defineContentTransferEncoding(httpPost);
 			httpResponse = getHttpResponse(httpPost, uri);
 			final byte[] returnedBytes = readHttpResponse(uri, httpResponse);
+			hostFailed = isServerError(httpResponse);
 			return returnedBytes;
 		} catch (IOException e) {
 			throw new DSSException(e);
 		} finally {
+			recordHostHealth(uri, hostFailed);
 			if (httpPost != null) {
 				httpPost.releaseConnection();
 			}
@@ -487,6 +513,43 @@ public class CommonDataLoader implements DataLoader, DSSNotifier {
 		return post(url, requestBytes);
 	}
 
+	/**
+	 * Fails immediately if the host of the given {@code URI} failed recently.
+	 *
+	 * @param uri the {@code URI} to access
+	 * @throws DSSException if the host is considered as unavailable
+	 */
+	private void checkHostAvailable(final URI uri) throws DSSException {
+
+		if (hostHealthTracker != null) {
+			hostHealthTracker.checkAvailable(uri);
+		}
+	}
+
+	private void recordHostHealth(final URI uri, final boolean hostFailed) {
+
+		if (hostHealthTracker == null) {
+			return;
+		}
+		if (hostFailed) {
+			hostHealthTracker.recordFailure(uri);
+		} else {
+			hostHealthTracker.recordSuccess(uri);
+		}
+	}
+
+	/**
+	 * A server error (5xx) indicates that the host is not able to serve the requests: it is handled as a connection failure. The other status codes (404...) are related to
+	 * the requested resource only.
+	 *
+	 * @param httpResponse {@code HttpResponse}
+	 * @return true if the status code is a server error
+	 */
+	private static boolean isServerError(final HttpResponse httpResponse) {
+
+		return httpResponse.getStatusLine().getStatusCode() >= HttpStatus.SC_INTERNAL_SERVER_ERROR;
+	}
+
 	protected HttpResponse getHttpResponse(final HttpUriRequest httpRequest, final URI uri) throws DSSException {
 
 		final HttpClient client = getHttpClient(uri);
@@ -585,6 +648,60 @@ public class CommonDataLoader implements DataLoader, DSSNotifier {
 		this.timeoutSocket = timeoutSocket;
 	}
 
+	/**
+	 * Used when the {@code HttpClient} is created.
+	 *
+	 * @return the maximum number of connections opened at the same time (all hosts)
+	 */
+	public int getConnectionsMaxTotal() {
+		return connectionsMaxTotal;
+	}
+
+	/**
+	 * Used when the {@code HttpClient} is created.
+	 *
+	 * @param connectionsMaxTotal the maximum number of connections opened at the same time (all hosts)
+	 */
+	public void setConnectionsMaxTotal(final int connectionsMaxTotal) {
+		httpClient = null;
+		this.connectionsMaxTotal = connectionsMaxTotal;
+	}
+
+	/**
+	 * Used when the {@code HttpClient} is created.
+	 *
+	 * @return the maximum number of connections opened at the same time to the same host
+	 */
+	public int getConnectionsMaxPerRoute() {
+		return connectionsMaxPerRoute;
+	}
+
+	/**
+	 * Used when the {@code HttpClient} is created. The requests exceeding this limit wait for a free connection (up to {@code timeoutConnection}).
+	 *
+	 * @param connectionsMaxPerRoute the maximum number of connections opened at the same time to the same host
+	 */
+	public void setConnectionsMaxPerRoute(final int connectionsMaxPerRoute) {
+		httpClient = null;
+		this.connectionsMaxPerRoute = connectionsMaxPerRoute;
+	}
+
+	/**
+	 * @return the {@code HostHealthTracker} remembering the unreachable hosts or {@code null} if this feature is disabled
+	 */
+	public HostHealthTracker getHostHealthTracker() {
+		return hostHealthTracker;
+	}
+
+	/**
+	 * The same {@code HostHealthTracker} can be shared by several data loaders (OCSP, CRL, AIA...) accessing the same hosts.
+	 *
+	 * @param hostHealthTracker the {@code HostHealthTracker} to use or {@code null} to disable the fail fast feature
+	 */
+	public void setHostHealthTracker(final HostHealthTracker hostHealthTracker) {
+		this.hostHealthTracker = hostHealthTracker;
+	}
+
 	/**
 	 * @return the contentType
 	 */
@@ -0,0 +1,233 @@
+/*
+ * DSS - Digital Signature Services
+ *
+ * Copyright (C) 2013 European Commission, Directorate-General Internal Market and Services (DG MARKT), B-1049 Bruxelles/Brussel
+ *
+ * Developed by: 2013 ARHS Developments S.A. (rue Nicolas Bové 2B, L-1253 Luxembourg) http://www.arhs-developments.com
+ *
+ * This file is part of the "DSS - Digital Signature Services" project.
+ *
+ * "DSS - Digital Signature Services" is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU Lesser General Public License as published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * DSS is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * "DSS - Digital Signature Services".  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.europa.ec.markt.dss.validation102853.https;
+
+import java.io.Serializable;
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import eu.europa.ec.markt.dss.exception.DSSException;
+
+/**
+ * Keeps track of the health of the remote hosts (OCSP responders, CRL distribution points, AIA...) accessed by the {@code CommonDataLoader}. It can be shared by several data
+ * loaders.<p/>
+ * Each failure of a host is remembered for a short time ({@code failureCacheDuration}): during this time the requests to this host fail immediately instead of waiting for the
+ * connection timeouts again. After {@code failureThreshold} consecutive failures the circuit is opened for a longer time ({@code openDuration}). When the blocking time is elapsed
+ * one single trial request is let through (half-open state): its success closes the circuit, its failure blocks the host again.
+ *
+ * @version $Revision$ - $Date$
+ */
+public class HostHealthTracker implements Serializable {
+
+	private static final Logger LOG = LoggerFactory.getLogger(HostHealthTracker.class);
+
+	public static final long FAILURE_CACHE_DURATION = 5000;
+
+	public static final int FAILURE_THRESHOLD = 3;
+
+	public static final long OPEN_DURATION = 60000;
+
+	private long failureCacheDuration = FAILURE_CACHE_DURATION;
+
+	private int failureThreshold = FAILURE_THRESHOLD;
+
+	private long openDuration = OPEN_DURATION;
+
+	/**
+	 * The health of the hosts which failed recently, created lazily (not serialised)
+	 */
+	private transient Map<String, HostHealth> hosts;
+
+	/**
+	 * The health of one host.
+	 */
+	private static class HostHealth {
+
+		int consecutiveFailures;
+
+		/**
+		 * The time (millis) until which the requests fail immediately
+		 */
+		long blockedUntil;
+
+		/**
+		 * Indicates that the single trial request of the half-open state is running
+		 */
+		boolean trialInProgress;
+	}
+
+	/**
+	 * This method must be called before each request. It fails immediately if the host is blocked. If the blocking time is elapsed the caller becomes the trial request.
+	 * {@code recordSuccess} or {@code recordFailure} must be called when the request is terminated.
+	 *
+	 * @param uri the requested {@code URI}
+	 * @throws DSSException if the host is considered as unavailable
+	 */
+	public void checkAvailable(final URI uri) throws DSSException {
+
+		final String host = getHostKey(uri);
+		final Map<String, HostHealth> hosts = getHosts();
+		synchronized (hosts) {
+
+			final HostHealth hostHealth = hosts.get(host);
+			if (hostHealth == null || hostHealth.consecutiveFailures == 0) {
+				return;
+			}
+			final long now = System.currentTimeMillis();
+			if (now < hostHealth.blockedUntil || hostHealth.trialInProgress) {
+				throw new DSSException("The host " + host + " is considered as unavailable after " + hostHealth.consecutiveFailures + " failure(s): " + uri);
+			}
+			hostHealth.trialInProgress = true;
+			if (LOG.isDebugEnabled()) {
+				LOG.debug("Trial request to the host " + host + ": " + uri);
+			}
+		}
+	}
+
+	/**
+	 * Records a successful request: the host is considered as healthy.
+	 *
+	 * @param uri the requested {@code URI}
+	 */
+	public void recordSuccess(final URI uri) {
+
+		final String host = getHostKey(uri);
+		final Map<String, HostHealth> hosts = getHosts();
+		synchronized (hosts) {
+
+			final HostHealth hostHealth = hosts.remove(host);
+			if (hostHealth != null && LOG.isInfoEnabled()) {
+				LOG.info("The host " + host + " is available again");
+			}
+		}
+	}
+
+	/**
+	 * Records a failed request (connection error, timeout, server error...): the host is blocked for {@code failureCacheDuration} or for {@code openDuration} when the
+	 * {@code failureThreshold} is reached.
+	 *
+	 * @param uri the requested {@code URI}
+	 */
+	public void recordFailure(final URI uri) {
+
+		final String host = getHostKey(uri);
+		final Map<String, HostHealth> hosts = getHosts();
+		synchronized (hosts) {
+
+			HostHealth hostHealth = hosts.get(host);
+			if (hostHealth == null) {
+
+				hostHealth = new HostHealth();
+				hosts.put(host, hostHealth);
+			}
+			hostHealth.consecutiveFailures++;
+			hostHealth.trialInProgress = false;
+			final boolean open = hostHealth.consecutiveFailures >= failureThreshold;
+			final long duration = open ? openDuration : failureCacheDuration;
+			hostHealth.blockedUntil = Math.max(hostHealth.blockedUntil, System.currentTimeMillis() + duration);
+			LOG.warn("The host " + host + " failed (" + hostHealth.consecutiveFailures + " consecutive failure(s)): blocked for " + duration + " ms");
+		}
+	}
+
+	/**
+	 * @param uri the requested {@code URI}
+	 * @return true if the requests to the host of the given {@code URI} currently fail immediately
+	 */
+	public boolean isBlocked(final URI uri) {
+
+		final Map<String, HostHealth> hosts = getHosts();
+		synchronized (hosts) {
+
+			final HostHealth hostHealth = hosts.get(getHostKey(uri));
+			return hostHealth != null && (System.currentTimeMillis() < hostHealth.blockedUntil || hostHealth.trialInProgress);
+		}
+	}
+
+	/**
+	 * Forgets all recorded failures.
+	 */
+	public void reset() {
+
+		final Map<String, HostHealth> hosts = getHosts();
+		synchronized (hosts) {
+			hosts.clear();
+		}
+	}
+
+	private synchronized Map<String, HostHealth> getHosts() {
+
+		if (hosts == null) {
+			hosts = new HashMap<String, HostHealth>();
+		}
+		return hosts;
+	}
+
+	private static String getHostKey(final URI uri) {
+
+		return uri.getScheme() + "://" + uri.getHost() + ":" + uri.getPort();
+	}
+
+	/**
+	 * @return the time (millis) during which a failed host is blocked
+	 */
+	public long getFailureCacheDuration() {
+		return failureCacheDuration;
+	}
+
+	/**
+	 * @param failureCacheDuration the time (millis) during which a failed host is blocked
+	 */
+	public void setFailureCacheDuration(final long failureCacheDuration) {
+		this.failureCacheDuration = failureCacheDuration;
+	}
+
+	/**
+	 * @return the number of consecutive failures opening the circuit
+	 */
+	public int getFailureThreshold() {
+		return failureThreshold;
+	}
+
+	/**
+	 * @param failureThreshold the number of consecutive failures opening the circuit
+	 */
+	public void setFailureThreshold(final int failureThreshold) {
+		this.failureThreshold = failureThreshold;
+	}
+
+	/**
+	 * @return the time (millis) during which a host is blocked when the circuit is open
+	 */
+	public long getOpenDuration() {
+		return openDuration;
+	}
+
+	/**
+	 * @param openDuration the time (millis) during which a host is blocked when the circuit is open
+	 */
+	public void setOpenDuration(final long openDuration) {
+		this.openDuration = openDuration;
+	}
+}
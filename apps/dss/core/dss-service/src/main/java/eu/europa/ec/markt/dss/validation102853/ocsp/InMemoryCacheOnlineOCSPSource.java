@@ -20,23 +20,35 @@
 
 package eu.europa.ec.markt.dss.validation102853.ocsp;
 
+import java.util.Collections;
 import java.util.Date;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
+import org.bouncycastle.cert.ocsp.BasicOCSPResp;
 import org.bouncycastle.cert.ocsp.CertificateID;
+import org.bouncycastle.cert.ocsp.SingleResp;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import eu.europa.ec.markt.dss.DSSRevocationUtils;
 import eu.europa.ec.markt.dss.DSSUtils;
+import eu.europa.ec.markt.dss.exception.DSSException;
 import eu.europa.ec.markt.dss.exception.DSSNullException;
+import eu.europa.ec.markt.dss.validation102853.CertificatePool;
+import eu.europa.ec.markt.dss.validation102853.CertificateToken;
 import eu.europa.ec.markt.dss.validation102853.OCSPToken;
 import eu.europa.ec.markt.dss.validation102853.RevocationToken;
 import eu.europa.ec.markt.dss.validation102853.loader.DataLoader;
 
 /**
  * Online OCSP repository. This implementation will contact the OCSP Responder to retrieve the OCSP response.
+ * <p/>
+ * The parsed OCSP responses are kept in memory for each {@code X509Certificate} represented by its {@code CertificateID}. A cached response is used as long as its
+ * validity period ({@code thisUpdate}/{@code nextUpdate}) covers the current time and it was produced within the freshness period. The number of cached responses is
+ * bounded: the least recently used response is evicted first. This class can be shared between threads. The cache is disabled when {@code ADD_NONCE} is set.
  *
  * @version $Revision$ - $Date$
  */
@@ -48,17 +60,32 @@ public class InMemoryCacheOnlineOCSPSource extends OnlineOCSPSource {
 	/**
 	 * This field contains the freshness time unit to be used when dealing with the revocation freshness. The default value is {@code TimeUnit.DAYS}
 	 */
-	private TimeUnit freshnessTimeUnit = TimeUnit.DAYS;
+	private volatile TimeUnit freshnessTimeUnit = TimeUnit.DAYS;
 
 	/**
 	 * This field contains the freshness value of the revocation data expressed in {@code freshnessTimeUnit}. The default value is {@code 1}
 	 */
-	private long freshnessValue = 1;
+	private volatile long freshnessValue = 1;
 
 	/**
-	 * This {@code Map} contains for each {@code X509Certificate} represented by its {@code CertificateID} the {@code Date} of the production of the OCSP response
+	 * The maximum number of cached OCSP responses. The default value is {@code 1000}
 	 */
-	private Map<CertificateID, Date> ocspFreshness = new HashMap<CertificateID, Date>();
+	private volatile int maximumCacheSize = 1000;
+
+	/**
+	 * This {@code Map} contains for each {@code X509Certificate} represented by its {@code CertificateID} the last OCSP response retrieved. It is kept in the access order.
+	 */
+	private final Map<CertificateID, CachedOCSPResponse> ocspResponses = Collections.synchronizedMap(new LinkedHashMap<CertificateID, CachedOCSPResponse>(16, 0.75f, true) {
+
+		@Override
+		protected boolean removeEldestEntry(final Map.Entry<CertificateID, CachedOCSPResponse> eldest) {
+			return size() > maximumCacheSize;
+		}
+	});
+
+	private final AtomicLong cacheHits = new AtomicLong();
+
+	private final AtomicLong cacheMisses = new AtomicLong();
 
 	/**
 	 * This constructor allows to set a specific {@code DataLoader}.
@@ -70,10 +97,43 @@ public class InMemoryCacheOnlineOCSPSource extends OnlineOCSPSource {
 		super(dataLoader);
 	}
 
+	@Override
+	public OCSPToken getOCSPToken(final CertificateToken certificateToken, final CertificatePool certificatePool) {
+
+		if (ADD_NONCE || certificateToken == null || certificateToken.getIssuerToken() == null) {
+			return super.getOCSPToken(certificateToken, certificatePool);
+		}
+		final CertificateID certificateId = DSSRevocationUtils.getCertificateID(certificateToken);
+		final CachedOCSPResponse cachedOCSPResponse = ocspResponses.get(certificateId);
+		if (cachedOCSPResponse != null && cachedOCSPResponse.isValid(new Date())) {
+
+			cacheHits.incrementAndGet();
+			// The token is bound to the certificate pool of the validation: only the parsed response is shared.
+			final OCSPToken ocspToken = new OCSPToken(cachedOCSPResponse.basicOCSPResp, cachedOCSPResponse.singleResp, certificatePool);
+			ocspToken.setSourceURI(cachedOCSPResponse.sourceURI);
+			return ocspToken;
+		}
+		cacheMisses.incrementAndGet();
+		return super.getOCSPToken(certificateToken, certificatePool);
+	}
+
+	@Override
 	protected void updateCacheIfRefreshed(final CertificateID certificateId, final boolean refresh, final OCSPToken ocspToken) {
 
-		if (refresh) {
-			ocspFreshness.put(certificateId, ocspToken.getIssuingTime());
+		if (ADD_NONCE) {
+			return;
+		}
+		final BasicOCSPResp basicOCSPResp = ocspToken.getBasicOCSPResp();
+		final SingleResp singleResp = getBestSingleResp(certificateId, basicOCSPResp);
+		final CachedOCSPResponse cachedOCSPResponse = new CachedOCSPResponse(basicOCSPResp, singleResp, ocspToken.getSourceURL());
+		if (cachedOCSPResponse.isValid(new Date())) {
+			ocspResponses.put(certificateId, cachedOCSPResponse);
+		} else {
+
+			ocspResponses.remove(certificateId);
+			if (LOG.isDebugEnabled()) {
+				LOG.debug("The OCSP response for {} is not cached: it is outside of its validity period or not fresh.", ocspToken.getAbbreviation());
+			}
 		}
 	}
 
@@ -85,8 +145,8 @@ public class InMemoryCacheOnlineOCSPSource extends OnlineOCSPSource {
 	 */
 	protected boolean shouldCacheBeRefreshed(final CertificateID certificateId) {
 
-		final Date ocspProductionDate = ocspFreshness.get(certificateId);
-		return !isFresh(ocspProductionDate);
+		final CachedOCSPResponse cachedOCSPResponse = ocspResponses.get(certificateId);
+		return cachedOCSPResponse == null || !isFresh(cachedOCSPResponse.basicOCSPResp.getProducedAt());
 	}
 
 	@Override
@@ -102,7 +162,98 @@ public class InMemoryCacheOnlineOCSPSource extends OnlineOCSPSource {
 			return false;
 		}
 		final Date now = new Date();
-		final long freshness = DSSUtils.getDateDiff(now, issuingTime, freshnessTimeUnit);
-		return freshness <= freshnessValue;
+		final long age = DSSUtils.getDateDiff(issuingTime, now, freshnessTimeUnit);
+		return age <= freshnessValue;
+	}
+
+	/**
+	 * @param freshnessValue    the maximum age of an OCSP response, expressed in {@code freshnessTimeUnit}
+	 * @param freshnessTimeUnit the time unit of {@code freshnessValue}
+	 */
+	public void setFreshness(final long freshnessValue, final TimeUnit freshnessTimeUnit) {
+
+		if (freshnessTimeUnit == null) {
+			throw new DSSNullException(TimeUnit.class, "freshnessTimeUnit");
+		}
+		this.freshnessValue = freshnessValue;
+		this.freshnessTimeUnit = freshnessTimeUnit;
+	}
+
+	/**
+	 * @param maximumCacheSize the maximum number of cached OCSP responses
+	 */
+	public void setMaximumCacheSize(final int maximumCacheSize) {
+
+		if (maximumCacheSize < 0) {
+			throw new DSSException("The maximum size of the cache cannot be negative: " + maximumCacheSize);
+		}
+		this.maximumCacheSize = maximumCacheSize;
+	}
+
+	/**
+	 * @return the number of OCSP tokens built from the cache
+	 */
+	public long getCacheHits() {
+		return cacheHits.get();
+	}
+
+	/**
+	 * @return the number of OCSP tokens for which the cache did not hold a valid response
+	 */
+	public long getCacheMisses() {
+		return cacheMisses.get();
+	}
+
+	/**
+	 * @return the number of cached OCSP responses
+	 */
+	public int getCacheSize() {
+		return ocspResponses.size();
+	}
+
+	/**
+	 * Removes all cached OCSP responses.
+	 */
+	public void clearCache() {
+		ocspResponses.clear();
+	}
+
+	/**
+	 * The parsed OCSP response cached for a {@code CertificateID}.
+	 */
+	private class CachedOCSPResponse {
+
+		private final BasicOCSPResp basicOCSPResp;
+
+		private final SingleResp singleResp;
+
+		private final String sourceURI;
+
+		CachedOCSPResponse(final BasicOCSPResp basicOCSPResp, final SingleResp singleResp, final String sourceURI) {
+
+			this.basicOCSPResp = basicOCSPResp;
+			this.singleResp = singleResp;
+			this.sourceURI = sourceURI;
+		}
+
+		/**
+		 * @param now the current time
+		 * @return {@code true} if the response can be used at the given time: it is within its validity period and it is fresh
+		 */
+		boolean isValid(final Date now) {
+
+			if (singleResp == null) {
+				return false;
+			}
+			final Date thisUpdate = singleResp.getThisUpdate();
+			if (thisUpdate != null && thisUpdate.after(now)) {
+				return false;
+			}
+			final Date nextUpdate = singleResp.getNextUpdate();
+			if (nextUpdate != null && !nextUpdate.after(now)) {
+				return false;
+			}
+			return isFresh(basicOCSPResp.getProducedAt());
+		}
 	}
 }
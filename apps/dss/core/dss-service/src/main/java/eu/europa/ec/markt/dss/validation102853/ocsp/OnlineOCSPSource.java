@@ -22,7 +22,13 @@ package eu.europa.ec.markt.dss.validation102853.ocsp;
 
 import java.io.IOException;
 import java.security.Security;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.bouncycastle.asn1.ASN1Sequence;
 import org.bouncycastle.asn1.DERIA5String;
@@ -54,6 +60,7 @@ import eu.europa.ec.markt.dss.validation102853.CertificatePool;
 import eu.europa.ec.markt.dss.validation102853.CertificateToken;
 import eu.europa.ec.markt.dss.validation102853.OCSPToken;
 import eu.europa.ec.markt.dss.validation102853.RevocationToken;
+import eu.europa.ec.markt.dss.validation102853.https.CommonDataLoader;
 import eu.europa.ec.markt.dss.validation102853.https.OCSPDataLoader;
 import eu.europa.ec.markt.dss.validation102853.loader.DataLoader;
 
@@ -82,11 +89,29 @@ public class OnlineOCSPSource implements OCSPSource {
 	 */
 	public static boolean ADD_NONCE = false;
 
+	/**
+	 * The time (in milliseconds) allowed to one OCSP request when the data loader does not define its timeouts. It bounds the time a caller waits for the requests
+	 * queued before its own one.
+	 */
+	public static final long DEFAULT_REQUEST_TIMEOUT = 60000;
+
 	/**
 	 * The data loader used to retrieve the OCSP response.
 	 */
 	protected DataLoader dataLoader;
 
+	/**
+	 * The maximum number of certificates put in a single OCSP request. When greater than {@code 1}, the requests for a responder which arrive while another request
+	 * to this responder is in progress are coalesced into one OCSP request carrying several {@code Request} entries (RFC 6960). The default value {@code 1} sends one
+	 * request per certificate.
+	 */
+	private int maximumCertificatesPerRequest = 1;
+
+	/**
+	 * The state of the requests in progress for each responder (OCSP access location).
+	 */
+	private transient ConcurrentMap<String, ResponderQueue> responderQueues;
+
 	/**
 	 * Create an OCSP source The default constructor for OnlineOCSPSource. The default {@code OCSPDataLoader} is set. It is possible to change it with {@code
 	 * #setDataLoader}.
@@ -120,6 +145,19 @@ public class OnlineOCSPSource implements OCSPSource {
 		this.dataLoader = dataLoader;
 	}
 
+	/**
+	 * Sets the maximum number of certificates put in a single OCSP request. The responder must support several {@code Request} entries in one OCSP request.
+	 *
+	 * @param maximumCertificatesPerRequest the maximum number of certificates per OCSP request, {@code 1} disables the coalescing of the requests
+	 */
+	public void setMaximumCertificatesPerRequest(final int maximumCertificatesPerRequest) {
+
+		if (maximumCertificatesPerRequest < 1) {
+			throw new DSSException("The maximum number of certificates per OCSP request must be at least 1: " + maximumCertificatesPerRequest);
+		}
+		this.maximumCertificatesPerRequest = maximumCertificatesPerRequest;
+	}
+
 	@Override
 	public OCSPToken getOCSPToken(final CertificateToken certificateToken, final CertificatePool certificatePool) {
 
@@ -136,13 +174,22 @@ public class OnlineOCSPSource implements OCSPSource {
 
 		final CertificateID certificateId = DSSRevocationUtils.getCertificateID(certificateToken);
 
-		// The nonce extension is used to bind the request to the response, to prevent replay attacks.
-		final NonceContainer nonceContainer = getNonceContainer();
-		final byte[] ocspRequest = buildOCSPRequest(certificateId, nonceContainer);
 		final boolean refresh = shouldCacheBeRefreshed(certificateId);
-		final BasicOCSPResp basicOCSPResp = buildBasicOCSPResp(ocspAccessLocation, ocspRequest, refresh);
+		final BasicOCSPResp basicOCSPResp;
+		if (maximumCertificatesPerRequest > 1) {
+
+			final OCSPRequestBatch batch = postCoalesced(ocspAccessLocation, certificateId, refresh);
+			basicOCSPResp = batch.getBasicOCSPResp();
+			checkNonce(certificateToken.getDSSIdAsString(), basicOCSPResp, batch.nonceContainer);
+		} else {
+
+			// The nonce extension is used to bind the request to the response, to prevent replay attacks.
+			final NonceContainer nonceContainer = getNonceContainer();
+			final byte[] ocspRequest = buildOCSPRequest(certificateId, nonceContainer);
+			basicOCSPResp = buildBasicOCSPResp(ocspAccessLocation, ocspRequest, refresh);
 
-		checkNonce(certificateToken.getDSSIdAsString(), basicOCSPResp, nonceContainer);
+			checkNonce(certificateToken.getDSSIdAsString(), basicOCSPResp, nonceContainer);
+		}
 
 		final SingleResp bestSingleResp = getBestSingleResp(certificateId, basicOCSPResp);
 		if (bestSingleResp == null) {
@@ -151,7 +198,6 @@ public class OnlineOCSPSource implements OCSPSource {
 
 		final OCSPToken ocspToken = new OCSPToken(basicOCSPResp, bestSingleResp, certificatePool);
 		ocspToken.setSourceURI(ocspAccessLocation);
-		certificateToken.setRevocationToken(ocspToken);
 		updateCacheIfRefreshed(certificateId, refresh, ocspToken);
 		return ocspToken;
 	}
@@ -177,6 +223,129 @@ public class OnlineOCSPSource implements OCSPSource {
 
 	}
 
+	/**
+	 * This method adds the given {@code CertificateID} to the next OCSP request sent to the responder. If no request to this responder is in progress the request is
+	 * sent immediately by the calling thread. Otherwise the calling thread waits: the first thread of the batch to be woken up when the responder is free sends the
+	 * request for the whole batch. Each caller extracts its own {@code SingleResp} from the shared response. The wait is bounded by the timeout of the requests queued
+	 * before the batch; a caller which is interrupted or times out leaves its batch, which is dropped when no caller remains.
+	 *
+	 * @param ocspAccessLocation the URL of the responder
+	 * @param certificateId      the {@code CertificateID} to add to the request
+	 * @param refresh            indicates if the cached response (if any) should be refreshed
+	 * @return the batch holding the response
+	 */
+	private OCSPRequestBatch postCoalesced(final String ocspAccessLocation, final CertificateID certificateId, final boolean refresh) throws DSSException {
+
+		final ResponderQueue queue = getResponderQueue(ocspAccessLocation);
+		final OCSPRequestBatch batch;
+		synchronized (queue) {
+
+			if (!queue.inProgress && queue.waitingBatches.isEmpty()) {
+
+				batch = new OCSPRequestBatch();
+				batch.add(certificateId, refresh);
+			} else {
+
+				OCSPRequestBatch lastBatch = queue.waitingBatches.peekLast();
+				if (lastBatch == null || lastBatch.certificateIds.size() >= maximumCertificatesPerRequest) {
+
+					lastBatch = new OCSPRequestBatch();
+					queue.waitingBatches.addLast(lastBatch);
+				}
+				lastBatch.add(certificateId, refresh);
+				batch = lastBatch;
+				// the request in progress and each batch queued before this one (included) can take the full request timeout
+				final long deadline = System.currentTimeMillis() + getRequestTimeout() * (queue.waitingBatches.indexOf(batch) + 2);
+				while (!batch.done && (batch.started || queue.inProgress || queue.waitingBatches.peekFirst() != batch)) {
+
+					final long waitTime = deadline - System.currentTimeMillis();
+					if (waitTime <= 0 && !batch.started) {
+
+						leave(queue, batch, certificateId);
+						throw new DSSException("Timeout while waiting for the OCSP response from: " + ocspAccessLocation);
+					}
+					try {
+						// once the batch is started its request is bounded by the data loader: the caller waits for its end
+						queue.wait(batch.started ? 0 : waitTime);
+					} catch (InterruptedException e) {
+
+						if (!batch.started) {
+							leave(queue, batch, certificateId);
+						}
+						Thread.currentThread().interrupt();
+						throw new DSSException("Interrupted while waiting for the OCSP response from: " + ocspAccessLocation, e);
+					}
+				}
+				if (batch.done) {
+					return batch;
+				}
+				queue.waitingBatches.removeFirst();
+			}
+			batch.started = true;
+			queue.inProgress = true;
+		}
+		try {
+
+			// The nonce extension is used to bind the request to the response, to prevent replay attacks.
+			batch.nonceContainer = getNonceContainer();
+			final byte[] ocspRequest = buildOCSPRequest(batch.certificateIds, batch.nonceContainer);
+			if (LOG.isDebugEnabled()) {
+				LOG.debug("OCSP request for {} certificate(s) sent to: {}", batch.certificateIds.size(), ocspAccessLocation);
+			}
+			batch.basicOCSPResp = buildBasicOCSPResp(ocspAccessLocation, ocspRequest, batch.refresh);
+		} catch (RuntimeException e) {
+			batch.failure = e;
+		} finally {
+			synchronized (queue) {
+
+				batch.done = true;
+				queue.inProgress = false;
+				queue.notifyAll();
+			}
+		}
+		return batch;
+	}
+
+	/**
+	 * Removes a caller from a batch which is not started. The batch is dropped when no caller remains, the other callers are woken up since the head of the queue may
+	 * have changed. The lock of the queue must be held.
+	 */
+	private static void leave(final ResponderQueue queue, final OCSPRequestBatch batch, final CertificateID certificateId) {
+
+		batch.remove(certificateId);
+		if (batch.callers.isEmpty()) {
+			queue.waitingBatches.remove(batch);
+		}
+		queue.notifyAll();
+	}
+
+	/**
+	 * @return the maximal duration (in milliseconds) of one OCSP request
+	 */
+	private long getRequestTimeout() {
+
+		if (dataLoader instanceof CommonDataLoader) {
+
+			final CommonDataLoader commonDataLoader = (CommonDataLoader) dataLoader;
+			return (long) commonDataLoader.getTimeoutConnection() + commonDataLoader.getTimeoutSocket();
+		}
+		return DEFAULT_REQUEST_TIMEOUT;
+	}
+
+	private synchronized ResponderQueue getResponderQueue(final String ocspAccessLocation) {
+
+		if (responderQueues == null) {
+			responderQueues = new ConcurrentHashMap<String, ResponderQueue>();
+		}
+		ResponderQueue queue = responderQueues.get(ocspAccessLocation);
+		if (queue == null) {
+
+			queue = new ResponderQueue();
+			responderQueues.put(ocspAccessLocation, queue);
+		}
+		return queue;
+	}
+
 	protected SingleResp getBestSingleResp(final CertificateID certificateId, final BasicOCSPResp basicOCSPResp) {
 
 		Date bestUpdate = null;
@@ -234,11 +403,25 @@ public class OnlineOCSPSource implements OCSPSource {
 	}
 
 	protected byte[] buildOCSPRequest(final CertificateID certificateId, final NonceContainer nonceContainer) throws DSSException {
+		return buildOCSPRequest(Collections.singletonList(certificateId), nonceContainer);
+	}
+
+	/**
+	 * This method builds an OCSP request carrying one {@code Request} entry for each given {@code CertificateID}.
+	 *
+	 * @param certificateIds the {@code List} of {@code CertificateID}s
+	 * @param nonceContainer the nonce to add to the request, can be null
+	 * @return the DER encoded OCSP request
+	 * @throws DSSException
+	 */
+	protected byte[] buildOCSPRequest(final List<CertificateID> certificateIds, final NonceContainer nonceContainer) throws DSSException {
 
 		try {
 
 			final OCSPReqBuilder ocspReqBuilder = new OCSPReqBuilder();
-			ocspReqBuilder.addRequest(certificateId);
+			for (final CertificateID certificateId : certificateIds) {
+				ocspReqBuilder.addRequest(certificateId);
+			}
 			if (nonceContainer != null) {
 
 				final DEROctetString nonce = nonceContainer.nonce;
@@ -302,4 +485,64 @@ public class OnlineOCSPSource implements OCSPSource {
 	public boolean isFresh(final RevocationToken revocationToken) {
 		return false;
 	}
+
+	/**
+	 * The requests to a responder: the request in progress and the batches of certificates waiting for it.
+	 */
+	private static class ResponderQueue {
+
+		private boolean inProgress;
+
+		private final LinkedList<OCSPRequestBatch> waitingBatches = new LinkedList<OCSPRequestBatch>();
+	}
+
+	/**
+	 * The certificates sent in one OCSP request and the shared response.
+	 */
+	private static class OCSPRequestBatch {
+
+		private final List<CertificateID> certificateIds = new ArrayList<CertificateID>();
+
+		/**
+		 * The {@code CertificateID} of each caller waiting for this batch: several callers can ask for the same certificate.
+		 */
+		private final List<CertificateID> callers = new ArrayList<CertificateID>();
+
+		private boolean refresh;
+
+		private boolean started;
+
+		private volatile boolean done;
+
+		private NonceContainer nonceContainer;
+
+		private BasicOCSPResp basicOCSPResp;
+
+		private RuntimeException failure;
+
+		private void add(final CertificateID certificateId, final boolean refresh) {
+
+			if (!certificateIds.contains(certificateId)) {
+				certificateIds.add(certificateId);
+			}
+			callers.add(certificateId);
+			this.refresh |= refresh;
+		}
+
+		private void remove(final CertificateID certificateId) {
+
+			callers.remove(certificateId);
+			if (!callers.contains(certificateId)) {
+				certificateIds.remove(certificateId);
+			}
+		}
+
+		private BasicOCSPResp getBasicOCSPResp() {
+
+			if (failure != null) {
+				throw failure;
+			}
+			return basicOCSPResp;
+		}
+	}
 }
@@ -21,8 +21,6 @@
 package eu.europa.ec.markt.dss;
 
 import java.security.cert.X509Certificate;
-import java.util.LinkedHashMap;
-import java.util.Map.Entry;
 
 import javax.security.auth.x500.X500Principal;
 
@@ -32,6 +30,16 @@ import eu.europa.ec.markt.dss.exception.DSSException;
  * This class is used to obtain a unique DSS certificate's id. It is very helpful to follow the relationships between
  * certificates, CRLs, OCSPs and signatures. This DSS unique id is a simple integer number.
  * <p/>
+ * The id is derived from the SHA-256 digest of the certificate's key (issuer distinguished name + "|" + serial number):
+ * it does not depend on the order in which the certificates are encountered and no global registry is kept. In the
+ * (unlikely) case where two different certificates get the same id, the {@code CertificatePool} uses
+ * {@link #getNextId(int)} to find a free one. The id of such a certificate then differs from {@link #getId(X509Certificate)}
+ * and depends on the certificates already present in the pool: it can differ from one pool to another (e.g. between the
+ * pool of a validation and an overlay of the trusted lists pool). A certificate must therefore be looked up in a pool by
+ * itself, as {@code CertificatePool} does, and an id is only meaningful within the pool (and the reports) it comes from.
+ * <p/>
+ * Since no registry is kept, {@link #clear()} and {@link #toString(String)} are deprecated.
+ * <p/>
  * DISCLAIMER: Project owner DG-MARKT.
  *
  * @author <a href="mailto:dgmarkt.Project-DSS@arhs-developments.com">ARHS Developments</a>
@@ -39,23 +47,11 @@ import eu.europa.ec.markt.dss.exception.DSSException;
  */
 public final class CertificateIdentifier {
 
-	/**
-	 * This is the id which is given to a new certificate.
-	 */
-	private static int nextCertificateIdentifier = 1;
-
-
 	/**
 	 * This boolean is used in testing context, to keep consistent ids for certificates between various test launches
 	 */
 	private static boolean UNIQUE_IDENTIFIER = false;
 
-	/**
-	 * This {@link LinkedHashMap} represents the association between the certificate unique identifier (certificate's
-	 * issuer distinguished name + "|" + certificate's serial number) and the DSS certificate's id.
-	 */
-	private static LinkedHashMap<String, Integer> ids = new LinkedHashMap<String, Integer>();
-
 	private CertificateIdentifier() {
 	}
 
@@ -73,47 +69,40 @@ public final class CertificateIdentifier {
 	}
 
 	/**
-	 * Returns the DSS certificate's unique id for a given {@link X509Certificate}. If the certificate is unknown then its identifier is created.
+	 * Returns the DSS certificate's id for a given {@link X509Certificate}. The same certificate always gets the same
+	 * id. The returned value is always a strictly positive number.
 	 *
 	 * @param x509Certificate {@code X509Certificate} for which the dss id is looking for
-	 * @return dss unique certificate identifier
+	 * @return dss certificate identifier
 	 */
 	public static int getId(final X509Certificate x509Certificate) {
+
 		if (x509Certificate == null) {
 			throw new DSSException("The certificate cannot be null!");
 		}
-		synchronized (ids) {
-
-			final String certKey = getKey(x509Certificate);
-			Integer id = ids.get(certKey);
-			if (id == null) {
-				id = add(certKey);
-			}
-			return id;
+		final String certKey = getKey(x509Certificate);
+		final int id;
+		if (UNIQUE_IDENTIFIER) {
+			id = certKey.hashCode() & 0x7FFFFFFF;
+		} else {
+
+			final byte[] digest = DSSUtils.digest(DigestAlgorithm.SHA256, DSSUtils.getUtf8Bytes(certKey));
+			id = ((digest[0] & 0x7F) << 24) | ((digest[1] & 0xFF) << 16) | ((digest[2] & 0xFF) << 8) | (digest[3] & 0xFF);
 		}
+		return id == 0 ? 1 : id;
 	}
 
 	/**
-	 * This method returns the DSS certificate's id based on the certificate's key: ( issuer distinguished name + "|" +
-	 * serial number). If the certificate is not yet stored it is added to the {@code ids}.
+	 * Returns the id to try when the given one is already used by another certificate. Note that an id obtained this way is
+	 * not equal to {@link #getId(X509Certificate)} and is not stable across pools, see the class documentation.
 	 *
-	 * @param key the key is composed of issuer distinguished name + "|" + serial number
-	 * @return DSS certificate's id
+	 * @param id the id already used
+	 * @return the next candidate id
 	 */
-	private static int add(final String key) {
-
-		Integer id = ids.get(key);
-		if (id == null) {
-			if (UNIQUE_IDENTIFIER) {
-				id = key.hashCode();
-				ids.put(key, id);
-			} else {
-				id = nextCertificateIdentifier;
-				ids.put(key, id);
-				nextCertificateIdentifier++;
-			}
-		}
-		return id;
+	public static int getNextId(final int id) {
+
+		final int nextId = id + 1;
+		return nextId <= 0 ? 1 : nextId;
 	}
 
 	/**
@@ -131,31 +120,27 @@ public final class CertificateIdentifier {
 	}
 
 	/**
-	 * This method resets the list of certificates.
+	 * This method used to reset the registry of the ids and to restart the numbering at 1. The ids are not stored anymore,
+	 * this method does nothing: a certificate keeps the same id after the call.
+	 *
+	 * @deprecated the ids are derived from the certificate itself, there is nothing to reset; this method will be removed
 	 */
+	@Deprecated
 	public static void clear() {
-		ids.clear();
-		nextCertificateIdentifier = 1;
 	}
 
 	/**
-	 * Returns the text representation of all certificates and their internal DSS number. The text is indented with the
-	 * given {@code indentStr} string.
+	 * This method used to return the text representation of all certificates and their internal DSS number. The ids are
+	 * not stored anymore: only the header is returned. The certificates and their ids can be listed from the
+	 * {@code CertificatePool}.
 	 *
-	 * @param indentStr
-	 * @return
+	 * @param indentStr the indentation {@code String}
+	 * @return the header of the former list
+	 * @deprecated the ids are not stored anymore; this method will be removed
 	 */
-	public static String toString(String indentStr) {
-
-		StringBuilder sb = new StringBuilder();
+	@Deprecated
+	public static String toString(final String indentStr) {
 
-		sb.append(indentStr).append("List of certificates:\n");
-		for (Entry<String, Integer> entry : ids.entrySet()) {
-
-			Integer id = entry.getValue();
-			String key = entry.getKey();
-			sb.append(indentStr).append(String.format("[%s] : %s\n", id, key));
-		}
-		return sb.toString();
+		return indentStr + "List of certificates:\n";
 	}
 }
@@ -1862,6 +1862,19 @@ public final class DSSUtils {
 	 */
 	public static String getDeterministicId(final Date signingTime, final int id) {
 
+		return getDeterministicId(signingTime, (long) id);
+	}
+
+	/**
+	 * return a unique id for a date and a numeric id which may exceed the {@code int} range. The ids within the {@code int} range give the same result as
+	 * {@link #getDeterministicId(java.util.Date, int)}.
+	 *
+	 * @param signingTime
+	 * @param id
+	 * @return
+	 */
+	public static String getDeterministicId(final Date signingTime, final long id) {
+
 		final Calendar calendar = Calendar.getInstance();
 		calendar.setTimeZone(TimeZone.getTimeZone("Z"));
 		Date signingTime_ = signingTime;
@@ -1876,8 +1889,13 @@ public final class DSSUtils {
 
 		final byte[] timeBytes = Long.toString(droppedMillis).getBytes();
 
-		final ByteBuffer byteBuffer = ByteBuffer.allocate(4);
-		byteBuffer.putInt(id);
+		final boolean intId = id >= Integer.MIN_VALUE && id <= Integer.MAX_VALUE;
+		final ByteBuffer byteBuffer = ByteBuffer.allocate(intId ? 4 : 8);
+		if (intId) {
+			byteBuffer.putInt((int) id);
+		} else {
+			byteBuffer.putLong(id);
+		}
 		final byte[] certificateBytes = byteBuffer.array();
 
 		final byte[] digestValue = DSSUtils.digest(DigestAlgorithm.MD5, timeBytes, certificateBytes);
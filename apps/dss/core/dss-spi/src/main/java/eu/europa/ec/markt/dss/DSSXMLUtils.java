@@ -57,11 +57,8 @@ import javax.xml.transform.stream.StreamSource;
 import javax.xml.validation.Schema;
 import javax.xml.validation.SchemaFactory;
 import javax.xml.validation.Validator;
-import javax.xml.xpath.XPath;
 import javax.xml.xpath.XPathConstants;
-import javax.xml.xpath.XPathExpression;
 import javax.xml.xpath.XPathExpressionException;
-import javax.xml.xpath.XPathFactory;
 
 import org.apache.xml.security.Init;
 import org.apache.xml.security.c14n.CanonicalizationException;
@@ -104,10 +101,10 @@ public final class DSSXMLUtils {
 	private static DocumentBuilderFactory dbFactory;
 
 
-	private static final XPathFactory factory = XPathFactory.newInstance();
-
 	private static NamespaceContextMap namespacePrefixMapper;
 
+	private static final XPathCache xPathCache;
+
 	private static final Map<String, String> namespaces;
 
 	private static final Set<String> transforms;
@@ -119,6 +116,7 @@ public final class DSSXMLUtils {
 		Init.init();
 
 		namespacePrefixMapper = new NamespaceContextMap();
+		xPathCache = new XPathCache(namespacePrefixMapper, XPathCache.DEFAULT_MAX_SIZE);
 		namespaces = new HashMap<String, String>();
 		registerDefaultNamespaces();
 
@@ -189,6 +187,7 @@ public final class DSSXMLUtils {
 
 		final String put = namespaces.put(prefix, namespace);
 		namespacePrefixMapper.registerNamespace(prefix, namespace);
+		xPathCache.clear();
 		return put == null;
 	}
 
@@ -217,20 +216,14 @@ public final class DSSXMLUtils {
 	}
 
 	/**
+	 * The compiled expressions are cached for each thread.
+	 *
 	 * @param xpathString XPath query string
 	 * @return
 	 */
-	private static XPathExpression createXPathExpression(final String xpathString) {
+	private static XPathCache.CompiledXPath createXPathExpression(final String xpathString) {
 
-      /* XPath */
-		final XPath xpath = factory.newXPath();
-		xpath.setNamespaceContext(namespacePrefixMapper);
-		try {
-			final XPathExpression expr = xpath.compile(xpathString);
-			return expr;
-		} catch (XPathExpressionException ex) {
-			throw new DSSException(ex);
-		}
+		return xPathCache.getOrCompile(xpathString);
 	}
 
 	/**
@@ -297,7 +290,7 @@ public final class DSSXMLUtils {
 
 		try {
 
-			final XPathExpression expr = createXPathExpression(xPathString);
+			final XPathCache.CompiledXPath expr = createXPathExpression(xPathString);
 			final NodeList evaluated = (NodeList) expr.evaluate(xmlNode, XPathConstants.NODESET);
 			return evaluated;
 		} catch (XPathExpressionException e) {
@@ -318,7 +311,7 @@ public final class DSSXMLUtils {
 
 		try {
 
-			final XPathExpression xPathExpression = createXPathExpression(xPathString);
+			final XPathCache.CompiledXPath xPathExpression = createXPathExpression(xPathString);
 			final String string = (String) xPathExpression.evaluate(xmlNode, XPathConstants.STRING);
 			return string.trim();
 		} catch (XPathExpressionException e) {
@@ -338,7 +331,7 @@ public final class DSSXMLUtils {
 
 		try {
 
-			final XPathExpression xPathExpression = createXPathExpression(xPathString);
+			final XPathCache.CompiledXPath xPathExpression = createXPathExpression(xPathString);
 			final Double number = (Double) xPathExpression.evaluate(xmlNode, XPathConstants.NUMBER);
 			return number.intValue();
 		} catch (XPathExpressionException e) {
@@ -998,6 +991,7 @@ public final class DSSXMLUtils {
 
 			namespacePrefixMapper.registerNamespace(entry.getKey(), entry.getValue());
 		}
+		xPathCache.clear();
 	}
 
 	/**
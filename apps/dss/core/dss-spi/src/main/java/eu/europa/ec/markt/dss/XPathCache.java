@@ -0,0 +1,220 @@
+/*
+ * DSS - Digital Signature Services
+ *
+ * Copyright (C) 2013 European Commission, Directorate-General Internal Market and Services (DG MARKT), B-1049 Bruxelles/Brussel
+ *
+ * Developed by: 2013 ARHS Developments S.A. (rue Nicolas Bové 2B, L-1253 Luxembourg) http://www.arhs-developments.com
+ *
+ * This file is part of the "DSS - Digital Signature Services" project.
+ *
+ * "DSS - Digital Signature Services" is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU Lesser General Public License as published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * DSS is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * "DSS - Digital Signature Services".  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.europa.ec.markt.dss;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.xml.namespace.NamespaceContext;
+import javax.xml.namespace.QName;
+import javax.xml.xpath.XPath;
+import javax.xml.xpath.XPathExpression;
+import javax.xml.xpath.XPathExpressionException;
+import javax.xml.xpath.XPathFactory;
+import javax.xml.xpath.XPathVariableResolver;
+
+import org.w3c.dom.Node;
+
+import eu.europa.ec.markt.dss.exception.DSSException;
+
+/**
+ * This class keeps the compiled XPath expressions. The {@code XPathExpression} objects are neither thread-safe nor reentrant, that is why each thread has its own bounded
+ * cache (the least recently used expressions are removed first).
+ * <p/>
+ * An expression can be parameterized with the variables {@code $p1}, {@code $p2}, ... whose values are given at the evaluation. This allows to compile only once the
+ * expressions which differ only by the values of their parameters.
+ *
+ * @version $Revision$ - $Date$
+ */
+public class XPathCache {
+
+	/**
+	 * The default maximal number of expressions kept by each thread.
+	 */
+	public static final int DEFAULT_MAX_SIZE = 512;
+
+	private static final Object[] NO_PARAMETERS = new Object[0];
+
+	private final XPathFactory factory = XPathFactory.newInstance();
+
+	private final NamespaceContext namespaceContext;
+
+	private final int maxSize;
+
+	/**
+	 * Incremented when the cached expressions must be discarded (for example when a namespace is registered).
+	 */
+	private volatile int generation;
+
+	private final ThreadLocal<ThreadCache> threadCache = new ThreadLocal<ThreadCache>() {
+
+		@Override
+		protected ThreadCache initialValue() {
+			return new ThreadCache();
+		}
+	};
+
+	/**
+	 * The default constructor for XPathCache.
+	 *
+	 * @param namespaceContext the {@code NamespaceContext} used to compile the expressions
+	 * @param maxSize          the maximal number of expressions kept by each thread
+	 */
+	public XPathCache(final NamespaceContext namespaceContext, final int maxSize) {
+
+		this.namespaceContext = namespaceContext;
+		this.maxSize = maxSize;
+	}
+
+	/**
+	 * Gives back the compiled expression for the given key.
+	 *
+	 * @param key the key of the expression, in general the XPath query itself
+	 * @return {@code CompiledXPath} or null if the expression is not in the cache of the current thread
+	 */
+	public CompiledXPath get(final String key) {
+
+		return getThreadCache().get(key);
+	}
+
+	/**
+	 * Compiles the given XPath query and keeps it in the cache of the current thread.
+	 *
+	 * @param key         the key of the expression
+	 * @param xpathString the XPath query to compile
+	 * @return {@code CompiledXPath}
+	 * @throws DSSException if the expression cannot be compiled
+	 */
+	public CompiledXPath compile(final String key, final String xpathString) throws DSSException {
+
+		final CompiledXPath compiledXPath = new CompiledXPath(xpathString);
+		getThreadCache().put(key, compiledXPath);
+		return compiledXPath;
+	}
+
+	/**
+	 * Gives back the compiled expression for the given XPath query, the query is compiled if needed.
+	 *
+	 * @param xpathString the XPath query
+	 * @return {@code CompiledXPath}
+	 * @throws DSSException if the expression cannot be compiled
+	 */
+	public CompiledXPath getOrCompile(final String xpathString) throws DSSException {
+
+		final CompiledXPath compiledXPath = get(xpathString);
+		if (compiledXPath != null) {
+			return compiledXPath;
+		}
+		return compile(xpathString, xpathString);
+	}
+
+	/**
+	 * This method discards the expressions cached by all threads. It must be called when the {@code NamespaceContext} changes.
+	 */
+	public void clear() {
+
+		generation++;
+	}
+
+	private ThreadCache getThreadCache() {
+
+		final ThreadCache cache = threadCache.get();
+		final int currentGeneration = generation;
+		if (cache.generation != currentGeneration) {
+
+			cache.clear();
+			cache.generation = currentGeneration;
+		}
+		return cache;
+	}
+
+	private class ThreadCache extends LinkedHashMap<String, CompiledXPath> {
+
+		private int generation = XPathCache.this.generation;
+
+		ThreadCache() {
+			super(64, 0.75f, true);
+		}
+
+		@Override
+		protected boolean removeEldestEntry(final Map.Entry<String, CompiledXPath> eldest) {
+			return size() > maxSize;
+		}
+	}
+
+	/**
+	 * A compiled XPath expression. It must only be used by the thread which obtained it.
+	 */
+	public class CompiledXPath implements XPathVariableResolver {
+
+		private final XPathExpression expression;
+
+		private Object[] parameters = NO_PARAMETERS;
+
+		CompiledXPath(final String xpathString) throws DSSException {
+
+			final XPath xpath;
+			synchronized (factory) {
+				xpath = factory.newXPath();
+			}
+			xpath.setNamespaceContext(namespaceContext);
+			xpath.setXPathVariableResolver(this);
+			try {
+				expression = xpath.compile(xpathString);
+			} catch (XPathExpressionException e) {
+				throw new DSSException(e);
+			}
+		}
+
+		/**
+		 * Evaluates the expression.
+		 *
+		 * @param node       the context node
+		 * @param returnType the expected return type as defined in {@code XPathConstants}
+		 * @param parameters the values of the variables {@code $p1}, {@code $p2}, ...
+		 * @return the result of the evaluation
+		 * @throws XPathExpressionException in the case of evaluation error
+		 */
+		public Object evaluate(final Node node, final QName returnType, final Object... parameters) throws XPathExpressionException {
+
+			this.parameters = parameters;
+			try {
+				return expression.evaluate(node, returnType);
+			} finally {
+				this.parameters = NO_PARAMETERS;
+			}
+		}
+
+		@Override
+		public Object resolveVariable(final QName variableName) {
+
+			final String localPart = variableName.getLocalPart();
+			if (localPart.length() < 2 || localPart.charAt(0) != 'p') {
+				return null;
+			}
+			final int index = Integer.parseInt(localPart.substring(1)) - 1;
+			if (index < 0 || index >= parameters.length) {
+				return null;
+			}
+			return String.valueOf(parameters[index]);
+		}
+	}
+}
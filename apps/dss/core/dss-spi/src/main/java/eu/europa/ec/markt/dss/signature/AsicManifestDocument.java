@@ -30,7 +30,6 @@ import org.w3c.dom.Document;
 
 import eu.europa.ec.markt.dss.DSSUtils;
 import eu.europa.ec.markt.dss.DSSXMLUtils;
-import eu.europa.ec.markt.dss.DigestAlgorithm;
 import eu.europa.ec.markt.dss.exception.DSSException;
 
 /**
@@ -116,14 +115,6 @@ public class AsicManifestDocument extends CommonDocument {
 		return absolutePath;
 	}
 
-	@Override
-	public String getDigest(final DigestAlgorithm digestAlgorithm) {
-
-		final byte[] digestBytes = DSSUtils.digest(digestAlgorithm, getBytes());
-		final String base64Encode = DSSUtils.base64Encode(digestBytes);
-		return base64Encode;
-	}
-
 	public String getSignatureUri() {
 		return signatureUri;
 	}
@@ -20,7 +20,19 @@
 
 package eu.europa.ec.markt.dss.signature;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.StringWriter;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import eu.europa.ec.markt.dss.DSSUtils;
+import eu.europa.ec.markt.dss.DigestAlgorithm;
+import eu.europa.ec.markt.dss.exception.DSSException;
 
 /**
  * This class implements the default methods.
@@ -36,6 +48,12 @@ public abstract class CommonDocument implements DSSDocument {
 
 	protected MimeType mimeType;
 
+	/**
+	 * The base64 encoded digests of the content already computed. The content of a document is considered as immutable: a subclass whose content can change must call
+	 * {@link #clearDigests()} when it does.
+	 */
+	private transient volatile ConcurrentMap<DigestAlgorithm, String> digests;
+
 	@Override
 	public MimeType getMimeType() {
 		return mimeType;
@@ -56,6 +74,108 @@ public abstract class CommonDocument implements DSSDocument {
 		this.nextDocument = nextDocument;
 	}
 
+	private ConcurrentMap<DigestAlgorithm, String> getDigests() {
+
+		ConcurrentMap<DigestAlgorithm, String> digests = this.digests;
+		if (digests == null) {
+
+			synchronized (this) {
+
+				digests = this.digests;
+				if (digests == null) {
+
+					digests = new ConcurrentHashMap<DigestAlgorithm, String>();
+					this.digests = digests;
+				}
+			}
+		}
+		return digests;
+	}
+
+	/**
+	 * The digest is computed only once for each algorithm, see {@link #computeDigests(DigestAlgorithm...)}.
+	 *
+	 * @param digestAlgorithm {@code DigestAlgorithm}
+	 * @return base64 encoded {@code String}
+	 */
+	@Override
+	public String getDigest(final DigestAlgorithm digestAlgorithm) {
+
+		String digest = getDigests().get(digestAlgorithm);
+		if (digest == null) {
+
+			computeDigests(digestAlgorithm);
+			digest = getDigests().get(digestAlgorithm);
+		}
+		return digest;
+	}
+
+	@Override
+	public void computeDigests(final DigestAlgorithm... digestAlgorithms) throws DSSException {
+
+		final ConcurrentMap<DigestAlgorithm, String> digests = getDigests();
+		final List<DigestAlgorithm> missingDigestAlgorithms = new ArrayList<DigestAlgorithm>();
+		for (final DigestAlgorithm digestAlgorithm : digestAlgorithms) {
+
+			if (!digests.containsKey(digestAlgorithm) && !missingDigestAlgorithms.contains(digestAlgorithm)) {
+				missingDigestAlgorithms.add(digestAlgorithm);
+			}
+		}
+		if (missingDigestAlgorithms.isEmpty()) {
+			return;
+		}
+		final MessageDigest[] messageDigests = new MessageDigest[missingDigestAlgorithms.size()];
+		try {
+
+			for (int ii = 0; ii < messageDigests.length; ii++) {
+				messageDigests[ii] = DSSUtils.getMessageDigest(missingDigestAlgorithms.get(ii));
+			}
+		} catch (NoSuchAlgorithmException e) {
+			throw new DSSException("Digest algorithm error: " + e.getMessage(), e);
+		}
+		updateDigests(messageDigests);
+		for (int ii = 0; ii < messageDigests.length; ii++) {
+
+			final String base64Encode = DSSUtils.base64Encode(messageDigests[ii].digest());
+			digests.put(missingDigestAlgorithms.get(ii), base64Encode);
+		}
+	}
+
+	/**
+	 * This method updates all the given {@code MessageDigest}s with the content of the document, reading it once. The default implementation reads the stream
+	 * returned by {@link #openStream()}.
+	 *
+	 * @param messageDigests the {@code MessageDigest}s to update
+	 * @throws DSSException in case of an I/O error
+	 */
+	protected void updateDigests(final MessageDigest[] messageDigests) throws DSSException {
+
+		final InputStream inputStream = openStream();
+		try {
+
+			final byte[] buffer = new byte[8192];
+			int count;
+			while ((count = inputStream.read(buffer)) != -1) {
+
+				for (final MessageDigest messageDigest : messageDigests) {
+					messageDigest.update(buffer, 0, count);
+				}
+			}
+		} catch (IOException e) {
+			throw new DSSException(e);
+		} finally {
+			DSSUtils.closeQuietly(inputStream);
+		}
+	}
+
+	/**
+	 * This method forgets the digests already computed, they are computed again at the next request.
+	 */
+	protected void clearDigests() {
+
+		getDigests().clear();
+	}
+
 	@Override
 	public String toString() {
 
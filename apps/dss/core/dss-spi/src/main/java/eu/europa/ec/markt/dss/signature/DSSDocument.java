@@ -93,6 +93,14 @@ public interface DSSDocument extends Serializable {
 	 */
 	public String getDigest(final DigestAlgorithm digestAlgorithm);
 
+	/**
+	 * This method computes the digests of the current {@code DSSDocument} for all the given algorithms in a single read of its content. The digests are kept and
+	 * returned by {@link #getDigest(DigestAlgorithm)}. It should be called when several digests of a large document are needed.
+	 *
+	 * @param digestAlgorithms the {@code DigestAlgorithm}s to use
+	 */
+	public void computeDigests(final DigestAlgorithm... digestAlgorithms);
+
 	/**
 	 * This method return the next {@code DSSDocument}.
 	 *
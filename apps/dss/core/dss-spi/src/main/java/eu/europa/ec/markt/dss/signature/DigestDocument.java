@@ -21,7 +21,9 @@
 package eu.europa.ec.markt.dss.signature;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 
 import eu.europa.ec.markt.dss.DigestAlgorithm;
 import eu.europa.ec.markt.dss.exception.DSSException;
@@ -35,6 +37,9 @@ import eu.europa.ec.markt.dss.exception.DSSUnsupportedOperationException;
 
 public class DigestDocument extends FileDocument {
 
+	/**
+	 * The digests provided externally: unlike the digests computed from the file, they are serialized with the document.
+	 */
 	private HashMap<DigestAlgorithm, String> base64EncodeDigestMap = new HashMap<DigestAlgorithm, String>();
 
 	/**
@@ -83,4 +88,25 @@ public class DigestDocument extends FileDocument {
 		}
 		return base64EncodeDigest;
 	}
+
+	/**
+	 * Only the digests which were not provided externally are computed from the file.
+	 *
+	 * @param digestAlgorithms the {@code DigestAlgorithm}s
+	 * @throws DSSException in case of an I/O error
+	 */
+	@Override
+	public void computeDigests(final DigestAlgorithm... digestAlgorithms) throws DSSException {
+
+		final List<DigestAlgorithm> missingDigestAlgorithms = new ArrayList<DigestAlgorithm>();
+		for (final DigestAlgorithm digestAlgorithm : digestAlgorithms) {
+
+			if (!base64EncodeDigestMap.containsKey(digestAlgorithm)) {
+				missingDigestAlgorithms.add(digestAlgorithm);
+			}
+		}
+		if (!missingDigestAlgorithms.isEmpty()) {
+			super.computeDigests(missingDigestAlgorithms.toArray(new DigestAlgorithm[missingDigestAlgorithms.size()]));
+		}
+	}
 }
\ No newline at end of file
@@ -30,6 +30,9 @@ import eu.europa.ec.markt.dss.exception.DSSNullException;
 
 /**
  * Document implementation stored on file-system.
+ * <p/>
+ * The computed digests are kept as long as the length and the last modification time of the file do not change. A file rewritten with the same length within the resolution
+ * of the last modification time of the file system is not detected.
  *
  * @version $Revision$ - $Date$
  */
@@ -38,6 +41,12 @@ public class FileDocument extends CommonDocument {
 
 	private final File file;
 
+	/**
+	 * The length and the last modification time of the file for which the digests were computed.
+	 */
+	private long digestedLength;
+	private long digestedLastModified;
+
 	/**
 	 * Create a FileDocument
 	 *
@@ -64,6 +73,37 @@ public class FileDocument extends CommonDocument {
 		}
 		this.file = file;
 		this.mimeType = MimeType.fromFileName(file.getName());
+		this.digestedLength = file.length();
+		this.digestedLastModified = file.lastModified();
+	}
+
+	@Override
+	public String getDigest(final DigestAlgorithm digestAlgorithm) {
+
+		checkUnchanged();
+		return super.getDigest(digestAlgorithm);
+	}
+
+	@Override
+	public void computeDigests(final DigestAlgorithm... digestAlgorithms) throws DSSException {
+
+		checkUnchanged();
+		super.computeDigests(digestAlgorithms);
+	}
+
+	/**
+	 * Forgets the digests already computed if the file was modified since they were computed.
+	 */
+	private synchronized void checkUnchanged() {
+
+		final long length = file.length();
+		final long lastModified = file.lastModified();
+		if (length != digestedLength || lastModified != digestedLastModified) {
+
+			clearDigests();
+			digestedLength = length;
+			digestedLastModified = lastModified;
+		}
 	}
 
 	@Override
@@ -106,14 +146,4 @@ public class FileDocument extends CommonDocument {
 		DSSUtils.saveToFile(inputStream, path);
 		DSSUtils.closeQuietly(inputStream);
 	}
-
-	@Override
-	public String getDigest(final DigestAlgorithm digestAlgorithm) {
-
-		final InputStream inputStream = openStream();
-		final byte[] digestBytes = DSSUtils.digest(digestAlgorithm, inputStream);
-		DSSUtils.closeQuietly(inputStream);
-		final String base64Encode = DSSUtils.base64Encode(digestBytes);
-		return base64Encode;
-	}
 }
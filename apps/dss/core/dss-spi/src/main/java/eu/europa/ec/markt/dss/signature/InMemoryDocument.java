@@ -25,9 +25,9 @@ import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.security.MessageDigest;
 
 import eu.europa.ec.markt.dss.DSSUtils;
-import eu.europa.ec.markt.dss.DigestAlgorithm;
 import eu.europa.ec.markt.dss.exception.DSSException;
 
 /**
@@ -162,10 +162,10 @@ public class InMemoryDocument extends CommonDocument {
 	}
 
 	@Override
-	public String getDigest(final DigestAlgorithm digestAlgorithm) {
+	protected void updateDigests(final MessageDigest[] messageDigests) {
 
-		final byte[] digestBytes = DSSUtils.digest(digestAlgorithm, getBytes());
-		final String base64Encode = DSSUtils.base64Encode(digestBytes);
-		return base64Encode;
+		for (final MessageDigest messageDigest : messageDigests) {
+			messageDigest.update(bytes);
+		}
 	}
 }
\ No newline at end of file
@@ -0,0 +1,263 @@
+/*
+ * DSS - Digital Signature Services
+ *
+ * Copyright (C) 2013 European Commission, Directorate-General Internal Market and Services (DG MARKT), B-1049 Bruxelles/Brussel
+ *
+ * Developed by: 2013 ARHS Developments S.A. (rue Nicolas Bové 2B, L-1253 Luxembourg) http://www.arhs-developments.com
+ *
+ * This file is part of the "DSS - Digital Signature Services" project.
+ *
+ * "DSS - Digital Signature Services" is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU Lesser General Public License as published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * DSS is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * "DSS - Digital Signature Services".  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.europa.ec.markt.dss.signature;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+
+import eu.europa.ec.markt.dss.DSSUtils;
+import eu.europa.ec.markt.dss.DigestAlgorithm;
+import eu.europa.ec.markt.dss.exception.DSSException;
+import eu.europa.ec.markt.dss.exception.DSSNullException;
+
+/**
+ * Document implementation backed by a read-only memory mapping of a file, or of a range of a file. The content is only copied to the heap by {@link #getBytes()}:
+ * {@link #openStream()}, {@link #computeDigests(DigestAlgorithm...)} and {@link #save(String)} work directly on the mapping. {@link #getRange(long, long)} gives a view on a part
+ * of the document without copying it (PDF /ByteRange, stored ZIP entry...).
+ * <p/>
+ * The size of a mapped document is limited to {@code Integer.MAX_VALUE} bytes. The mapping is released by the garbage collector: the file must not be modified
+ * while the document is in use.
+ *
+ * @version $Revision$ - $Date$
+ */
+public class MappedFileDocument extends CommonDocument {
+
+	private final File file;
+
+	private final long offset;
+
+	private final long length;
+
+	/**
+	 * The mapping of the range, it is created on first use.
+	 */
+	private transient volatile ByteBuffer buffer;
+
+	/**
+	 * Create a MappedFileDocument
+	 *
+	 * @param path the path to the file
+	 */
+	public MappedFileDocument(final String path) {
+		this(new File(path));
+	}
+
+	/**
+	 * Create a MappedFileDocument
+	 *
+	 * @param file {@code File}
+	 */
+	public MappedFileDocument(final File file) {
+
+		if (file == null) {
+
+			throw new DSSNullException(File.class);
+		}
+		if (!file.exists()) {
+
+			throw new DSSException("File Not Found: " + file.getAbsolutePath());
+		}
+		this.file = file;
+		this.offset = 0;
+		this.length = file.length();
+		this.mimeType = MimeType.fromFileName(file.getName());
+	}
+
+	private MappedFileDocument(final MappedFileDocument document, final long offset, final long length) {
+
+		this.file = document.file;
+		this.offset = document.offset + offset;
+		this.length = length;
+		this.mimeType = document.mimeType;
+		final ByteBuffer documentBuffer = document.buffer;
+		if (documentBuffer != null) {
+
+			final ByteBuffer duplicate = documentBuffer.duplicate();
+			duplicate.limit((int) (offset + length));
+			duplicate.position((int) offset);
+			buffer = duplicate.slice();
+		}
+	}
+
+	/**
+	 * This method returns a view on the given range of the document. When the document is already mapped the view shares its mapping, otherwise only the range is
+	 * mapped.
+	 *
+	 * @param offset the offset of the range within the document
+	 * @param length the length of the range
+	 * @return the {@code MappedFileDocument} representing the range
+	 */
+	public MappedFileDocument getRange(final long offset, final long length) throws DSSException {
+
+		if (offset < 0 || length < 0 || offset + length > this.length) {
+
+			throw new DSSException(String.format("The range [%s, %s[ is out of the document (%s bytes).", offset, offset + length, this.length));
+		}
+		return new MappedFileDocument(this, offset, length);
+	}
+
+	/**
+	 * @return the length of the document in bytes
+	 */
+	public long getLength() {
+		return length;
+	}
+
+	/**
+	 * @return a new read-only {@code ByteBuffer} on the content of the document, positioned at its beginning
+	 */
+	public ByteBuffer getByteBuffer() throws DSSException {
+
+		ByteBuffer buffer = this.buffer;
+		if (buffer == null) {
+
+			buffer = map();
+			this.buffer = buffer;
+		}
+		return buffer.duplicate();
+	}
+
+	private ByteBuffer map() throws DSSException {
+
+		if (length > Integer.MAX_VALUE) {
+
+			throw new DSSException("The document is too large to be mapped: " + length + " bytes.");
+		}
+		RandomAccessFile randomAccessFile = null;
+		try {
+
+			randomAccessFile = new RandomAccessFile(file, "r");
+			return randomAccessFile.getChannel().map(FileChannel.MapMode.READ_ONLY, offset, length);
+		} catch (IOException e) {
+			throw new DSSException(e);
+		} finally {
+			if (randomAccessFile != null) {
+				try {
+					randomAccessFile.close();
+				} catch (IOException e) {
+					// ignore, the mapping stays valid
+				}
+			}
+		}
+	}
+
+	@Override
+	public InputStream openStream() throws DSSException {
+
+		return new ByteBufferInputStream(getByteBuffer());
+	}
+
+	@Override
+	public byte[] getBytes() throws DSSException {
+
+		final ByteBuffer byteBuffer = getByteBuffer();
+		final byte[] bytes = new byte[byteBuffer.remaining()];
+		byteBuffer.get(bytes);
+		return bytes;
+	}
+
+	@Override
+	public String getName() {
+		return file.getName();
+	}
+
+	@Override
+	public String getAbsolutePath() {
+		return file.getAbsolutePath();
+	}
+
+	@Override
+	public void save(final String path) throws DSSException {
+
+		FileOutputStream fileOutputStream = null;
+		try {
+
+			fileOutputStream = new FileOutputStream(path);
+			final FileChannel channel = fileOutputStream.getChannel();
+			final ByteBuffer byteBuffer = getByteBuffer();
+			while (byteBuffer.hasRemaining()) {
+				channel.write(byteBuffer);
+			}
+		} catch (IOException e) {
+			throw new DSSException(e);
+		} finally {
+			DSSUtils.closeQuietly(fileOutputStream);
+		}
+	}
+
+	@Override
+	protected void updateDigests(final MessageDigest[] messageDigests) throws DSSException {
+
+		for (final MessageDigest messageDigest : messageDigests) {
+			messageDigest.update(getByteBuffer());
+		}
+	}
+
+	/**
+	 * {@code InputStream} reading a {@code ByteBuffer}.
+	 */
+	private static class ByteBufferInputStream extends InputStream {
+
+		private final ByteBuffer byteBuffer;
+
+		ByteBufferInputStream(final ByteBuffer byteBuffer) {
+			this.byteBuffer = byteBuffer;
+		}
+
+		@Override
+		public int read() {
+			return byteBuffer.hasRemaining() ? byteBuffer.get() & 0xFF : -1;
+		}
+
+		@Override
+		public int read(final byte[] bytes, final int off, final int len) {
+
+			if (len == 0) {
+				return 0;
+			}
+			if (!byteBuffer.hasRemaining()) {
+				return -1;
+			}
+			final int count = Math.min(len, byteBuffer.remaining());
+			byteBuffer.get(bytes, off, count);
+			return count;
+		}
+
+		@Override
+		public long skip(final long n) {
+
+			final int count = (int) Math.max(0, Math.min(n, byteBuffer.remaining()));
+			byteBuffer.position(byteBuffer.position() + count);
+			return count;
+		}
+
+		@Override
+		public int available() {
+			return byteBuffer.remaining();
+		}
+	}
+}
@@ -0,0 +1,177 @@
+/*
+ * DSS - Digital Signature Services
+ *
+ * Copyright (C) 2013 European Commission, Directorate-General Internal Market and Services (DG MARKT), B-1049 Bruxelles/Brussel
+ *
+ * Developed by: 2013 ARHS Developments S.A. (rue Nicolas Bové 2B, L-1253 Luxembourg) http://www.arhs-developments.com
+ *
+ * This file is part of the "DSS - Digital Signature Services" project.
+ *
+ * "DSS - Digital Signature Services" is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU Lesser General Public License as published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * DSS is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * "DSS - Digital Signature Services".  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.europa.ec.markt.dss.signature;
+
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import eu.europa.ec.markt.dss.DSSUtils;
+import eu.europa.ec.markt.dss.exception.DSSException;
+import eu.europa.ec.markt.dss.exception.DSSNullException;
+
+/**
+ * Document implementation representing an entry of a ZIP file (ASiC container...). The content of the entry is not kept in memory: each call to
+ * {@link #openStream()} locates the entry through the central directory of the ZIP file and inflates it on the fly. The entries of a container can share the same opened
+ * {@code ZipFile} (the central directory is then read only once); when it was not provided or is closed, each stream opens the ZIP file again.
+ *
+ * @version $Revision$ - $Date$
+ */
+public class ZipEntryDocument extends CommonDocument {
+
+	private final File zipFile;
+
+	private final String entryName;
+
+	/**
+	 * The opened ZIP file shared by the entries of the same container, it is owned (and closed) by the creator of the documents.
+	 */
+	private transient volatile ZipFile openedZipFile;
+
+	/**
+	 * Create a ZipEntryDocument
+	 *
+	 * @param zipFile   the ZIP file holding the entry
+	 * @param entryName the name of the entry within the ZIP file
+	 */
+	public ZipEntryDocument(final File zipFile, final String entryName) {
+
+		this(zipFile, null, entryName);
+	}
+
+	/**
+	 * Create a ZipEntryDocument reading its content through an already opened {@code ZipFile}.
+	 *
+	 * @param zipFile       the ZIP file holding the entry
+	 * @param openedZipFile the opened ZIP file, shared with the other entries of the container, or null
+	 * @param entryName     the name of the entry within the ZIP file
+	 */
+	public ZipEntryDocument(final File zipFile, final ZipFile openedZipFile, final String entryName) {
+
+		if (zipFile == null) {
+
+			throw new DSSNullException(File.class);
+		}
+		if (entryName == null) {
+
+			throw new DSSNullException(String.class, "entryName");
+		}
+		this.zipFile = zipFile;
+		this.entryName = entryName;
+		this.openedZipFile = openedZipFile;
+		this.mimeType = MimeType.fromFileName(entryName);
+	}
+
+	/**
+	 * When the document has no shared opened ZIP file, the returned stream holds its own ZIP file open until it is closed.
+	 *
+	 * @return the inflated content of the entry
+	 * @throws DSSException
+	 */
+	@Override
+	public InputStream openStream() throws DSSException {
+
+		final ZipFile sharedZip = openedZipFile;
+		if (sharedZip != null) {
+
+			try {
+				return getInputStream(sharedZip);
+			} catch (IllegalStateException e) {
+				// The shared ZIP file is already closed
+				openedZipFile = null;
+			} catch (IOException e) {
+				throw new DSSException(e);
+			}
+		}
+		ZipFile zip = null;
+		try {
+
+			zip = new ZipFile(zipFile);
+			final ZipFile openedZip = zip;
+			final InputStream inputStream = new FilterInputStream(getInputStream(zip)) {
+
+				@Override
+				public void close() throws IOException {
+
+					try {
+						super.close();
+					} finally {
+						openedZip.close();
+					}
+				}
+			};
+			zip = null;
+			return inputStream;
+		} catch (IOException e) {
+			throw new DSSException(e);
+		} finally {
+			if (zip != null) {
+				try {
+					zip.close();
+				} catch (IOException e) {
+					// do nothing
+				}
+			}
+		}
+	}
+
+	private InputStream getInputStream(final ZipFile zip) throws IOException {
+
+		final ZipEntry entry = zip.getEntry(entryName);
+		if (entry == null) {
+
+			throw new DSSException("The entry '" + entryName + "' cannot be found in: " + zipFile.getAbsolutePath());
+		}
+		return zip.getInputStream(entry);
+	}
+
+	@Override
+	public byte[] getBytes() throws DSSException {
+
+		final InputStream inputStream = openStream();
+		final byte[] bytes = DSSUtils.toByteArray(inputStream);
+		return bytes;
+	}
+
+	@Override
+	public String getName() {
+		return entryName;
+	}
+
+	@Override
+	public String getAbsolutePath() {
+		return zipFile.getAbsolutePath() + "!/" + entryName;
+	}
+
+	@Override
+	public void save(final String path) throws DSSException {
+
+		final InputStream inputStream = openStream();
+		try {
+			DSSUtils.saveToFile(inputStream, path);
+		} finally {
+			DSSUtils.closeQuietly(inputStream);
+		}
+	}
+}
@@ -27,8 +27,10 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import javax.security.auth.x500.X500Principal;
 
@@ -47,6 +49,11 @@ import eu.europa.ec.markt.dss.validation102853.condition.ServiceInfo;
  * different sources: trusted list, signature, OCSP response... but each certificate is unambiguously identified by its
  * issuer DN and serial number. This class allows to keep only one occurrence of the certificate regardless its
  * provenance. Two pools of certificates can be merged using the {@link #merge(CertificatePool)} method.
+ * <p/>
+ * A pool can be frozen using the {@link #freeze()} method: no new certificate can be added anymore and the lookups are done without any lock. A frozen pool (typically built
+ * from the trusted lists) can be used as the base of a per-validation overlay pool created with {@link #CertificatePool(CertificatePool)}: the certificates found in the base
+ * pool are shared, the other ones are added to the overlay only and are released with it. The tokens of the base pool are never modified through an overlay: when a new
+ * source or service must be associated to such a token, a copy of it is created in the overlay and replaces it for the validation.
  *
  * @author bielecro
  */
@@ -67,6 +74,69 @@ public class CertificatePool implements Serializable {
 	// TODO-Bob (17/02/2015):  The key should be the ASN.1 bytes of X500Principal
 	private final Map<String, List<CertificateToken>> certBySubject = new HashMap<String, List<CertificateToken>>();
 
+	/**
+	 * The base pool of this overlay pool or null.
+	 */
+	private final CertificatePool basePool;
+
+	/**
+	 * The ids of the base pool tokens replaced by a copy in this overlay pool (guarded by {@code certById}).
+	 */
+	private final Set<Integer> overlaidIds = new HashSet<Integer>();
+
+	/**
+	 * Indicates if this pool is frozen: the content of the maps cannot change anymore and can be read without lock.
+	 */
+	private volatile boolean frozen = false;
+
+	/**
+	 * The default constructor creating an independent pool.
+	 */
+	public CertificatePool() {
+
+		this.basePool = null;
+	}
+
+	/**
+	 * This constructor creates an overlay pool on top of the given base pool. The certificates already present in the base pool are returned as they are, the new ones are
+	 * added only to the overlay.
+	 *
+	 * @param basePool {@code CertificatePool} to be used as base, preferably frozen
+	 */
+	public CertificatePool(final CertificatePool basePool) {
+
+		if (basePool == null) {
+			throw new DSSNullException(CertificatePool.class, "basePool");
+		}
+		this.basePool = basePool;
+	}
+
+	/**
+	 * This method makes this pool immutable: no certificate can be added anymore and all lookups are done without any lock.
+	 */
+	public void freeze() {
+
+		synchronized (certById) {
+			frozen = true;
+		}
+	}
+
+	/**
+	 * @return true if this pool is immutable
+	 */
+	public boolean isFrozen() {
+
+		return frozen;
+	}
+
+	/**
+	 * @return the base pool of this overlay pool or null
+	 */
+	public CertificatePool getBasePool() {
+
+		return basePool;
+	}
+
 	/**
 	 * Returns the instance of a certificate token. If the certificate is not referenced yet a new instance of
 	 * {@link CertificateToken} is created.
@@ -125,7 +195,10 @@ public class CertificatePool implements Serializable {
 		//		if (LOG.isTraceEnabled()) {
 		//			LOG.trace("Certificate to add: " + certificateToAdd.getIssuerX500Principal().toString() + "|" + certificateToAdd.getSerialNumber());
 		//		}
-		final CertificateToken certToken = getCertificateToken(x509Certificate);
+		CertificateToken certToken = getCertificateToken(x509Certificate);
+		if (basePool != null && !hasAll(certToken, sources, services)) {
+			certToken = getOverlayCertificateToken(certToken);
+		}
 		for (final CertificateSourceType sourceType : sources) {
 			certToken.addSourceType(sourceType);
 		}
@@ -137,30 +210,180 @@ public class CertificatePool implements Serializable {
 		return certToken;
 	}
 
+	private static boolean hasAll(final CertificateToken certToken, final List<CertificateSourceType> sources, final List<ServiceInfo> services) {
+
+		if (!certToken.getSources().containsAll(sources)) {
+			return false;
+		}
+		if (services == null || services.isEmpty()) {
+			return true;
+		}
+		final List<ServiceInfo> associatedTSPS = certToken.getAssociatedTSPS();
+		return associatedTSPS != null && associatedTSPS.containsAll(services);
+	}
+
+	/**
+	 * Returns the token of this overlay pool corresponding to the given token. If the given token belongs to the base pool, a copy (with the same id, sources and services)
+	 * is created in this overlay: it can be modified without affecting the other validations sharing the base pool.
+	 *
+	 * @param certToken {@code CertificateToken} found in this pool or in its base pool
+	 * @return {@code CertificateToken} belonging to this overlay pool
+	 */
+	private CertificateToken getOverlayCertificateToken(final CertificateToken certToken) {
+
+		final Integer id = certToken.getDSSId();
+		synchronized (certById) {
+
+			final CertificateToken overlayCertToken = certById.get(id);
+			if (overlayCertToken != null) {
+				return overlayCertToken;
+			}
+			if (frozen) {
+				throw new DSSException("The certificate pool is frozen, the certificate cannot be added: " + certToken.getSubjectX500Principal());
+			}
+			final CertificateToken copy = CertificateToken.newInstance(certToken.getCertificate(), id);
+			for (final CertificateSourceType sourceType : certToken.getSources()) {
+				copy.addSourceType(sourceType);
+			}
+			final List<ServiceInfo> associatedTSPS = certToken.getAssociatedTSPS();
+			if (associatedTSPS != null) {
+				for (final ServiceInfo serviceInfo : associatedTSPS) {
+					copy.addServiceInfo(serviceInfo);
+				}
+			}
+			certById.put(id, copy);
+			overlaidIds.add(id);
+			addToSubjectMap(copy);
+			return copy;
+		}
+	}
+
+	private void addToSubjectMap(final CertificateToken certToken) {
+
+		final X500Principal subjectX500Principal = DSSUtils.getSubjectX500Principal(certToken.getCertificate());
+		final String subjectName = subjectX500Principal.getName(X500Principal.CANONICAL);
+		List<CertificateToken> list = certBySubject.get(subjectName);
+		if (list == null) {
+
+			list = new ArrayList<CertificateToken>();
+			certBySubject.put(subjectName, list);
+		}
+		list.add(certToken);
+	}
+
 	private CertificateToken getCertificateToken(final X509Certificate x509Certificate) {
 
 		final int id = CertificateIdentifier.getId(x509Certificate);
+		final CertificateToken existingCertToken = findCertificateToken(x509Certificate, id);
+		if (existingCertToken != null) {
+			return existingCertToken;
+		}
+		if (frozen) {
+			throw new DSSException("The certificate pool is frozen, the certificate cannot be added: " + x509Certificate.getSubjectX500Principal());
+		}
 		synchronized (certById) {
 
-			CertificateToken certToken = certById.get(id);
-			if (certToken == null) {
+			if (frozen) {
+				throw new DSSException("The certificate pool is frozen, the certificate cannot be added: " + x509Certificate.getSubjectX500Principal());
+			}
+			// The certificate can have been added by another thread in the meantime
+			int freeId = id;
+			CertificateToken certToken = getCertificateToken(freeId);
+			while (certToken != null) {
+
+				if (isSameCertificate(x509Certificate, certToken)) {
+					return certToken;
+				}
+				freeId = CertificateIdentifier.getNextId(freeId);
+				certToken = getCertificateToken(freeId);
+			}
+			certToken = CertificateToken.newInstance(x509Certificate, freeId);
+			certById.put(freeId, certToken);
+			addToSubjectMap(certToken);
+			return certToken;
+		}
+	}
+
+	/**
+	 * Looks for the token corresponding to the given certificate starting with the given id. As the id is derived from a digest, another certificate can use the same id: in
+	 * this case the next ids are checked.
+	 *
+	 * @param x509Certificate {@code X509Certificate} to find
+	 * @param id              the DSS identifier of the certificate
+	 * @return {@code CertificateToken} or null if not found
+	 */
+	private CertificateToken findCertificateToken(final X509Certificate x509Certificate, final int id) {
+
+		int candidateId = id;
+		CertificateToken certToken = getCertificateToken(candidateId);
+		while (certToken != null) {
 
-				certToken = CertificateToken.newInstance(x509Certificate, id);
-				certById.put(id, certToken);
-				final X500Principal subjectX500Principal = DSSUtils.getSubjectX500Principal(x509Certificate);
-				final String subjectName = subjectX500Principal.getName(X500Principal.CANONICAL);
-				List<CertificateToken> list = certBySubject.get(subjectName);
-				if (list == null) {
+			if (isSameCertificate(x509Certificate, certToken)) {
 
-					list = new ArrayList<CertificateToken>();
-					certBySubject.put(subjectName, list);
+				if (LOG.isTraceEnabled()) {
+					checkCertificateUniqueness(x509Certificate, certToken);
 				}
-				list.add(certToken);
-			} else if (LOG.isTraceEnabled()) {
-				checkCertificateUniqueness(x509Certificate, certToken);
+				return certToken;
+			}
+			candidateId = CertificateIdentifier.getNextId(candidateId);
+			certToken = getCertificateToken(candidateId);
+		}
+		return null;
+	}
+
+	/**
+	 * A certificate is unambiguously identified by its issuer DN and serial number.
+	 *
+	 * @param x509Certificate {@code X509Certificate} to compare
+	 * @param certToken       {@code CertificateToken} to compare
+	 * @return true if both represent the same certificate
+	 */
+	private static boolean isSameCertificate(final X509Certificate x509Certificate, final CertificateToken certToken) {
+
+		return x509Certificate.getSerialNumber().equals(certToken.getSerialNumber()) && DSSUtils.getIssuerX500Principal(x509Certificate).equals(certToken.getIssuerX500Principal());
+	}
+
+	/**
+	 * Returns the certificate token with the given DSS identifier from this pool or from its base pool. The copies held by this overlay take precedence over the base tokens.
+	 *
+	 * @param id DSS certificate identifier
+	 * @return {@code CertificateToken} or null if not found
+	 */
+	private CertificateToken getCertificateToken(final int id) {
+
+		final CertificateToken certToken;
+		if (frozen) {
+			certToken = certById.get(id);
+		} else {
+			synchronized (certById) {
+				certToken = certById.get(id);
 			}
+		}
+		if (certToken != null || basePool == null) {
 			return certToken;
 		}
+		return basePool.getCertificateToken(id);
+	}
+
+	/**
+	 * @param baseCertificateTokens the tokens of the base pool
+	 * @return the given tokens without the ones replaced by a copy in this overlay
+	 */
+	private List<CertificateToken> withoutOverlaid(final List<CertificateToken> baseCertificateTokens) {
+
+		synchronized (certById) {
+
+			if (overlaidIds.isEmpty()) {
+				return baseCertificateTokens;
+			}
+			final List<CertificateToken> certificateTokens = new ArrayList<CertificateToken>(baseCertificateTokens.size());
+			for (final CertificateToken certificateToken : baseCertificateTokens) {
+				if (!overlaidIds.contains(certificateToken.getDSSId())) {
+					certificateTokens.add(certificateToken);
+				}
+			}
+			return Collections.unmodifiableList(certificateTokens);
+		}
 	}
 
 	private static void checkCertificateUniqueness(final X509Certificate certificateToAdd, final CertificateToken certToken) {
@@ -180,7 +403,17 @@ public class CertificatePool implements Serializable {
 	 */
 	public List<CertificateToken> getCertificateTokens() {
 
-		ArrayList<CertificateToken> certificateTokenArrayList = new ArrayList<CertificateToken>(certById.values());
+		final ArrayList<CertificateToken> certificateTokenArrayList = new ArrayList<CertificateToken>();
+		if (basePool != null) {
+			certificateTokenArrayList.addAll(withoutOverlaid(basePool.getCertificateTokens()));
+		}
+		if (frozen) {
+			certificateTokenArrayList.addAll(certById.values());
+		} else {
+			synchronized (certById) {
+				certificateTokenArrayList.addAll(certById.values());
+			}
+		}
 		return Collections.unmodifiableList(certificateTokenArrayList);
 	}
 
@@ -191,7 +424,13 @@ public class CertificatePool implements Serializable {
 	 */
 	public int getNumberOfCertificates() {
 
-		return certById.size();
+		final int baseNumberOfCertificates = basePool == null ? 0 : basePool.getNumberOfCertificates();
+		if (frozen) {
+			return baseNumberOfCertificates + certById.size() - overlaidIds.size();
+		}
+		synchronized (certById) {
+			return baseNumberOfCertificates + certById.size() - overlaidIds.size();
+		}
 	}
 
 	/**
@@ -224,11 +463,36 @@ public class CertificatePool implements Serializable {
 		if (x500Principal != null) {
 
 			final String x500PrincipalCanonicalized = x500Principal.getName(X500Principal.CANONICAL);
-			final List<CertificateToken> certificateTokenList = certBySubject.get(x500PrincipalCanonicalized);
-			if (certificateTokenList != null) {
-				return Collections.unmodifiableList(certificateTokenList);
-			}
+			return get(x500PrincipalCanonicalized);
 		}
 		return EMPTY_UNMODIFIABLE_CERTIFICATE_TOKEN_LIST;
 	}
+
+	private List<CertificateToken> get(final String x500PrincipalCanonicalized) {
+
+		final List<CertificateToken> baseCertificateTokenList = basePool == null ? EMPTY_UNMODIFIABLE_CERTIFICATE_TOKEN_LIST : withoutOverlaid(
+			  basePool.get(x500PrincipalCanonicalized));
+		final List<CertificateToken> certificateTokenList;
+		if (frozen) {
+
+			final List<CertificateToken> list = certBySubject.get(x500PrincipalCanonicalized);
+			certificateTokenList = list == null ? null : Collections.unmodifiableList(list);
+		} else {
+
+			synchronized (certById) {
+
+				final List<CertificateToken> list = certBySubject.get(x500PrincipalCanonicalized);
+				certificateTokenList = list == null ? null : Collections.unmodifiableList(new ArrayList<CertificateToken>(list));
+			}
+		}
+		if (certificateTokenList == null) {
+			return baseCertificateTokenList;
+		}
+		if (baseCertificateTokenList.isEmpty()) {
+			return certificateTokenList;
+		}
+		final List<CertificateToken> mergedCertificateTokenList = new ArrayList<CertificateToken>(baseCertificateTokenList);
+		mergedCertificateTokenList.addAll(certificateTokenList);
+		return Collections.unmodifiableList(mergedCertificateTokenList);
+	}
 }
@@ -31,7 +31,7 @@ public class CertificateTokenValidationExtraInfo extends TokenValidationExtraInf
      */
     public void infoOCSPSourceIsNull() {
 
-        validationInfo.add("The OCSP source is null!");
+        add("The OCSP source is null!");
     }
 
     /**
@@ -39,7 +39,7 @@ public class CertificateTokenValidationExtraInfo extends TokenValidationExtraInf
      */
     public void infoNoOCSPResponse(final String uri) {
 
-        validationInfo.add("There is no OCSP response! (uri: " + uri + ")");
+        add("There is no OCSP response! (uri: " + uri + ")");
     }
 
     /**
@@ -47,7 +47,7 @@ public class CertificateTokenValidationExtraInfo extends TokenValidationExtraInf
      */
     public void infoOCSPException(final Exception e) {
 
-        validationInfo.add("An exception occurred during the OCSP retrieval process: " + e.getMessage());
+        add("An exception occurred during the OCSP retrieval process: " + e.getMessage());
     }
 
     /**
@@ -55,7 +55,7 @@ public class CertificateTokenValidationExtraInfo extends TokenValidationExtraInf
      */
     public void infoCRLSourceIsNull() {
 
-        validationInfo.add("The CRL source is null!");
+        add("The CRL source is null!");
     }
 
     /**
@@ -63,7 +63,7 @@ public class CertificateTokenValidationExtraInfo extends TokenValidationExtraInf
      */
     public void infoNoCRLInfoFound(final String uri) {
 
-        validationInfo.add("No CRL info found! (" + uri + ")");
+        add("No CRL info found! (" + uri + ")");
     }
 
     /**
@@ -71,7 +71,7 @@ public class CertificateTokenValidationExtraInfo extends TokenValidationExtraInf
      */
     public void infoCRLSignatureIsNotValid(final String message) {
 
-        validationInfo.add("The CRL signature is not valid: " + message);
+        add("The CRL signature is not valid: " + message);
     }
 
     /**
@@ -79,7 +79,7 @@ public class CertificateTokenValidationExtraInfo extends TokenValidationExtraInf
      */
     public void infoCRLIsNotValid() {
 
-        validationInfo.add("The CRL is not valid!");
+        add("The CRL is not valid!");
     }
 
     /**
@@ -87,7 +87,7 @@ public class CertificateTokenValidationExtraInfo extends TokenValidationExtraInf
      */
     public void infoCRLException(final Exception e) {
 
-        validationInfo.add("An exception occurred during the CRL retrieval process: " + e.getMessage());
+        add("An exception occurred during the CRL retrieval process: " + e.getMessage());
     }
 
     public void infoTheCertNotValidYet(final Date validationDate, final Date notAfter, final Date notBefore) {
@@ -95,7 +95,7 @@ public class CertificateTokenValidationExtraInfo extends TokenValidationExtraInf
         final String endDate = DSSUtils.formatInternal(notAfter);
         final String startDate = DSSUtils.formatInternal(notBefore);
         final String valDate = DSSUtils.formatInternal(validationDate);
-        validationInfo.add("The certificate is not valid yet! [" + startDate + "-" + endDate + "] on " + valDate);
+        add("The certificate is not valid yet! [" + startDate + "-" + endDate + "] on " + valDate);
     }
 
     public void infoTheCertIsExpired(final Date validationDate, final Date notAfter, final Date notBefore) {
@@ -103,7 +103,7 @@ public class CertificateTokenValidationExtraInfo extends TokenValidationExtraInf
         final String endDate = DSSUtils.formatInternal(notAfter);
         final String startDate = DSSUtils.formatInternal(notBefore);
         final String valDate = DSSUtils.formatInternal(validationDate);
-        validationInfo.add("The certificate is expired! [" + startDate + "-" + endDate + "] on " + valDate);
+        add("The certificate is expired! [" + startDate + "-" + endDate + "] on " + valDate);
     }
 
 }
@@ -21,6 +21,7 @@
 package eu.europa.ec.markt.dss.validation102853;
 
 import java.io.Serializable;
+import java.util.concurrent.ExecutorService;
 
 import eu.europa.ec.markt.dss.validation102853.crl.CRLSource;
 import eu.europa.ec.markt.dss.validation102853.crl.ListCRLSource;
@@ -110,6 +111,66 @@ public interface CertificateVerifier extends Serializable {
 	 */
 	public void setDataLoader(final DataLoader dataLoader);
 
+	/**
+	 * Returns the application-scoped {@code ExecutorService} used to fetch the validation data (AIA, OCSP, CRL). This executor is shared by all validations using this verifier
+	 * and is never shut down by them. If {@code null} a dedicated executor is created for each validation.
+	 *
+	 * @return {@code ExecutorService} or null
+	 */
+	public ExecutorService getExecutorService();
+
+	/**
+	 * Sets the application-scoped {@code ExecutorService} used to fetch the validation data (AIA, OCSP, CRL). Its life-cycle is managed by the caller. Any implementation can be
+	 * used: fixed thread pool, virtual thread per task executor...
+	 *
+	 * @param executorService {@code ExecutorService}
+	 */
+	public void setExecutorService(final ExecutorService executorService);
+
+	/**
+	 * Returns the strategy used to query the online OCSP and CRL sources.
+	 *
+	 * @return {@code RevocationCheckingStrategy}
+	 */
+	public RevocationCheckingStrategy getRevocationCheckingStrategy();
+
+	/**
+	 * Sets the strategy used to query the online OCSP and CRL sources. The default value is {@code RevocationCheckingStrategy.SEQUENTIAL}.
+	 *
+	 * @param revocationCheckingStrategy {@code RevocationCheckingStrategy}
+	 */
+	public void setRevocationCheckingStrategy(final RevocationCheckingStrategy revocationCheckingStrategy);
+
+	/**
+	 * Returns the latency budget (in milliseconds) granted to the OCSP source before the CRL source is queried with the {@code RevocationCheckingStrategy.HEDGED} strategy.
+	 *
+	 * @return the hedging delay in milliseconds
+	 */
+	public long getRevocationHedgingDelay();
+
+	/**
+	 * Sets the latency budget (in milliseconds) granted to the OCSP source before the CRL source is queried with the {@code RevocationCheckingStrategy.HEDGED} strategy.
+	 *
+	 * @param revocationHedgingDelay the hedging delay in milliseconds
+	 */
+	public void setRevocationHedgingDelay(final long revocationHedgingDelay);
+
+	/**
+	 * Returns the {@code ExecutorService} running the concurrent OCSP and CRL lookups ({@code RevocationCheckingStrategy.CONCURRENT} and
+	 * {@code RevocationCheckingStrategy.HEDGED} strategies).
+	 *
+	 * @return {@code ExecutorService} or null if the default bounded pool is used
+	 */
+	public ExecutorService getRevocationExecutorService();
+
+	/**
+	 * Sets the {@code ExecutorService} running the concurrent OCSP and CRL lookups. It must not be the executor returned by {@code getExecutorService()} when this one is
+	 * bounded: the lookups are started from its tasks. Its life-cycle is managed by the caller. When it rejects a lookup, the lookup is run by the calling thread.
+	 *
+	 * @param revocationExecutorService {@code ExecutorService}
+	 */
+	public void setRevocationExecutorService(final ExecutorService revocationExecutorService);
+
 	/**
 	 * This method returns the CRL source (information extracted from signatures).
 	 */
@@ -11,6 +11,7 @@ import org.w3c.dom.Document;
 import eu.europa.ec.markt.dss.exception.DSSException;
 import eu.europa.ec.markt.dss.signature.DSSDocument;
 import eu.europa.ec.markt.dss.validation102853.policy.ValidationPolicy;
+import eu.europa.ec.markt.dss.validation102853.report.ReportType;
 import eu.europa.ec.markt.dss.validation102853.report.Reports;
 
 /**
@@ -76,6 +77,14 @@ public interface DocumentValidator {
 	 */
 	public void setProcessExecutor(final ProcessExecutor processExecutor);
 
+	/**
+	 * This method allows to select the reports returned by the validation. The simple report is always returned, by default all the reports are returned.
+	 * When the detailed report is not requested, it is neither serialised nor parsed.
+	 *
+	 * @param reportTypes the {@code ReportType}s to return
+	 */
+	public void setReportTypes(final ReportType... reportTypes);
+
 
 	/**
 	 * Validates the document and all its signatures. The default constraint file is used.
@@ -20,10 +20,12 @@
 package eu.europa.ec.markt.dss.validation102853;
 
 import java.util.Date;
+import java.util.Set;
 
 import org.w3c.dom.Document;
 
 import eu.europa.ec.markt.dss.validation102853.policy.ValidationPolicy;
+import eu.europa.ec.markt.dss.validation102853.report.ReportType;
 import eu.europa.ec.markt.dss.validation102853.report.Reports;
 
 /**
@@ -93,6 +95,14 @@ public interface ProcessExecutor {
 	 */
 	void setCountersignatureValidationPolicy(ValidationPolicy validationPolicy);
 
+	/**
+	 * This method allows to select the reports kept in the {@code Reports} returned by {@link #execute()}. The simple report is always generated, by default all
+	 * the reports are kept. The reports which are not requested are not created and their getters return {@code null}.
+	 *
+	 * @param reportTypes the {@code Set} of {@code ReportType}s to keep
+	 */
+	void setReportTypes(final Set<ReportType> reportTypes);
+
 	/**
 	 * This method allows to run the validation process.
 	 *
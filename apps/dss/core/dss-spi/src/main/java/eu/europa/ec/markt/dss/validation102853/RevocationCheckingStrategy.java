@@ -0,0 +1,45 @@
+/*
+ * DSS - Digital Signature Services
+ *
+ * Copyright (C) 2013 European Commission, Directorate-General Internal Market and Services (DG MARKT), B-1049 Bruxelles/Brussel
+ *
+ * Developed by: 2013 ARHS Developments S.A. (rue Nicolas Bové 2B, L-1253 Luxembourg) http://www.arhs-developments.com
+ *
+ * This file is part of the "DSS - Digital Signature Services" project.
+ *
+ * "DSS - Digital Signature Services" is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU Lesser General Public License as published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * DSS is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * "DSS - Digital Signature Services".  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.europa.ec.markt.dss.validation102853;
+
+/**
+ * Defines how the OCSP and the CRL sources are queried when the revocation data of a certificate is fetched online.
+ *
+ * @version $Revision$ - $Date$
+ */
+public enum RevocationCheckingStrategy {
+
+	/**
+	 * The OCSP source is queried first, the CRL source is queried only if no OCSP response could be retrieved (default).
+	 */
+	SEQUENTIAL,
+
+	/**
+	 * The OCSP and the CRL sources are queried at the same time: the first acceptable response is kept and the other lookup is cancelled.
+	 */
+	CONCURRENT,
+
+	/**
+	 * The OCSP source is queried first. If it does not answer within the hedging delay (or answers without any status), the CRL source is queried too: the first acceptable
+	 * response is kept and the other lookup is cancelled.
+	 */
+	HEDGED
+}
@@ -35,10 +35,15 @@ public class TokenValidationExtraInfo implements Serializable{
 
    public void infoTheSigningCertNotFound() {
 
-      validationInfo.add("The certificate used to sign this token is not found or not valid!");
+      add("The certificate used to sign this token is not found or not valid!");
    }
 
-   public void add(String message) {
+   /**
+    * The revocation data of a certificate can be fetched by several threads at once (OCSP and CRL): the messages are added under lock.
+    *
+    * @param message
+    */
+   public synchronized void add(String message) {
 
       validationInfo.add(message);
    }
@@ -48,9 +53,9 @@ public class TokenValidationExtraInfo implements Serializable{
     * 
     * @return
     */
-   public List<String> getValidationInfo() {
+   public synchronized List<String> getValidationInfo() {
 
-      return Collections.unmodifiableList(validationInfo);
+      return Collections.unmodifiableList(new ArrayList<String>(validationInfo));
    }
 
 }
@@ -42,6 +42,19 @@ public interface ValidationContext {
 
 	void setExecutorService(ExecutorService executorService);
 
+	/**
+	 * @return the maximum number of tasks of this validation running at the same time, 0 means no limit
+	 */
+	int getMaxConcurrentTasks();
+
+	/**
+	 * This method allows to limit the number of tasks of this validation running at the same time. It is useful when the {@code ExecutorService} is shared between several
+	 * validations.
+	 *
+	 * @param maxConcurrentTasks the maximum number of running tasks, 0 means no limit
+	 */
+	void setMaxConcurrentTasks(final int maxConcurrentTasks);
+
 	public Date getCurrentTime();
 
 	/**
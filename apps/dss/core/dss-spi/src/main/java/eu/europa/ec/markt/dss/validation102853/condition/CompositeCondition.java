@@ -21,6 +21,7 @@
 package eu.europa.ec.markt.dss.validation102853.condition;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import eu.europa.ec.markt.dss.validation102853.CertificateToken;
@@ -39,6 +40,17 @@ public class CompositeCondition extends Condition {
      */
     protected List<Condition> children;
 
+    /**
+     * @return the child conditions (never null)
+     */
+    public List<Condition> getChildren() {
+
+        if (children == null) {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList(children);
+    }
+
     /**
      * This method adds a child condition. This allows to handle embedded conditions.
      *
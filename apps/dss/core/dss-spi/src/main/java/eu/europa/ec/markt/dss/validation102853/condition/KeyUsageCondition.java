@@ -87,6 +87,14 @@ public class KeyUsageCondition extends Condition {
         return bit;
     }
 
+    /**
+     * @return the expected value of the bit
+     */
+    public boolean getValue() {
+
+        return value;
+    }
+
     /**
      * Checks the condition for the given certificate.
      *
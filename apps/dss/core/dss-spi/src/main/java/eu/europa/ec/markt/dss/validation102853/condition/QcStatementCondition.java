@@ -48,6 +48,14 @@ public class QcStatementCondition extends Condition {
 		this.qcStatementId = qcStatementId;
 	}
 
+	/**
+	 * @return the OID of the QcStatement
+	 */
+	public String getQcStatementId() {
+
+		return qcStatementId;
+	}
+
 	/**
 	 * The default constructor for QcStatementCondition.
 	 *
@@ -22,6 +22,7 @@ package eu.europa.ec.markt.dss.validation102853.condition;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
@@ -314,6 +315,14 @@ public class ServiceInfo implements Serializable {
 		this.type = trim(type);
 	}
 
+	/**
+	 * @return the conditions of each qualifier (read only)
+	 */
+	public Map<String, List<Condition>> getQualifiersAndConditions() {
+
+		return Collections.unmodifiableMap(qualifiersAndConditions);
+	}
+
 	public Date getExpiredCertsRevocationInfo() {
 
 		return expiredCertsRevocationInfo;
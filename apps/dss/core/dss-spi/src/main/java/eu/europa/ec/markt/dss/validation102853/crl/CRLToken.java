@@ -86,20 +86,19 @@ public class CRLToken extends RevocationToken {
 		if (crlValidity == null) {
 			throw new DSSNullException(CRLValidity.class);
 		}
-		if (crlValidity.x509CRL == null) {
+		if (crlValidity.x509CRL == null && crlValidity.compactCRL == null) {
 			throw new DSSNullException(X509CRL.class);
 		}
 	}
 
 	private void setDefaultValues() {
 
-		final X509CRL x509crl = crlValidity.x509CRL;
-		final String sigAlgOID = x509crl.getSigAlgOID();
+		final String sigAlgOID = crlValidity.getSigAlgOID();
 		final SignatureAlgorithm signatureAlgorithm = SignatureAlgorithm.forOID(sigAlgOID);
 		this.algorithmUsedToSignToken = signatureAlgorithm;
-		this.issuingTime = x509crl.getThisUpdate();
-		this.nextUpdate = x509crl.getNextUpdate();
-		issuerX500Principal = x509crl.getIssuerX500Principal();
+		this.issuingTime = crlValidity.getThisUpdate();
+		this.nextUpdate = crlValidity.getNextUpdate();
+		issuerX500Principal = crlValidity.getIssuerX500Principal();
 		this.extraInfo = new TokenValidationExtraInfo();
 
 		issuerToken = crlValidity.issuerToken;
@@ -123,8 +122,19 @@ public class CRLToken extends RevocationToken {
 		}
 
 		final BigInteger serialNumber = certificateToken.getSerialNumber();
-		final X509CRL x509crl = crlValidity.x509CRL;
-		final X509CRLEntry crlEntry = x509crl.getRevokedCertificate(serialNumber);
+		final CompactCRL compactCRL = crlValidity.compactCRL;
+		if (compactCRL != null) {
+
+			final int index = compactCRL.indexOf(serialNumber);
+			status = index < 0;
+			if (!status) {
+
+				revocationDate = compactCRL.getRevocationDate(index);
+				reason = compactCRL.getRevocationReason(index);
+			}
+			return;
+		}
+		final X509CRLEntry crlEntry = crlValidity.getRevokedCertificate(serialNumber);
 		status = null == crlEntry;
 		if (!status) {
 
@@ -136,11 +146,11 @@ public class CRLToken extends RevocationToken {
 	}
 
 	/**
-	 * @return the x509crl
+	 * @return the x509crl, in the case of a large CRL kept in a compact form it is built from the kept encoded CRL
 	 */
 	public X509CRL getX509crl() {
 
-		return crlValidity.x509CRL;
+		return crlValidity.getX509CRL();
 	}
 
 	/**
@@ -196,12 +206,19 @@ public class CRLToken extends RevocationToken {
 			  .getDSSIdAsString()) + "]";
 	}
 
+	/**
+	 * In the case of a large CRL kept in a compact form the stored encoding is returned without building the {@code X509CRL}.
+	 */
 	@Override
 	public byte[] getEncoded() {
 
+		final CompactCRL compactCRL = crlValidity.compactCRL;
+		if (compactCRL != null) {
+			return compactCRL.getEncoded();
+		}
 		try {
 
-			return crlValidity.x509CRL.getEncoded();
+			return crlValidity.getX509CRL().getEncoded();
 		} catch (CRLException e) {
 			throw new DSSException("CRL encoding error: " + e.getMessage(), e);
 		}
@@ -225,7 +242,7 @@ public class CRLToken extends RevocationToken {
 	 */
 	public Date getThisUpdate() {
 
-		return crlValidity.x509CRL.getThisUpdate();
+		return crlValidity.getThisUpdate();
 	}
 
 	@Override
@@ -236,7 +253,7 @@ public class CRLToken extends RevocationToken {
 			StringBuilder out = new StringBuilder();
 			out.append(indentStr).append("CRLToken[\n");
 			indentStr += "\t";
-			out.append(indentStr).append("Version: ").append(crlValidity.x509CRL.getVersion()).append('\n');
+			out.append(indentStr).append("Version: ").append(crlValidity.getVersion()).append('\n');
 			out.append(indentStr).append("Issuing time: ").append(issuingTime == null ? "?" : DSSUtils.formatInternal(issuingTime)).append('\n');
 			out.append(indentStr).append("Signature algorithm: ").append(algorithmUsedToSignToken == null ? "?" : algorithmUsedToSignToken).append('\n');
 			out.append(indentStr).append("Status: ").append(getStatus()).append('\n');
@@ -19,7 +19,15 @@
  */
 package eu.europa.ec.markt.dss.validation102853.crl;
 
+import java.math.BigInteger;
 import java.security.cert.X509CRL;
+import java.security.cert.X509CRLEntry;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import javax.security.auth.x500.X500Principal;
 
 import eu.europa.ec.markt.dss.validation102853.CertificateToken;
 
@@ -34,6 +42,11 @@ public class CRLValidity {
 
 	X509CRL x509CRL = null;
 
+	/**
+	 * The compact form of the CRL produced by the {@code StreamingCRLParser}, used instead of {@code x509CRL} for large CRLs.
+	 */
+	CompactCRL compactCRL = null;
+
 	boolean issuerX509PrincipalMatches = false;
 	boolean signatureIntact = false;
 	boolean crlSignKeyUsage = false;
@@ -43,6 +56,94 @@ public class CRLValidity {
 
 	String signatureInvalidityReason = "";
 
+	/**
+	 * The index of the revoked certificates by serial number, built only for CRLs which are kept in a cache.
+	 */
+	private volatile Map<BigInteger, X509CRLEntry> revokedCertificateIndex = null;
+
+	/**
+	 * This method builds the index of the revoked certificates by serial number. It is worth to be called when the same CRL is used to check many certificates (cache). The
+	 * index is not built for the indirect CRLs (entries with certificate issuer).
+	 */
+	public void indexRevokedCertificates() {
+
+		if (x509CRL == null) {
+			return;
+		}
+		final Map<BigInteger, X509CRLEntry> index = new HashMap<BigInteger, X509CRLEntry>();
+		final Set<? extends X509CRLEntry> revokedCertificates = x509CRL.getRevokedCertificates();
+		if (revokedCertificates != null) {
+
+			for (final X509CRLEntry crlEntry : revokedCertificates) {
+
+				if (crlEntry.getCertificateIssuer() != null) {
+					return;
+				}
+				index.put(crlEntry.getSerialNumber(), crlEntry);
+			}
+		}
+		revokedCertificateIndex = index;
+	}
+
+	/**
+	 * Gets the CRL entry corresponding to the given serial number. The index is used if it was built.
+	 *
+	 * @param serialNumber the serial number of the certificate to check
+	 * @return {@code X509CRLEntry} or null if the certificate is not revoked
+	 */
+	X509CRLEntry getRevokedCertificate(final BigInteger serialNumber) {
+
+		final Map<BigInteger, X509CRLEntry> index = revokedCertificateIndex;
+		if (index != null) {
+			return index.get(serialNumber);
+		}
+		return x509CRL.getRevokedCertificate(serialNumber);
+	}
+
+	/**
+	 * @return the {@code X509CRL}, in the case of a {@code CompactCRL} it is built from the stored encoded CRL
+	 */
+	public X509CRL getX509CRL() {
+
+		if (x509CRL != null) {
+			return x509CRL;
+		}
+		return compactCRL.toX509CRL();
+	}
+
+	/**
+	 * @return the {@code CompactCRL} or null if the CRL was parsed as {@code X509CRL}
+	 */
+	public CompactCRL getCompactCRL() {
+
+		return compactCRL;
+	}
+
+	public Date getThisUpdate() {
+
+		return x509CRL != null ? x509CRL.getThisUpdate() : compactCRL.thisUpdate;
+	}
+
+	public Date getNextUpdate() {
+
+		return x509CRL != null ? x509CRL.getNextUpdate() : compactCRL.nextUpdate;
+	}
+
+	public X500Principal getIssuerX500Principal() {
+
+		return x509CRL != null ? x509CRL.getIssuerX500Principal() : compactCRL.issuerX500Principal;
+	}
+
+	public String getSigAlgOID() {
+
+		return x509CRL != null ? x509CRL.getSigAlgOID() : compactCRL.sigAlgOID;
+	}
+
+	public int getVersion() {
+
+		return x509CRL != null ? x509CRL.getVersion() : compactCRL.version;
+	}
+
 	/**
 	 * This method indicates if the CRL is valid. To be valid the CRL must full fill the following requirements:<p/>
 	 * - its signature must be valid,
@@ -60,6 +161,7 @@ public class CRLValidity {
 	public String toString() {
 		return "CRLValidity{" +
 			  "x509CRL=" + x509CRL +
+			  ", compactCRL=" + compactCRL +
 			  ", issuerX509PrincipalMatches=" + issuerX509PrincipalMatches +
 			  ", signatureIntact=" + signatureIntact +
 			  ", crlSignKeyUsage=" + crlSignKeyUsage +
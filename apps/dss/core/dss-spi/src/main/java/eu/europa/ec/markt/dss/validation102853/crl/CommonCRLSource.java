@@ -177,7 +177,9 @@ public abstract class CommonCRLSource implements CRLSource {
 
 			crlValidity.issuerX509PrincipalMatches = true;
 		}
-		checkCriticalExtensions(x509CRL, dpUrlStringList, crlValidity);
+		final Set<String> criticalExtensionOIDs = x509CRL.getCriticalExtensionOIDs();
+		final byte[] issuingDistributionPoint = x509CRL.getExtensionValue(PKIXExtensions.IssuingDistributionPoint_Id.toString());
+		checkCriticalExtensions(criticalExtensionOIDs, issuingDistributionPoint, dpUrlStringList, crlValidity);
 		checkSignatureValue(x509CRL, issuerToken, crlValidity);
 		if (crlValidity.signatureIntact) {
 
@@ -186,6 +188,38 @@ public abstract class CommonCRLSource implements CRLSource {
 		return crlValidity;
 	}
 
+	/**
+	 * This method carries out the same verifications as {@link #isValidCRL(X509CRL, CertificateToken, List)} for a CRL parsed by the {@code StreamingCRLParser}. The signature
+	 * was already verified during the parsing with the public key of the {@code issuerToken}.
+	 *
+	 * @param compactCRL      {@code CompactCRL} to be verified (cannot be null)
+	 * @param issuerToken     {@code CertificateToken} whose public key was used to parse the {@code CompactCRL} (cannot be null)
+	 * @param dpUrlStringList {@code List} of {@code String} representation of the DP's url
+	 * @return {@code CRLValidity}
+	 */
+	protected CRLValidity isValidCRL(final CompactCRL compactCRL, final CertificateToken issuerToken, final List<String> dpUrlStringList) {
+
+		final CRLValidity crlValidity = new CRLValidity();
+		crlValidity.compactCRL = compactCRL;
+
+		final X500Principal compactCRLIssuerX500Principal = DSSUtils.getX500Principal(compactCRL.issuerX500Principal);
+		final X500Principal issuerTokenSubjectX500Principal = DSSUtils.getX500Principal(issuerToken.getSubjectX500Principal());
+		if (compactCRLIssuerX500Principal.equals(issuerTokenSubjectX500Principal)) {
+
+			crlValidity.issuerX509PrincipalMatches = true;
+		}
+		checkCriticalExtensions(compactCRL.criticalExtensionOIDs, compactCRL.issuingDistributionPoint, dpUrlStringList, crlValidity);
+		if (compactCRL.signatureIntact) {
+
+			crlValidity.signatureIntact = true;
+			crlValidity.issuerToken = issuerToken;
+			crlValidity.crlSignKeyUsage = issuerToken.hasCRLSignKeyUsage();
+		} else {
+			crlValidity.signatureInvalidityReason = compactCRL.signatureInvalidityReason;
+		}
+		return crlValidity;
+	}
+
 	private void checkSignatureValue(final X509CRL x509CRL, final CertificateToken issuerToken, final CRLValidity crlValidity) {
 
 		try {
@@ -206,9 +240,9 @@ public abstract class CommonCRLSource implements CRLSource {
 		}
 	}
 
-	private void checkCriticalExtensions(final X509CRL x509CRL, final List<String> dpUrlStringList, final CRLValidity crlValidity) {
+	private void checkCriticalExtensions(final Set<String> criticalExtensionOIDs, final byte[] extensionValue, final List<String> dpUrlStringList,
+	                                     final CRLValidity crlValidity) {
 
-		final Set<String> criticalExtensionOIDs = x509CRL.getCriticalExtensionOIDs();
 		if (criticalExtensionOIDs == null || criticalExtensionOIDs.size() == 0) {
 			crlValidity.unknownCriticalExtension = false;
 			return;
@@ -218,7 +252,6 @@ public abstract class CommonCRLSource implements CRLSource {
 
 			if (issuingDistributionPointOid.equals(criticalExtensionOID)) {
 
-				final byte[] extensionValue = x509CRL.getExtensionValue(issuingDistributionPointOid);
 				final ASN1OctetString asn1OctetStringExtensionValue = ASN1OctetString.getInstance(extensionValue);
 				final IssuingDistributionPoint issuingDistributionPoint = IssuingDistributionPoint.getInstance(asn1OctetStringExtensionValue.getOctets());
 				final boolean onlyAttributeCerts = issuingDistributionPoint.onlyContainsAttributeCerts();
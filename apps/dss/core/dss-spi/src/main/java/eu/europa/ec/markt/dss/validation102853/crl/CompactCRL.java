@@ -0,0 +1,278 @@
+/*
+ * SD-DSS - Digital Signature Services
+ *
+ * Copyright (C) 2015 ARHS SpikeSeed S.A. (rue Nicolas Bové 2B, L-1253 Luxembourg) http://www.arhs-spikeseed.com
+ *
+ * Developed by: 2015 ARHS SpikeSeed S.A. (rue Nicolas Bové 2B, L-1253 Luxembourg) http://www.arhs-spikeseed.com
+ *
+ * This file is part of the "https://github.com/arhs/sd-dss" project.
+ *
+ * "DSS - Digital Signature Services" is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU Lesser General Public License as published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * DSS is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * "SD-DSS - Digital Signature Services".  If not, see <http://www.gnu.org/licenses/>.
+ */
+package eu.europa.ec.markt.dss.validation102853.crl;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.security.cert.X509CRL;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Set;
+
+import javax.security.auth.x500.X500Principal;
+
+import org.bouncycastle.asn1.x509.CRLReason;
+
+import eu.europa.ec.markt.dss.DSSUtils;
+import eu.europa.ec.markt.dss.DigestAlgorithm;
+import eu.europa.ec.markt.dss.exception.DSSException;
+
+/**
+ * This class is a compact representation of a CRL produced by the {@code StreamingCRLParser}. Only the information needed to check the revocation status is kept: the revoked
+ * serial numbers are stored in a sorted primitive structure together with the revocation dates and reasons. The encoded CRL is not kept in memory: it is stored as is in a
+ * temporary file which is deleted when this object is garbage collected. It is read back only when it is needed (for example to include the CRL in a signature).
+ */
+public class CompactCRL {
+
+	/**
+	 * No reason code extension for the entry.
+	 */
+	static final byte NO_REASON = -1;
+
+	final int version;
+	final X500Principal issuerX500Principal;
+	final String sigAlgOID;
+	final Date thisUpdate;
+	final Date nextUpdate;
+	final Set<String> criticalExtensionOIDs;
+
+	/**
+	 * DER encoded OCTET STRING containing the issuing distribution point extension (as returned by {@code X509CRL#getExtensionValue}) or null
+	 */
+	final byte[] issuingDistributionPoint;
+
+	/**
+	 * Indicates if at least one entry contains the certificate issuer extension (indirect CRL)
+	 */
+	final boolean indirect;
+
+	/**
+	 * The result of the signature verification carried out during the parsing
+	 */
+	final boolean signatureIntact;
+	final String signatureInvalidityReason;
+
+	/**
+	 * SHA-256 digest of the encoded CRL
+	 */
+	final byte[] digest;
+
+	final long encodedLength;
+
+	/**
+	 * The minimal two's complement representation of all serial numbers, sorted by length and value, concatenated.
+	 */
+	private final byte[] serialNumbers;
+
+	/**
+	 * The offset of each serial number in {@code serialNumbers}, the last element is the total length.
+	 */
+	private final int[] serialNumberOffsets;
+
+	private final long[] revocationDates;
+
+	private final byte[] reasons;
+
+	/**
+	 * The temporary file holding the encoded CRL.
+	 */
+	private File encodedFile;
+
+	CompactCRL(final StreamingCRLParser.Result result, final byte[] serialNumbers, final int[] serialNumberOffsets, final long[] revocationDates, final byte[] reasons) {
+
+		this.version = result.version;
+		this.issuerX500Principal = result.issuerX500Principal;
+		this.sigAlgOID = result.sigAlgOID;
+		this.thisUpdate = result.thisUpdate;
+		this.nextUpdate = result.nextUpdate;
+		this.criticalExtensionOIDs = Collections.unmodifiableSet(result.criticalExtensionOIDs);
+		this.issuingDistributionPoint = result.issuingDistributionPoint;
+		this.indirect = result.indirect;
+		this.signatureIntact = result.signatureIntact;
+		this.signatureInvalidityReason = result.signatureInvalidityReason;
+		this.digest = result.digest;
+		this.encodedLength = result.encodedLength;
+		this.serialNumbers = serialNumbers;
+		this.serialNumberOffsets = serialNumberOffsets;
+		this.revocationDates = revocationDates;
+		this.reasons = reasons;
+	}
+
+	/**
+	 * This method stores the encoded CRL which was parsed in a temporary file of the given folder. Its digest must match the digest of the parsed CRL.
+	 *
+	 * @param encoded the DER encoded CRL
+	 * @param folder  the folder of the temporary file, null for the default temporary directory
+	 * @throws DSSException if the given encoding is not the one which was parsed or if it cannot be stored
+	 */
+	public void setEncoded(final byte[] encoded, final File folder) throws DSSException {
+
+		if (!Arrays.equals(digest, DSSUtils.digest(DigestAlgorithm.SHA256, encoded))) {
+			throw new DSSException("The encoded CRL does not match the parsed one: " + issuerX500Principal);
+		}
+		OutputStream outputStream = null;
+		File file = null;
+		try {
+
+			file = File.createTempFile("dss-crl-", ".crl", folder);
+			outputStream = new FileOutputStream(file);
+			outputStream.write(encoded);
+			outputStream.close();
+			outputStream = null;
+			deleteEncodedFile();
+			encodedFile = file;
+		} catch (IOException e) {
+
+			DSSUtils.closeQuietly(outputStream);
+			if (file != null) {
+				file.delete();
+			}
+			throw new DSSException("The encoded CRL cannot be stored: " + issuerX500Principal, e);
+		}
+	}
+
+	/**
+	 * This method reads the stored encoded CRL. Its digest is checked against the digest of the parsed CRL.
+	 *
+	 * @return the DER encoded CRL
+	 * @throws DSSException if the encoded CRL was not stored or was modified
+	 */
+	public byte[] getEncoded() throws DSSException {
+
+		final File file = encodedFile;
+		if (file == null) {
+			throw new DSSException("The encoded CRL was not kept: " + issuerX500Principal);
+		}
+		final byte[] encoded = DSSUtils.toByteArray(file);
+		if (!Arrays.equals(digest, DSSUtils.digest(DigestAlgorithm.SHA256, encoded))) {
+			throw new DSSException("The stored encoded CRL was modified: " + file.getAbsolutePath());
+		}
+		return encoded;
+	}
+
+	private void deleteEncodedFile() {
+
+		if (encodedFile != null && !encodedFile.delete()) {
+			encodedFile.deleteOnExit();
+		}
+	}
+
+	@Override
+	protected void finalize() throws Throwable {
+
+		try {
+			deleteEncodedFile();
+		} finally {
+			super.finalize();
+		}
+	}
+
+	/**
+	 * @return the number of revoked certificates
+	 */
+	public int getNumberOfEntries() {
+
+		return revocationDates.length;
+	}
+
+	/**
+	 * @return the approximate memory size of this object (the encoded CRL is not held in memory)
+	 */
+	public long getSize() {
+
+		return serialNumbers.length + 4L * serialNumberOffsets.length + 8L * revocationDates.length + reasons.length;
+	}
+
+	/**
+	 * Looks for the given serial number using a binary search.
+	 *
+	 * @param serialNumber the serial number to find
+	 * @return the index of the entry or a negative value if the serial number is not revoked
+	 */
+	int indexOf(final BigInteger serialNumber) {
+
+		final byte[] key = serialNumber.toByteArray();
+		int low = 0;
+		int high = revocationDates.length - 1;
+		while (low <= high) {
+
+			final int middle = (low + high) >>> 1;
+			final int comparison = compare(middle, key);
+			if (comparison < 0) {
+				low = middle + 1;
+			} else if (comparison > 0) {
+				high = middle - 1;
+			} else {
+				return middle;
+			}
+		}
+		return -1;
+	}
+
+	private int compare(final int index, final byte[] key) {
+
+		final int offset = serialNumberOffsets[index];
+		final int length = serialNumberOffsets[index + 1] - offset;
+		return StreamingCRLParser.compareSerialNumbers(serialNumbers, offset, length, key, 0, key.length);
+	}
+
+	Date getRevocationDate(final int index) {
+
+		return new Date(revocationDates[index]);
+	}
+
+	/**
+	 * @param index the index of the entry
+	 * @return the revocation reason in the same form as {@code DSSRevocationUtils#getRevocationReason} or null
+	 */
+	String getRevocationReason(final int index) {
+
+		final byte reason = reasons[index];
+		if (reason == NO_REASON) {
+			return null;
+		}
+		return CRLReason.lookup(reason).toString();
+	}
+
+	@Override
+	public String toString() {
+		return "CompactCRL{" +
+			  "issuerX500Principal=" + issuerX500Principal +
+			  ", thisUpdate=" + thisUpdate +
+			  ", nextUpdate=" + nextUpdate +
+			  ", numberOfEntries=" + getNumberOfEntries() +
+			  '}';
+	}
+
+	/**
+	 * This method builds the {@code X509CRL} from the stored encoded CRL. Use {@link #getEncoded()} when only the encoding is needed.
+	 *
+	 * @return {@code X509CRL}
+	 * @throws DSSException if the encoded CRL was not kept
+	 */
+	X509CRL toX509CRL() throws DSSException {
+
+		return DSSUtils.loadCRL(getEncoded());
+	}
+}
@@ -0,0 +1,587 @@
+/*
+ * SD-DSS - Digital Signature Services
+ *
+ * Copyright (C) 2015 ARHS SpikeSeed S.A. (rue Nicolas Bové 2B, L-1253 Luxembourg) http://www.arhs-spikeseed.com
+ *
+ * Developed by: 2015 ARHS SpikeSeed S.A. (rue Nicolas Bové 2B, L-1253 Luxembourg) http://www.arhs-spikeseed.com
+ *
+ * This file is part of the "https://github.com/arhs/sd-dss" project.
+ *
+ * "DSS - Digital Signature Services" is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU Lesser General Public License as published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * DSS is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * "SD-DSS - Digital Signature Services".  If not, see <http://www.gnu.org/licenses/>.
+ */
+package eu.europa.ec.markt.dss.validation102853.crl;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.SignatureException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.TimeZone;
+
+import javax.security.auth.x500.X500Principal;
+
+import org.bouncycastle.asn1.ASN1Encodable;
+import org.bouncycastle.asn1.ASN1Enumerated;
+import org.bouncycastle.asn1.ASN1ObjectIdentifier;
+import org.bouncycastle.asn1.ASN1Primitive;
+import org.bouncycastle.asn1.x509.AlgorithmIdentifier;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.asn1.x509.Extensions;
+import org.bouncycastle.asn1.x509.Time;
+
+import eu.europa.ec.markt.dss.DSSUtils;
+import eu.europa.ec.markt.dss.DigestAlgorithm;
+import eu.europa.ec.markt.dss.SignatureAlgorithm;
+import eu.europa.ec.markt.dss.exception.DSSException;
+
+/**
+ * This class parses a DER encoded CRL from a stream without building the whole ASN.1 structure in memory. The revoked certificates are read one by one and stored in a
+ * {@code CompactCRL}. The signature of the CRL is verified during the parsing: the bytes of the TBSCertList are passed to the {@code Signature} as they are read.
+ * <p/>
+ * The parser is not thread-safe, a new instance must be used for each CRL.
+ */
+public class StreamingCRLParser {
+
+	private static final int TAG_BOOLEAN = 0x01;
+	private static final int TAG_INTEGER = 0x02;
+	private static final int TAG_BIT_STRING = 0x03;
+	private static final int TAG_UTC_TIME = 0x17;
+	private static final int TAG_GENERALIZED_TIME = 0x18;
+	private static final int TAG_SEQUENCE = 0x30;
+	private static final int TAG_CRL_EXTENSIONS = 0xA0;
+
+	/**
+	 * The maximal size of an element which is read entirely in memory (issuer, extensions, ...).
+	 */
+	private static final int MAX_ELEMENT_LENGTH = 1024 * 1024;
+
+	private final PublicKey publicKey;
+
+	private InputStream inputStream;
+
+	private long position;
+
+	private MessageDigest messageDigest;
+
+	/**
+	 * The boundaries of the TBSCertList
+	 */
+	private long tbsStart = -1;
+	private long tbsEnd = -1;
+
+	/**
+	 * The bytes of the TBSCertList read before the signature algorithm is known
+	 */
+	private ByteArrayOutputStream tbsBuffer;
+
+	private Signature signature;
+
+	private final GregorianCalendar calendar = new GregorianCalendar(TimeZone.getTimeZone("UTC"));
+
+	private final Result result = new Result();
+
+	private byte[] serialNumbers = new byte[4096];
+	private int serialNumbersLength;
+	private int[] serialNumberOffsets = new int[256];
+	private long[] revocationDates = new long[256];
+	private byte[] reasons = new byte[256];
+	private int numberOfEntries;
+
+	/**
+	 * Reused by {@code read()} to pass a single byte to the digest and the signature
+	 */
+	private final byte[] singleByte = new byte[1];
+
+	/**
+	 * The default constructor for StreamingCRLParser.
+	 *
+	 * @param publicKey the public key of the CRL issuer used to verify the signature
+	 */
+	public StreamingCRLParser(final PublicKey publicKey) {
+
+		this.publicKey = publicKey;
+	}
+
+	/**
+	 * This method parses the CRL. The given stream is not closed.
+	 *
+	 * @param inputStream the DER encoded CRL
+	 * @return {@code CompactCRL}
+	 * @throws DSSException if the CRL cannot be parsed
+	 */
+	public CompactCRL parse(final InputStream inputStream) throws DSSException {
+
+		this.inputStream = new BufferedInputStream(inputStream);
+		try {
+
+			messageDigest = DSSUtils.getMessageDigest(DigestAlgorithm.SHA256);
+			expectTag(TAG_SEQUENCE);
+			final long crlEnd = readLength() + position;
+
+			tbsStart = position;
+			tbsEnd = Long.MAX_VALUE;
+			tbsBuffer = new ByteArrayOutputStream();
+			expectTag(TAG_SEQUENCE);
+			tbsEnd = readLength() + position;
+			parseTBSCertList();
+
+			final byte[] outerAlgorithm = readElement(readTag());
+			final ASN1ObjectIdentifier algorithmOid = AlgorithmIdentifier.getInstance(ASN1Primitive.fromByteArray(outerAlgorithm)).getAlgorithm();
+			if (!algorithmOid.getId().equals(result.sigAlgOID)) {
+				setSignatureInvalid("The signature algorithm does not match the algorithm of the TBSCertList: " + algorithmOid.getId());
+			}
+			expectTag(TAG_BIT_STRING);
+			final byte[] signatureValue = readContent(readLength());
+			if (position != crlEnd) {
+				throw new DSSException("Unexpected content at the end of the CRL.");
+			}
+			verifySignature(signatureValue);
+
+			result.digest = messageDigest.digest();
+			result.encodedLength = position;
+			return buildCompactCRL();
+		} catch (NoSuchAlgorithmException e) {
+			throw new DSSException(e);
+		} catch (IOException e) {
+			throw new DSSException("Unable to parse the CRL: " + e.getMessage(), e);
+		}
+	}
+
+	private void parseTBSCertList() throws IOException {
+
+		int tag = readTag();
+		if (tag == TAG_INTEGER) {
+
+			final byte[] version = readContent(readLength());
+			result.version = version[version.length - 1] + 1;
+			tag = readTag();
+		} else {
+			result.version = 1;
+		}
+		final byte[] innerAlgorithm = readElement(tag);
+		result.sigAlgOID = AlgorithmIdentifier.getInstance(ASN1Primitive.fromByteArray(innerAlgorithm)).getAlgorithm().getId();
+		initSignature();
+
+		result.issuerX500Principal = new X500Principal(readElement(readTag()));
+		result.thisUpdate = new Date(readTime(readTag()));
+		if (position == tbsEnd) {
+			return;
+		}
+		tag = readTag();
+		if (tag == TAG_UTC_TIME || tag == TAG_GENERALIZED_TIME) {
+
+			result.nextUpdate = new Date(readTime(tag));
+			if (position == tbsEnd) {
+				return;
+			}
+			tag = readTag();
+		}
+		if (tag == TAG_SEQUENCE) {
+
+			final long revokedCertificatesEnd = readLength() + position;
+			while (position < revokedCertificatesEnd) {
+				parseRevokedCertificate();
+			}
+			if (position == tbsEnd) {
+				return;
+			}
+			tag = readTag();
+		}
+		if (tag == TAG_CRL_EXTENSIONS) {
+
+			readLength();
+			parseCRLExtensions(readElement(readTag()));
+		}
+		if (position != tbsEnd) {
+			throw new DSSException("Unexpected content in the TBSCertList.");
+		}
+	}
+
+	private void parseRevokedCertificate() throws IOException {
+
+		expectTag(TAG_SEQUENCE);
+		final long entryEnd = readLength() + position;
+
+		expectTag(TAG_INTEGER);
+		final int serialNumberLength = (int) readLength();
+		ensureCapacity(serialNumberLength);
+		readFully(serialNumbers, serialNumbersLength, serialNumberLength);
+		serialNumberOffsets[numberOfEntries] = serialNumbersLength;
+		serialNumbersLength += canonicalize(serialNumbers, serialNumbersLength, serialNumberLength);
+
+		revocationDates[numberOfEntries] = readTime(readTag());
+		reasons[numberOfEntries] = CompactCRL.NO_REASON;
+		if (position < entryEnd) {
+			parseEntryExtensions(readElement(readTag()));
+		}
+		if (position != entryEnd) {
+			throw new DSSException("Unexpected content in the revoked certificate entry.");
+		}
+		numberOfEntries++;
+	}
+
+	private void parseEntryExtensions(final byte[] encoded) throws IOException {
+
+		final Extensions extensions = Extensions.getInstance(ASN1Primitive.fromByteArray(encoded));
+		if (extensions.getExtension(Extension.certificateIssuer) != null) {
+			result.indirect = true;
+		}
+		final Extension reasonCode = extensions.getExtension(Extension.reasonCode);
+		if (reasonCode != null) {
+
+			final ASN1Enumerated enumerated = ASN1Enumerated.getInstance(reasonCode.getParsedValue());
+			reasons[numberOfEntries] = (byte) enumerated.getValue().intValue();
+		}
+	}
+
+	private void parseCRLExtensions(final byte[] encoded) throws IOException {
+
+		final Extensions extensions = Extensions.getInstance(ASN1Primitive.fromByteArray(encoded));
+		for (final ASN1ObjectIdentifier oid : extensions.getCriticalExtensionOIDs()) {
+			result.criticalExtensionOIDs.add(oid.getId());
+		}
+		final Extension issuingDistributionPoint = extensions.getExtension(Extension.issuingDistributionPoint);
+		if (issuingDistributionPoint != null) {
+			result.issuingDistributionPoint = issuingDistributionPoint.getExtnValue().getEncoded();
+		}
+	}
+
+	private void initSignature() {
+
+		try {
+
+			final SignatureAlgorithm signatureAlgorithm = SignatureAlgorithm.forOID(result.sigAlgOID);
+			signature = Signature.getInstance(signatureAlgorithm.getJCEId());
+			signature.initVerify(publicKey);
+			signature.update(tbsBuffer.toByteArray());
+		} catch (DSSException e) {
+			setSignatureInvalid(e.getClass().getSimpleName() + " - " + e.getMessage());
+		} catch (GeneralSecurityException e) {
+			setSignatureInvalid(e.getClass().getSimpleName() + " - " + e.getMessage());
+		}
+		tbsBuffer = null;
+	}
+
+	private void verifySignature(final byte[] signatureValue) {
+
+		if (signature == null) {
+			return;
+		}
+		try {
+
+			if (signatureValue.length == 0 || signatureValue[0] != 0) {
+				throw new SignatureException("Unsupported number of unused bits in the signature value.");
+			}
+			if (signature.verify(Arrays.copyOfRange(signatureValue, 1, signatureValue.length))) {
+
+				result.signatureIntact = true;
+				result.signatureInvalidityReason = "";
+			} else {
+				setSignatureInvalid("SignatureException - Signature does not match.");
+			}
+		} catch (SignatureException e) {
+			setSignatureInvalid(e.getClass().getSimpleName() + " - " + e.getMessage());
+		}
+	}
+
+	private void setSignatureInvalid(final String reason) {
+
+		signature = null;
+		result.signatureIntact = false;
+		result.signatureInvalidityReason = reason;
+	}
+
+	private CompactCRL buildCompactCRL() {
+
+		final Integer[] order = new Integer[numberOfEntries];
+		for (int ii = 0; ii < numberOfEntries; ii++) {
+			order[ii] = ii;
+		}
+		serialNumberOffsets[numberOfEntries] = serialNumbersLength;
+		Arrays.sort(order, new Comparator<Integer>() {
+
+			@Override
+			public int compare(final Integer first, final Integer second) {
+
+				return compareSerialNumbers(serialNumbers, serialNumberOffsets[first], serialNumberOffsets[first + 1] - serialNumberOffsets[first], serialNumbers,
+					  serialNumberOffsets[second], serialNumberOffsets[second + 1] - serialNumberOffsets[second]);
+			}
+		});
+		final byte[] sortedSerialNumbers = new byte[serialNumbersLength];
+		final int[] sortedOffsets = new int[numberOfEntries + 1];
+		final long[] sortedDates = new long[numberOfEntries];
+		final byte[] sortedReasons = new byte[numberOfEntries];
+		int offset = 0;
+		for (int ii = 0; ii < numberOfEntries; ii++) {
+
+			final int index = order[ii];
+			final int length = serialNumberOffsets[index + 1] - serialNumberOffsets[index];
+			System.arraycopy(serialNumbers, serialNumberOffsets[index], sortedSerialNumbers, offset, length);
+			sortedOffsets[ii] = offset;
+			offset += length;
+			sortedDates[ii] = revocationDates[index];
+			sortedReasons[ii] = reasons[index];
+		}
+		sortedOffsets[numberOfEntries] = offset;
+		return new CompactCRL(result, sortedSerialNumbers, sortedOffsets, sortedDates, sortedReasons);
+	}
+
+	/**
+	 * Compares two serial numbers given in their minimal two's complement representation (see {@code canonicalize}). The serial numbers are ordered by length and then by
+	 * value of the bytes. This order is only used to find the serial numbers.
+	 */
+	static int compareSerialNumbers(final byte[] first, final int firstOffset, final int firstLength, final byte[] second, final int secondOffset, final int secondLength) {
+
+		if (firstLength != secondLength) {
+			return firstLength < secondLength ? -1 : 1;
+		}
+		for (int ii = 0; ii < firstLength; ii++) {
+
+			final int firstByte = first[firstOffset + ii] & 0xFF;
+			final int secondByte = second[secondOffset + ii] & 0xFF;
+			if (firstByte != secondByte) {
+				return firstByte < secondByte ? -1 : 1;
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Removes the redundant leading bytes (0x00 or 0xFF) of a serial number encoded non-minimally, to get the same representation as {@code BigInteger#toByteArray}. The
+	 * serial number is moved in place.
+	 *
+	 * @return the length of the canonical representation
+	 */
+	static int canonicalize(final byte[] buffer, final int offset, final int length) {
+
+		if (length == 0) {
+			throw new DSSException("Empty serial number.");
+		}
+		int start = offset;
+		final int end = offset + length;
+		while (start + 1 < end && ((buffer[start] == 0 && buffer[start + 1] >= 0) || (buffer[start] == -1 && buffer[start + 1] < 0))) {
+			start++;
+		}
+		if (start != offset) {
+			System.arraycopy(buffer, start, buffer, offset, end - start);
+		}
+		return end - start;
+	}
+
+	private void ensureCapacity(final int serialNumberLength) {
+
+		if (serialNumbersLength + serialNumberLength > serialNumbers.length) {
+			serialNumbers = Arrays.copyOf(serialNumbers, Math.max(serialNumbers.length * 2, serialNumbersLength + serialNumberLength));
+		}
+		if (numberOfEntries + 1 >= serialNumberOffsets.length) {
+
+			final int newLength = serialNumberOffsets.length * 2;
+			serialNumberOffsets = Arrays.copyOf(serialNumberOffsets, newLength);
+			revocationDates = Arrays.copyOf(revocationDates, newLength);
+			reasons = Arrays.copyOf(reasons, newLength);
+		}
+	}
+
+	/**
+	 * Reads a UTCTime or a GeneralizedTime. The usual forms (with seconds and 'Z') are decoded directly, the others are decoded by BouncyCastle.
+	 */
+	private long readTime(final int tag) throws IOException {
+
+		if (tag != TAG_UTC_TIME && tag != TAG_GENERALIZED_TIME) {
+			throw new DSSException("Time expected, found tag: " + tag);
+		}
+		final byte[] content = readContent(readLength());
+		if (tag == TAG_UTC_TIME && content.length == 13 && content[12] == 'Z') {
+
+			final int year = digits(content, 0);
+			return toMillis(year < 50 ? 2000 + year : 1900 + year, content, 2);
+		}
+		if (tag == TAG_GENERALIZED_TIME && content.length == 15 && content[14] == 'Z') {
+			return toMillis(digits(content, 0) * 100 + digits(content, 2), content, 4);
+		}
+		final byte[] encoded = new byte[content.length + 2];
+		encoded[0] = (byte) tag;
+		encoded[1] = (byte) content.length;
+		System.arraycopy(content, 0, encoded, 2, content.length);
+		final ASN1Encodable time = ASN1Primitive.fromByteArray(encoded);
+		return Time.getInstance(time).getDate().getTime();
+	}
+
+	private long toMillis(final int year, final byte[] content, final int offset) {
+
+		calendar.clear();
+		calendar.set(year, digits(content, offset) - 1, digits(content, offset + 2), digits(content, offset + 4), digits(content, offset + 6), digits(content, offset + 8));
+		return calendar.getTimeInMillis();
+	}
+
+	private static int digits(final byte[] content, final int offset) {
+
+		final int high = content[offset] - '0';
+		final int low = content[offset + 1] - '0';
+		if (high < 0 || high > 9 || low < 0 || low > 9) {
+			throw new DSSException("Invalid time encoding.");
+		}
+		return high * 10 + low;
+	}
+
+	private void expectTag(final int expected) throws IOException {
+
+		final int tag = readTag();
+		if (tag != expected) {
+			throw new DSSException("Unexpected tag: " + tag + " instead of: " + expected);
+		}
+	}
+
+	private int readTag() throws IOException {
+
+		final int tag = read();
+		if ((tag & 0x1F) == 0x1F) {
+			throw new DSSException("High tag numbers are not supported.");
+		}
+		return tag;
+	}
+
+	private long readLength() throws IOException {
+
+		final int first = read();
+		if (first < 0x80) {
+			return first;
+		}
+		if (first == 0x80) {
+			throw new DSSException("Indefinite length is not allowed in DER.");
+		}
+		final int numberOfBytes = first & 0x7F;
+		if (numberOfBytes > 7) {
+			throw new DSSException("Length too long: " + numberOfBytes + " bytes.");
+		}
+		long length = 0;
+		for (int ii = 0; ii < numberOfBytes; ii++) {
+			length = (length << 8) | read();
+		}
+		return length;
+	}
+
+	/**
+	 * Reads the content of the element whose tag was already read and gives back the whole encoding (tag, length and content).
+	 */
+	private byte[] readElement(final int tag) throws IOException {
+
+		final long length = readLength();
+		final byte[] content = readContent(length);
+		final ByteArrayOutputStream encoded = new ByteArrayOutputStream(content.length + 6);
+		encoded.write(tag);
+		if (length < 0x80) {
+			encoded.write((int) length);
+		} else {
+
+			int numberOfBytes = 0;
+			for (long value = length; value != 0; value >>>= 8) {
+				numberOfBytes++;
+			}
+			encoded.write(0x80 | numberOfBytes);
+			for (int ii = numberOfBytes - 1; ii >= 0; ii--) {
+				encoded.write((int) (length >>> (8 * ii)));
+			}
+		}
+		encoded.write(content, 0, content.length);
+		return encoded.toByteArray();
+	}
+
+	private byte[] readContent(final long length) throws IOException {
+
+		if (length > MAX_ELEMENT_LENGTH) {
+			throw new DSSException("Element too long: " + length);
+		}
+		final byte[] content = new byte[(int) length];
+		readFully(content, 0, content.length);
+		return content;
+	}
+
+	private int read() throws IOException {
+
+		final int value = inputStream.read();
+		if (value < 0) {
+			throw new DSSException("Unexpected end of the CRL.");
+		}
+		singleByte[0] = (byte) value;
+		update(singleByte, 0, 1);
+		return value;
+	}
+
+	private void readFully(final byte[] buffer, final int offset, final int length) throws IOException {
+
+		int read = 0;
+		while (read < length) {
+
+			final int count = inputStream.read(buffer, offset + read, length - read);
+			if (count < 0) {
+				throw new DSSException("Unexpected end of the CRL.");
+			}
+			read += count;
+		}
+		update(buffer, offset, length);
+	}
+
+	/**
+	 * Passes the read bytes to the digest and, if they belong to the TBSCertList, to the signature.
+	 */
+	private void update(final byte[] buffer, final int offset, final int length) {
+
+		messageDigest.update(buffer, offset, length);
+		final long start = Math.max(position, tbsStart);
+		final long end = Math.min(position + length, tbsEnd);
+		if (tbsStart >= 0 && start < end) {
+
+			final int tbsOffset = offset + (int) (start - position);
+			final int tbsLength = (int) (end - start);
+			if (tbsBuffer != null) {
+				tbsBuffer.write(buffer, tbsOffset, tbsLength);
+			} else if (signature != null) {
+				try {
+					signature.update(buffer, tbsOffset, tbsLength);
+				} catch (SignatureException e) {
+					setSignatureInvalid(e.getClass().getSimpleName() + " - " + e.getMessage());
+				}
+			}
+		}
+		position += length;
+	}
+
+	/**
+	 * The information gathered during the parsing.
+	 */
+	static class Result {
+
+		int version;
+		X500Principal issuerX500Principal;
+		String sigAlgOID;
+		Date thisUpdate;
+		Date nextUpdate;
+		final Set<String> criticalExtensionOIDs = new HashSet<String>();
+		byte[] issuingDistributionPoint;
+		boolean indirect;
+		boolean signatureIntact;
+		String signatureInvalidityReason = "";
+		byte[] digest;
+		long encodedLength;
+	}
+}
@@ -0,0 +1,283 @@
+/*
+ * DSS - Digital Signature Services
+ *
+ * Copyright (C) 2013 European Commission, Directorate-General Internal Market and Services (DG MARKT), B-1049 Bruxelles/Brussel
+ *
+ * Developed by: 2013 ARHS Developments S.A. (rue Nicolas Bové 2B, L-1253 Luxembourg) http://www.arhs-developments.com
+ *
+ * This file is part of the "DSS - Digital Signature Services" project.
+ *
+ * "DSS - Digital Signature Services" is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU Lesser General Public License as published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * DSS is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * "DSS - Digital Signature Services".  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.europa.ec.markt.dss.validation102853.loader;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import eu.europa.ec.markt.dss.exception.DSSException;
+import eu.europa.ec.markt.dss.exception.DSSNullException;
+
+/**
+ * {@code DataLoader} decorator which coalesces the concurrent identical requests: while a GET of a given URL (or a POST of the same bytes to the same URL) is in progress, the
+ * other callers asking for the same data wait for it and share its result instead of accessing the network again. The requests are not cached: once the result is
+ * delivered the next request accesses the wrapped {@code DataLoader} again.
+ *
+ * @version $Revision$ - $Date$
+ */
+public class CoalescingDataLoader implements DataLoader {
+
+	private static final Logger LOG = LoggerFactory.getLogger(CoalescingDataLoader.class);
+
+	private final DataLoader dataLoader;
+
+	/**
+	 * The requests in progress, created lazily (not serialised)
+	 */
+	private transient Map<RequestKey, InFlightRequest> inFlightRequests;
+
+	/**
+	 * Identifies a request: method, url, refresh flag and request bytes (POST).
+	 */
+	private static class RequestKey {
+
+		private final boolean post;
+		private final String url;
+		private final boolean refresh;
+		private final byte[] requestBytes;
+
+		RequestKey(final boolean post, final String url, final boolean refresh, final byte[] requestBytes) {
+
+			this.post = post;
+			this.url = url;
+			this.refresh = refresh;
+			this.requestBytes = requestBytes;
+		}
+
+		@Override
+		public boolean equals(final Object obj) {
+
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof RequestKey)) {
+				return false;
+			}
+			final RequestKey other = (RequestKey) obj;
+			return post == other.post && refresh == other.refresh && url.equals(other.url) && Arrays.equals(requestBytes, other.requestBytes);
+		}
+
+		@Override
+		public int hashCode() {
+
+			int result = url.hashCode();
+			result = 31 * result + (post ? 1 : 0);
+			result = 31 * result + (refresh ? 1 : 0);
+			result = 31 * result + Arrays.hashCode(requestBytes);
+			return result;
+		}
+
+		@Override
+		public String toString() {
+			return (post ? "POST " : "GET ") + url;
+		}
+	}
+
+	/**
+	 * The result shared by the callers of the same request.
+	 */
+	private static class InFlightRequest {
+
+		private final CountDownLatch done = new CountDownLatch(1);
+		private byte[] result;
+		private RuntimeException failure;
+	}
+
+	/**
+	 * The request to execute by the first caller.
+	 */
+	private static interface Request {
+
+		byte[] execute();
+	}
+
+	/**
+	 * @param dataLoader the wrapped {@code DataLoader} which accesses the network
+	 */
+	public CoalescingDataLoader(final DataLoader dataLoader) {
+
+		if (dataLoader == null) {
+			throw new DSSNullException(DataLoader.class);
+		}
+		this.dataLoader = dataLoader;
+	}
+
+	/**
+	 * @return the wrapped {@code DataLoader}
+	 */
+	public DataLoader getDataLoader() {
+		return dataLoader;
+	}
+
+	@Override
+	public byte[] get(final String url) {
+
+		return execute(new RequestKey(false, url, false, null), new Request() {
+
+			@Override
+			public byte[] execute() {
+				return dataLoader.get(url);
+			}
+		});
+	}
+
+	@Override
+	public byte[] get(final String url, final boolean refresh) {
+
+		return execute(new RequestKey(false, url, refresh, null), new Request() {
+
+			@Override
+			public byte[] execute() {
+				return dataLoader.get(url, refresh);
+			}
+		});
+	}
+
+	/**
+	 * Each URL is requested through the coalescing {@code get(String)}, the operation stops after the first successful download.
+	 *
+	 * @param urlStrings {@code List} of {@code String}s representing the URLs to be used in sequential way to obtain the data.
+	 * @return {@code DataAndUrl} representing the array of obtained data and used url, or null
+	 */
+	@Override
+	public DataAndUrl get(final List<String> urlStrings) {
+
+		final int numberOfUrls = urlStrings.size();
+		int ii = 0;
+		for (final String urlString : urlStrings) {
+			try {
+
+				ii++;
+				final byte[] bytes = get(urlString);
+				if (bytes == null) {
+					continue;
+				}
+				return new DataAndUrl(bytes, urlString);
+			} catch (DSSException e) {
+				if (ii == numberOfUrls) {
+					throw e;
+				}
+				LOG.warn("Impossible to obtain data using {}", urlString, e);
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public byte[] post(final String url, final byte[] requestBytes) {
+
+		return execute(new RequestKey(true, url, false, requestBytes), new Request() {
+
+			@Override
+			public byte[] execute() {
+				return dataLoader.post(url, requestBytes);
+			}
+		});
+	}
+
+	@Override
+	public byte[] post(final String url, final byte[] requestBytes, final boolean refresh) {
+
+		return execute(new RequestKey(true, url, refresh, requestBytes), new Request() {
+
+			@Override
+			public byte[] execute() {
+				return dataLoader.post(url, requestBytes, refresh);
+			}
+		});
+	}
+
+	@Override
+	public void setContentType(final String contentType) {
+		dataLoader.setContentType(contentType);
+	}
+
+	/**
+	 * The first caller of a request executes it, the concurrent callers of the same request wait for its result. Each waiting caller receives its own copy of the data.
+	 *
+	 * @param requestKey the identifier of the request
+	 * @param request    the request to execute
+	 * @return the obtained data or null
+	 * @throws DSSException if the request failed
+	 */
+	private byte[] execute(final RequestKey requestKey, final Request request) throws DSSException {
+
+		final Map<RequestKey, InFlightRequest> inFlightRequests = getInFlightRequests();
+		InFlightRequest inFlightRequest;
+		boolean leader = false;
+		synchronized (inFlightRequests) {
+
+			inFlightRequest = inFlightRequests.get(requestKey);
+			if (inFlightRequest == null) {
+
+				inFlightRequest = new InFlightRequest();
+				inFlightRequests.put(requestKey, inFlightRequest);
+				leader = true;
+			}
+		}
+		if (leader) {
+
+			try {
+
+				inFlightRequest.result = request.execute();
+				return inFlightRequest.result;
+			} catch (RuntimeException e) {
+
+				inFlightRequest.failure = e;
+				throw e;
+			} finally {
+
+				synchronized (inFlightRequests) {
+					inFlightRequests.remove(requestKey);
+				}
+				inFlightRequest.done.countDown();
+			}
+		}
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("Waiting for the request in progress: " + requestKey);
+		}
+		try {
+			inFlightRequest.done.await();
+		} catch (InterruptedException e) {
+
+			Thread.currentThread().interrupt();
+			throw new DSSException("Interrupted while waiting for: " + requestKey, e);
+		}
+		if (inFlightRequest.failure != null) {
+			throw new DSSException(inFlightRequest.failure);
+		}
+		return inFlightRequest.result == null ? null : inFlightRequest.result.clone();
+	}
+
+	private synchronized Map<RequestKey, InFlightRequest> getInFlightRequests() {
+
+		if (inFlightRequests == null) {
+			inFlightRequests = new HashMap<RequestKey, InFlightRequest>();
+		}
+		return inFlightRequests;
+	}
+}
@@ -91,7 +91,6 @@ public abstract class OfflineOCSPSource implements OCSPSource {
 		if (bestSingleResp != null) {
 
 			final OCSPToken ocspToken = new OCSPToken(bestBasicOCSPResp, bestSingleResp, certificatePool);
-			certificateToken.setRevocationToken(ocspToken);
 			return ocspToken;
 		}
 		return null;
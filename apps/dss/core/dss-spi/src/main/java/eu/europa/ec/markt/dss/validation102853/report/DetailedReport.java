@@ -20,15 +20,23 @@
 
 package eu.europa.ec.markt.dss.validation102853.report;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.List;
 
 import org.w3c.dom.Document;
+import org.w3c.dom.Element;
 
+import eu.europa.ec.markt.dss.DSSUtils;
+import eu.europa.ec.markt.dss.DSSXMLUtils;
+import eu.europa.ec.markt.dss.exception.DSSException;
 import eu.europa.ec.markt.dss.validation102853.TimestampType;
 import eu.europa.ec.markt.dss.validation102853.rules.Indication;
 import eu.europa.ec.markt.dss.validation102853.rules.MessageTag;
 import eu.europa.ec.markt.dss.validation102853.xml.XmlDom;
+import eu.europa.ec.markt.dss.validation102853.xml.XmlNode;
 
 /**
  * This class represents the detailed report built during the validation process. It contains information on each executed constraint. It is composed among other of the
@@ -50,9 +58,79 @@ import eu.europa.ec.markt.dss.validation102853.xml.XmlDom;
  */
 public class DetailedReport extends XmlDom {
 
+	private static final byte[] XML_DECLARATION = DSSUtils.getUtf8Bytes("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+
+	/**
+	 * The tree built by the validation process. It is kept when the DOM is built: the XML representation of the report is always written from it, whatever the queries
+	 * already executed.
+	 */
+	private final XmlNode validationDataNode;
+
 	public DetailedReport(final Document document) {
 
 		super(document);
+		validationDataNode = null;
+	}
+
+	/**
+	 * This constructor allows to create the report from the tree built by the validation process. The DOM is only built when the report is queried, its XML
+	 * representation is written without it, see {@link #writeTo(java.io.OutputStream)}.
+	 *
+	 * @param validationDataNode the {@code XmlNode} representing the root of the report
+	 */
+	public DetailedReport(final XmlNode validationDataNode) {
+
+		this.validationDataNode = validationDataNode;
+	}
+
+	@Override
+	public synchronized Element getRootElement() {
+
+		final Element rootElement = super.getRootElement();
+		if (rootElement == null && validationDataNode != null) {
+
+			setDocument(validationDataNode.toDocument());
+			return super.getRootElement();
+		}
+		return rootElement;
+	}
+
+	/**
+	 * This method writes the XML representation of the report to the given {@code OutputStream}: the XML declaration followed by the tree built by the validation process,
+	 * the same bytes whether the report was already queried or not. A report created from a {@code Document} is printed with {@code DSSXMLUtils}. The stream is not
+	 * closed.
+	 *
+	 * @param outputStream the {@code OutputStream} to write to
+	 * @throws DSSException in case of an I/O error
+	 */
+	public synchronized void writeTo(final OutputStream outputStream) throws DSSException {
+
+		if (validationDataNode != null) {
+
+			try {
+				outputStream.write(XML_DECLARATION);
+			} catch (IOException e) {
+				throw new DSSException(e);
+			}
+			validationDataNode.writeTo(outputStream);
+		} else {
+
+			DSSXMLUtils.printDocument(getRootElement(), outputStream);
+		}
+	}
+
+	@Override
+	public byte[] toByteArray() {
+
+		final ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+		writeTo(byteArrayOutputStream);
+		return byteArrayOutputStream.toByteArray();
+	}
+
+	@Override
+	public String toString() {
+
+		return DSSUtils.getUtf8String(toByteArray());
 	}
 
 	/**
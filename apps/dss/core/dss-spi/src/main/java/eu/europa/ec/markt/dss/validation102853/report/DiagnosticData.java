@@ -37,6 +37,10 @@ import eu.europa.ec.markt.dss.validation102853.xml.XmlDom;
 /**
  * This class represents all static data extracted by the process analysing the signature. They are independent from the validation policy to be applied.
  * <p/>
+ * The data is held as a DOM marshalled from the JAXB {@code DiagnosticData} and the validation processes query it with XPath. The signatures, timestamps and used
+ * certificates are indexed by their {@code Id} (see {@link #indexById(String)}) to avoid scanning all the siblings for each query; there is no typed model of the
+ * diagnostic data and the DOM is always built.
+ * <p/>
  * <p> DISCLAIMER: Project owner DG-MARKT.
  *
  * @author <a href="mailto:dgmarkt.Project-DSS@arhs-developments.com">ARHS Developments</a>
@@ -47,7 +51,11 @@ public class DiagnosticData extends XmlDom {
 	private List<String> signatureIdList;
 
 	public DiagnosticData(final Document document) {
+
 		super(document);
+		indexById("/DiagnosticData/Signature");
+		indexById("/DiagnosticData/Signature/Timestamps/Timestamp");
+		indexById("/DiagnosticData/UsedCertificates/Certificate");
 	}
 
 	/**
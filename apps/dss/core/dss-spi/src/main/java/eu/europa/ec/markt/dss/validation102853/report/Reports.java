@@ -66,12 +66,17 @@ public class Reports {
 	/**
 	 * This method returns the reference to the diagnostic data object generated during the validation process.
 	 *
-	 * @return {@code DiagnosticData}
+	 * @return {@code DiagnosticData} or {@code null} if it was not requested, see {@link ReportType}
 	 */
 	public DiagnosticData getDiagnosticData() {
 		return diagnosticData;
 	}
 
+	/**
+	 * This method returns the detailed report. Its DOM is only built when it is queried.
+	 *
+	 * @return {@code DetailedReport} or {@code null} if it was not requested, see {@link ReportType}
+	 */
 	public DetailedReport getDetailedReport() {
 		return detailedReport;
 	}
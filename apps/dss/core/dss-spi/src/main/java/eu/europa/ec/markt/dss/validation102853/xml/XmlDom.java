@@ -22,17 +22,17 @@ package eu.europa.ec.markt.dss.validation102853.xml;
 
 import java.io.ByteArrayOutputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.StringTokenizer;
 
-import javax.xml.xpath.XPath;
 import javax.xml.xpath.XPathConstants;
-import javax.xml.xpath.XPathExpression;
 import javax.xml.xpath.XPathExpressionException;
-import javax.xml.xpath.XPathFactory;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -45,6 +45,7 @@ import org.w3c.dom.NodeList;
 import eu.europa.ec.markt.dss.DSSUtils;
 import eu.europa.ec.markt.dss.DSSXMLUtils;
 import eu.europa.ec.markt.dss.NamespaceContextMap;
+import eu.europa.ec.markt.dss.XPathCache;
 import eu.europa.ec.markt.dss.exception.DSSException;
 
 /**
@@ -61,10 +62,17 @@ public class XmlDom {
 
 	private static final String NS_PREFIX = "dss";
 
-	private static final XPathFactory factory = XPathFactory.newInstance();
+	/**
+	 * The prefix of the cache keys of the expressions whose parameters are replaced by XPath variables.
+	 */
+	private static final String PARAMETERIZED_KEY_PREFIX = "$:";
+
+	private static final String STRING_PARAMETER = "'%s'";
 
 	private static final NamespaceContextMap nsContext;
 
+	private static final XPathCache xPathCache;
+
 	private static final Map<String, String> namespaces;
 
 	static {
@@ -73,12 +81,21 @@ public class XmlDom {
 		namespaces.put(NS_PREFIX, NAMESPACE);
 		nsContext = new NamespaceContextMap();
 		nsContext.registerNamespace(NS_PREFIX, NAMESPACE);
+		xPathCache = new XPathCache(nsContext, XPathCache.DEFAULT_MAX_SIZE);
 	}
 
-	final Element rootElement;
+	/**
+	 * The root element of the DOM. The subclasses building their DOM on demand access it through {@link #getRootElement()}.
+	 */
+	Element rootElement;
 
 	String nameSpace;
 
+	/**
+	 * The indexes of the elements identified by their {@code Id} attribute, see {@link #indexById(String)}. {@code null} when no index was built.
+	 */
+	private List<IdIndex> idIndexes;
+
 	public XmlDom(final Document document) {
 
 		this.rootElement = document.getDocumentElement();
@@ -90,32 +107,170 @@ public class XmlDom {
 		this.rootElement = element;
 	}
 
-	private static XPathExpression createXPathExpression(final String xpathString) {
+	/**
+	 * This constructor is used by the subclasses which build their DOM on demand by overriding {@link #getRootElement()}.
+	 */
+	protected XmlDom() {
+	}
 
-		final XPath xpath = factory.newXPath();
-		xpath.setNamespaceContext(nsContext);
-		try {
+	/**
+	 * Sets the root element of the DOM built on demand.
+	 *
+	 * @param document the built {@code Document}
+	 */
+	protected void setDocument(final Document document) {
+
+		rootElement = document.getDocumentElement();
+		nameSpace = rootElement.getNamespaceURI();
+	}
+
+	/**
+	 * Gives back the compiled expression corresponding to the given XPath query and parameters. When all parameters are used as string literals ({@code '%s'}) they are
+	 * replaced by the XPath variables {@code $p1}, {@code $p2}, ...: the expression is compiled only once whatever the values of the parameters. Otherwise the query is formatted
+	 * with the parameters.
+	 *
+	 * @param xPath  the XPath query
+	 * @param params the parameters of the query
+	 * @return {@code XPathCache.CompiledXPath}
+	 */
+	private static XPathCache.CompiledXPath createXPathExpression(final String xPath, final Object... params) {
+
+		if (params.length > 0 && isParameterizable(xPath, params.length)) {
+
+			final String key = PARAMETERIZED_KEY_PREFIX + xPath;
+			final XPathCache.CompiledXPath compiledXPath = xPathCache.get(key);
+			if (compiledXPath != null) {
+				return compiledXPath;
+			}
+			return xPathCache.compile(key, addNamespacePrefix(toVariables(xPath)));
+		}
+		final String key = params.length > 0 ? String.format(xPath, params) : xPath;
+		final XPathCache.CompiledXPath compiledXPath = xPathCache.get(key);
+		if (compiledXPath != null) {
+			return compiledXPath;
+		}
+		return xPathCache.compile(key, addNamespacePrefix(key));
+	}
+
+	private static boolean isParameterizable(final String xPath, final int parameterNumber) {
+
+		int stringParameterNumber = 0;
+		int index = xPath.indexOf(STRING_PARAMETER);
+		while (index != -1) {
+
+			stringParameterNumber++;
+			index = xPath.indexOf(STRING_PARAMETER, index + STRING_PARAMETER.length());
+		}
+		if (stringParameterNumber != parameterNumber) {
+			return false;
+		}
+		int formatSpecifierNumber = 0;
+		for (int ii = 0; ii < xPath.length(); ii++) {
+			if (xPath.charAt(ii) == '%') {
+				formatSpecifierNumber++;
+			}
+		}
+		return formatSpecifierNumber == parameterNumber;
+	}
+
+	private static String toVariables(final String xPath) {
 
-			final XPathExpression expr = xpath.compile(xpathString);
-			return expr;
-		} catch (XPathExpressionException ex) {
+		final StringBuilder stringBuilder = new StringBuilder(xPath.length());
+		int variableNumber = 0;
+		int start = 0;
+		int index = xPath.indexOf(STRING_PARAMETER);
+		while (index != -1) {
 
-			throw new RuntimeException(ex);
+			stringBuilder.append(xPath, start, index).append("$p").append(++variableNumber);
+			start = index + STRING_PARAMETER.length();
+			index = xPath.indexOf(STRING_PARAMETER, start);
 		}
+		stringBuilder.append(xPath, start, xPath.length());
+		return stringBuilder.toString();
 	}
 
-	private static NodeList getNodeList(final Node xmlNode, final String xpathString) {
+	private static NodeList getNodeList(final Node xmlNode, final String xPath, final Object... params) {
 
 		try {
 
-			final XPathExpression expr = createXPathExpression(xpathString);
-			return (NodeList) expr.evaluate(xmlNode, XPathConstants.NODESET);
+			final XPathCache.CompiledXPath expr = createXPathExpression(xPath, params);
+			return (NodeList) expr.evaluate(xmlNode, XPathConstants.NODESET, params);
 		} catch (XPathExpressionException e) {
 
 			throw new RuntimeException(e);
 		}
 	}
 
+	/**
+	 * Indexes the elements returned by the given XPath query by their {@code Id} attribute. The subsequent queries of this object starting with
+	 * {@code xPath + "[@Id='%s']"} are resolved with a map lookup on the first parameter, the remaining part of the query being evaluated relatively to the found
+	 * element. This avoids the evaluation of the predicate against all the sibling elements for each query on large documents. The identifiers which are not unique
+	 * are not indexed and remain resolved by XPath. The document must not be modified after the indexation.
+	 *
+	 * @param xPath the XPath query selecting the elements to index, without parameter
+	 */
+	public void indexById(final String xPath) {
+
+		final IdIndex idIndex = new IdIndex(xPath + "[@Id='%s']");
+		final NodeList nodeList = getNodeList(getRootElement(), xPath);
+		for (int ii = 0; ii < nodeList.getLength(); ii++) {
+
+			final Node node = nodeList.item(ii);
+			if (node.getNodeType() != Node.ELEMENT_NODE) {
+				continue;
+			}
+			final Element element = (Element) node;
+			final String id = element.getAttribute("Id");
+			if (id.isEmpty() || idIndex.duplicateIds.contains(id)) {
+				continue;
+			}
+			if (idIndex.elements.put(id, element) != null) {
+
+				idIndex.elements.remove(id);
+				idIndex.duplicateIds.add(id);
+			}
+		}
+		if (idIndexes == null) {
+			idIndexes = new ArrayList<IdIndex>();
+		}
+		idIndexes.add(idIndex);
+	}
+
+	/**
+	 * Evaluates the given XPath query against the root element, using the indexes built with {@link #indexById(String)} when possible.
+	 *
+	 * @param xPath  the XPath query
+	 * @param params the parameters of the query
+	 * @return the resulting {@code NodeList}
+	 */
+	private NodeList getNodeList(final String xPath, final Object... params) {
+
+		if (idIndexes != null && params.length > 0) {
+
+			for (final IdIndex idIndex : idIndexes) {
+
+				if (!xPath.startsWith(idIndex.query)) {
+					continue;
+				}
+				final String remainder = xPath.substring(idIndex.query.length());
+				final String id = String.valueOf(params[0]);
+				if (!remainder.isEmpty() && remainder.charAt(0) != '/' || idIndex.duplicateIds.contains(id)) {
+					break;
+				}
+				final Element element = idIndex.elements.get(id);
+				if (element == null) {
+					return new ElementNodeList(null);
+				}
+				if (remainder.isEmpty()) {
+					return new ElementNodeList(element);
+				}
+				final Object[] remainingParams = Arrays.copyOfRange(params, 1, params.length);
+				return getNodeList(element, "." + remainder, remainingParams);
+			}
+		}
+		return getNodeList(getRootElement(), xPath, params);
+	}
+
 	/**
 	 * The list of elements corresponding the given XPath query and parameters.
 	 *
@@ -127,9 +282,7 @@ public class XmlDom {
 
 		try {
 
-			String xPath_ = format(xPath, params);
-
-			NodeList nodeList = getNodeList(rootElement, xPath_);
+			NodeList nodeList = getNodeList(xPath, params);
 			List<XmlDom> list = new ArrayList<XmlDom>();
 			for (int ii = 0; ii < nodeList.getLength(); ii++) {
 
@@ -151,9 +304,7 @@ public class XmlDom {
 
 		try {
 
-			String xPath_ = format(xPath, params);
-
-			NodeList nodeList = getNodeList(rootElement, xPath_);
+			NodeList nodeList = getNodeList(xPath, params);
 			for (int ii = 0; ii < nodeList.getLength(); ii++) {
 
 				Node node = nodeList.item(ii);
@@ -170,25 +321,6 @@ public class XmlDom {
 		}
 	}
 
-	/**
-	 * @param xPath
-	 * @param params
-	 * @return
-	 */
-	private static String format(final String xPath, final Object... params) {
-
-		String formattedXPath;
-		if (params.length > 0) {
-
-			formattedXPath = String.format(xPath, params);
-		} else {
-
-			formattedXPath = xPath;
-		}
-		formattedXPath = addNamespacePrefix(formattedXPath);
-		return formattedXPath;
-	}
-
 	private static String addNamespacePrefix(final String formatedXPath) {
 
 		if (formatedXPath.startsWith("/dss:") || formatedXPath.startsWith("./dss:")) {
@@ -244,9 +376,7 @@ public class XmlDom {
 	 */
 	public String getValue(final String xPath, final Object... params) {
 
-		String xPath_ = format(xPath, params);
-
-		NodeList nodeList = getNodeList(rootElement, xPath_);
+		NodeList nodeList = getNodeList(xPath, params);
 		if (nodeList.getLength() == 1) {
 
 			Node node = nodeList.item(0);
@@ -297,11 +427,10 @@ public class XmlDom {
 
 	public long getCountValue(final String xPath, final Object... params) {
 
-		String xpathString = format(xPath, params);
 		try {
 
-			XPathExpression xPathExpression = createXPathExpression(xpathString);
-			Double number = (Double) xPathExpression.evaluate(rootElement, XPathConstants.NUMBER);
+			XPathCache.CompiledXPath xPathExpression = createXPathExpression(xPath, params);
+			Double number = (Double) xPathExpression.evaluate(getRootElement(), XPathConstants.NUMBER, params);
 			return number.intValue();
 		} catch (XPathExpressionException e) {
 
@@ -333,6 +462,7 @@ public class XmlDom {
 	public String getText() {
 
 		try {
+			final Element rootElement = getRootElement();
 			if (rootElement != null) {
 
 				return rootElement.getTextContent().trim();
@@ -349,7 +479,7 @@ public class XmlDom {
 	 */
 	public String getName() {
 
-		return rootElement.getNodeName();
+		return getRootElement().getNodeName();
 	}
 
 	/**
@@ -360,7 +490,7 @@ public class XmlDom {
 	 */
 	public String getAttribute(final String attributeName) {
 
-		return rootElement.getAttribute(attributeName);
+		return getRootElement().getAttribute(attributeName);
 	}
 
 	/**
@@ -370,7 +500,7 @@ public class XmlDom {
 	 */
 	public NamedNodeMap getAttributes() {
 
-		return rootElement.getAttributes();
+		return getRootElement().getAttributes();
 	}
 
 	/**
@@ -449,6 +579,7 @@ public class XmlDom {
 
 	public byte[] toByteArray() {
 
+		final Element rootElement = getRootElement();
 		if (rootElement != null) {
 
 			ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
@@ -461,6 +592,7 @@ public class XmlDom {
 	@Override
 	public String toString() {
 
+		final Element rootElement = getRootElement();
 		if (rootElement != null) {
 
 			ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
@@ -473,4 +605,42 @@ public class XmlDom {
 	public Element getRootElement() {
 		return rootElement;
 	}
+
+	/**
+	 * The elements of an XPath predicate {@code [@Id='%s']} indexed by the value of their {@code Id} attribute.
+	 */
+	private static class IdIndex {
+
+		final String query;
+
+		final Map<String, Element> elements = new HashMap<String, Element>();
+
+		final Set<String> duplicateIds = new HashSet<String>();
+
+		IdIndex(final String query) {
+			this.query = query;
+		}
+	}
+
+	/**
+	 * {@code NodeList} containing at most one element.
+	 */
+	private static class ElementNodeList implements NodeList {
+
+		private final Element element;
+
+		ElementNodeList(final Element element) {
+			this.element = element;
+		}
+
+		@Override
+		public Node item(final int index) {
+			return index == 0 ? element : null;
+		}
+
+		@Override
+		public int getLength() {
+			return element == null ? 0 : 1;
+		}
+	}
 }
@@ -19,9 +19,13 @@
  */
 package eu.europa.ec.markt.dss.validation102853.xml;
 
+import java.io.BufferedWriter;
 import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.io.InputStream;
-import java.io.UnsupportedEncodingException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -110,13 +114,13 @@ public class XmlNode {
 
 	public void addChild(final XmlDom child) {
 
-		final Element element = child.rootElement;
+		final Element element = child.getRootElement();
 		recursiveCopy(this, element);
 	}
 
 	public void addChildrenOf(final XmlDom parent) {
 
-		final Element element = parent.rootElement;
+		final Element element = parent.getRootElement();
 		final NodeList nodes = element.getChildNodes();
 		for (int ii = 0; ii < nodes.getLength(); ii++) {
 
@@ -355,7 +359,7 @@ public class XmlNode {
 		return xmlDom;
 	}
 
-	private void writeNodes(final XmlNode node, final StringBuilder xml, final StringBuilder indent, String nameSpace) {
+	private void writeNodes(final XmlNode node, final Appendable xml, final StringBuilder indent, String nameSpace) throws IOException {
 
 		for (final XmlNode node_ : node.children) {
 
@@ -399,25 +403,48 @@ public class XmlNode {
 	public InputStream getInputStream() {
 
 		try {
-			final StringBuilder indent = new StringBuilder();
 			final StringBuilder xml = new StringBuilder();
-			final XmlNode masterNode = new XmlNode("__Master__");
-			final XmlNode savedParentNode = getParent();
-			if (savedParentNode != null) {
-
-				setNameSpace(savedParentNode.getNameSpace());
-			}
-			setParent(masterNode);
-			writeNodes(masterNode, xml, indent, "");
-			parentNode = savedParentNode;
+			write(xml);
 			final byte[] bytes = xml.toString().getBytes("UTF-8");
 			final InputStream in = new ByteArrayInputStream(bytes);
 			return in;
-		} catch (UnsupportedEncodingException e) {
+		} catch (IOException e) {
 			throw new DSSException("Error during the conversion of the XmlNode to the InputStream :", e);
 		}
 	}
 
+	/**
+	 * This method writes the content of the node to the given {@code OutputStream} (UTF-8) without building its whole textual representation in memory. The
+	 * stream is not closed.
+	 *
+	 * @param outputStream the {@code OutputStream} to write to
+	 * @throws DSSException in case of an I/O error
+	 */
+	public void writeTo(final OutputStream outputStream) throws DSSException {
+
+		try {
+			final Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, "UTF-8"));
+			write(writer);
+			writer.flush();
+		} catch (IOException e) {
+			throw new DSSException("Error during the writing of the XmlNode :", e);
+		}
+	}
+
+	private void write(final Appendable xml) throws IOException {
+
+		final StringBuilder indent = new StringBuilder();
+		final XmlNode masterNode = new XmlNode("__Master__");
+		final XmlNode savedParentNode = getParent();
+		if (savedParentNode != null) {
+
+			setNameSpace(savedParentNode.getNameSpace());
+		}
+		setParent(masterNode);
+		writeNodes(masterNode, xml, indent, "");
+		parentNode = savedParentNode;
+	}
+
 	@Override
 	public String toString() {
 
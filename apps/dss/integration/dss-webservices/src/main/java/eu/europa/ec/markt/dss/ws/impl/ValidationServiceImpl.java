@@ -36,6 +36,7 @@ import eu.europa.ec.markt.dss.validation102853.CertificateVerifier;
 import eu.europa.ec.markt.dss.validation102853.SignedDocumentValidator;
 import eu.europa.ec.markt.dss.validation102853.report.DetailedReport;
 import eu.europa.ec.markt.dss.validation102853.report.DiagnosticData;
+import eu.europa.ec.markt.dss.validation102853.report.ReportType;
 import eu.europa.ec.markt.dss.validation102853.report.Reports;
 import eu.europa.ec.markt.dss.validation102853.report.SimpleReport;
 import eu.europa.ec.markt.dss.ws.DSSWSUtils;
@@ -86,6 +87,9 @@ public class ValidationServiceImpl implements ValidationService {
 				detachedContentsList.add(dssDetachedContents);
 				validator.setDetachedContents(detachedContentsList);
 			}
+			if (!diagnosticDataToBeReturned) {
+				validator.setReportTypes(ReportType.SIMPLE_REPORT, ReportType.DETAILED_REPORT);
+			}
 
 			final InputStream inputStream = policy == null ? null : policy.openStream();
 			final Reports reports = validator.validateDocument(inputStream);